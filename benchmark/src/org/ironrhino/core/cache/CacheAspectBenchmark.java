@@ -0,0 +1,184 @@
+package org.ironrhino.core.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheAspectBenchmark {
+
+	private static final int KEYS = 1000;
+
+	@Param({ "direct", "hit", "miss" })
+	public String scenario;
+
+	private InMemoryCacheManager cacheManager;
+
+	private UserService target;
+
+	private UserService service;
+
+	private int counter;
+
+	@Setup
+	public void setup() {
+		cacheManager = new InMemoryCacheManager();
+		CacheAspect cacheAspect = new CacheAspect();
+		ReflectionTestUtils.setField(cacheAspect, "cacheManager", cacheManager);
+		ReflectionTestUtils.setField(cacheAspect, "mutex", true);
+		target = new UserService();
+		AspectJProxyFactory factory = new AspectJProxyFactory(target);
+		factory.setProxyTargetClass(true);
+		factory.addAspect(cacheAspect);
+		service = factory.getProxy();
+		for (int i = 0; i < KEYS; i++)
+			service.get("user" + i);
+	}
+
+	@Benchmark
+	public Object get() {
+		String username = "user" + (counter++ % KEYS);
+		switch (scenario) {
+		case "direct":
+			return target.get(username);
+		case "miss":
+			cacheManager.invalidate(UserService.NAMESPACE);
+			return service.get(username);
+		default:
+			return service.get(username);
+		}
+	}
+
+	public static class UserService {
+
+		static final String NAMESPACE = "user";
+
+		// stands in for a primary key lookup
+		private final Map<String, String> table = new HashMap<>();
+
+		public UserService() {
+			for (int i = 0; i < KEYS; i++)
+				table.put("user" + i, "User " + i);
+		}
+
+		@CheckCache(namespace = NAMESPACE, key = "${username}")
+		public String get(String username) {
+			return table.get(username);
+		}
+
+	}
+
+	// stands in for redis, values are kept by reference so only the aspect is
+	// measured, expiration is ignored
+	private static class InMemoryCacheManager implements CacheManager {
+
+		private final Map<String, Map<String, Object>> caches = new ConcurrentHashMap<>();
+
+		private Map<String, Object> cache(String namespace) {
+			return caches.computeIfAbsent(namespace != null ? namespace : "", ns -> new ConcurrentHashMap<>());
+		}
+
+		@Override
+		public void put(String key, Object value, int timeToLive, TimeUnit timeUnit, String namespace) {
+			cache(namespace).put(key, value);
+		}
+
+		@Override
+		public void put(String key, Object value, int timeToIdle, int timeToLive, TimeUnit timeUnit,
+				String namespace) {
+			cache(namespace).put(key, value);
+		}
+
+		@Override
+		public boolean exists(String key, String namespace) {
+			return cache(namespace).containsKey(key);
+		}
+
+		@Override
+		public Object get(String key, String namespace) {
+			return cache(namespace).get(key);
+		}
+
+		@Override
+		public Object get(String key, String namespace, int timeToIdle, TimeUnit timeUnit) {
+			return cache(namespace).get(key);
+		}
+
+		@Override
+		public void delete(String key, String namespace) {
+			cache(namespace).remove(key);
+		}
+
+		@Override
+		public void mput(Map<String, Object> map, int timeToLive, TimeUnit timeUnit, String namespace) {
+			cache(namespace).putAll(map);
+		}
+
+		@Override
+		public Map<String, Object> mget(Collection<String> keys, String namespace) {
+			Map<String, Object> cache = cache(namespace);
+			Map<String, Object> result = new HashMap<>();
+			for (String key : keys)
+				result.put(key, cache.get(key));
+			return result;
+		}
+
+		@Override
+		public void mdelete(Collection<String> keys, String namespace) {
+			cache(namespace).keySet().removeAll(keys);
+		}
+
+		@Override
+		public boolean containsKey(String key, String namespace) {
+			return cache(namespace).containsKey(key);
+		}
+
+		@Override
+		public boolean putIfAbsent(String key, Object value, int timeToLive, TimeUnit timeUnit, String namespace) {
+			return cache(namespace).putIfAbsent(key, value) == null;
+		}
+
+		@Override
+		public long increment(String key, long delta, int timeToLive, TimeUnit timeUnit, String namespace) {
+			return (Long) cache(namespace).merge(key, delta, (v1, v2) -> (Long) v1 + (Long) v2);
+		}
+
+		@Override
+		public boolean supportsTimeToIdle() {
+			return true;
+		}
+
+		@Override
+		public boolean supportsUpdateTimeToLive() {
+			return true;
+		}
+
+		@Override
+		public void invalidate(String namespace) {
+			cache(namespace).clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.ironrhino.core.cache.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.rubyeye.xmemcached.transcoders.CachedData;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FstTranscoderBenchmark {
+
+	// large payload exceeds the compression threshold
+	@Param({ "string", "small", "large" })
+	public String payload;
+
+	private FstTranscoder transcoder;
+
+	private Object value;
+
+	private CachedData encoded;
+
+	@Setup
+	public void setup() {
+		transcoder = new FstTranscoder();
+		switch (payload) {
+		case "string":
+			value = "User 123456";
+			break;
+		case "small":
+			value = new Item(123456);
+			break;
+		default:
+			List<Item> list = new ArrayList<>();
+			for (int i = 0; i < 1000; i++)
+				list.add(new Item(i));
+			value = list;
+			break;
+		}
+		encoded = transcoder.encode(value);
+	}
+
+	@Benchmark
+	public CachedData encode() {
+		return transcoder.encode(value);
+	}
+
+	@Benchmark
+	public Object decode() {
+		// decoded object is memoized in CachedData
+		return transcoder.decode(new CachedData(encoded.getFlag(), encoded.getData()));
+	}
+
+	public static class Item implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String id;
+
+		private String name;
+
+		private int quantity;
+
+		private double price;
+
+		private boolean enabled = true;
+
+		private Date createDate = new Date();
+
+		public Item() {
+		}
+
+		Item(int i) {
+			id = String.valueOf(i);
+			name = "Item " + i;
+			quantity = i % 100;
+			price = i * 1.5;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public Date getCreateDate() {
+			return createDate;
+		}
+
+	}
+
+}
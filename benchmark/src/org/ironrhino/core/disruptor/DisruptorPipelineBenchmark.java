@@ -0,0 +1,79 @@
+package org.ironrhino.core.disruptor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ironrhino.core.disruptor.DisruptorPipeline.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class DisruptorPipelineBenchmark {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// executor or wait strategy of pipeline
+	@Param({ "executor", "BLOCKING", "YIELDING" })
+	public String handoff;
+
+	private final LongAdder handled = new LongAdder();
+
+	private ThreadPoolExecutor executor;
+
+	private DisruptorPipeline<Long> pipeline;
+
+	@Setup
+	public void setup() {
+		if (handoff.equals("executor")) {
+			// how PageViewHandler handed off before, caller runs if saturated
+			executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(BUFFER_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+		} else {
+			pipeline = new DisruptorPipeline<>("benchmark", BUFFER_SIZE, batch -> {
+				for (Long value : batch)
+					consume(value);
+			}, 1, 1000, Strategy.valueOf(handoff));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (executor != null)
+			executor.shutdownNow();
+		if (pipeline != null)
+			pipeline.shutdown(10, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	public void publish() {
+		Long value = System.nanoTime();
+		if (executor != null)
+			executor.execute(() -> consume(value));
+		else if (!pipeline.tryPublish(value))
+			consume(value);
+	}
+
+	private void consume(Long value) {
+		handled.add(value & 1);
+	}
+
+}
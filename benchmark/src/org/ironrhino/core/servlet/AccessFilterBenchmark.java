@@ -0,0 +1,141 @@
+package org.ironrhino.core.servlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessFilterBenchmark {
+
+	// mirrors handlers shipped with the framework and a typical application
+	private static final String[][] HANDLER_PATTERNS = { { "/_ping", null },
+			{ "/assets/upload/*", null },
+			{ "/user/self,/oauth2/tokeninfo,/oauth2/revoketoken,/api/*", "/api/public/*,/api/*/health" },
+			{ "/backend/*,/admin/*", "/backend/login,/backend/assets/*" }, { "/remoting/*", null },
+			{ "/websocket/*", null }, { "/cms/*,/page/*", "/cms/preview/*" }, { null, "/assets/*,/remoting/*" },
+			{ "/report/*.pdf,/report/*.xls", null }, { "/h5/*/index.html", null }, { "/callback/*", null },
+			{ "/sso/*", "/sso/logout" } };
+
+	private static final String EXCLUDE_PATTERNS = "/assets/scripts/*,/assets/styles/*,/assets/images/*,/favicon.ico";
+
+	private static final String[] URIS = { "/", "/_ping", "/assets/upload/2016/a.jpg", "/assets/scripts/app.js",
+			"/api/v1/user/123", "/api/public/news", "/backend/user/list", "/admin/setting", "/cms/article/12",
+			"/page/about", "/remoting/httpinvoker/userManager", "/report/monthly.pdf", "/h5/promo/index.html",
+			"/sso/login", "/product/12345", "/favicon.ico" };
+
+	@Param({ "cached", "compiled", "split" })
+	public String strategy;
+
+	private AccessFilter accessFilter;
+
+	private List<AccessHandler> handlers;
+
+	private String[] uris;
+
+	@Setup
+	public void setup() {
+		handlers = new ArrayList<>();
+		for (String[] arr : HANDLER_PATTERNS)
+			handlers.add(new PatternHandler(arr[0], arr[1]));
+		accessFilter = new AccessFilter();
+		ReflectionTestUtils.setField(accessFilter, "handlers", handlers);
+		ReflectionTestUtils.setField(accessFilter, "matchCacheSize", strategy.equals("cached") ? 10000 : 0);
+		accessFilter.setExcludePatterns(EXCLUDE_PATTERNS);
+		accessFilter._init();
+		// defeat the cache for the compiled strategy with distinct uris
+		uris = strategy.equals("compiled") ? Arrays.stream(URIS).map(s -> s + "/" + s.hashCode()).toArray(String[]::new)
+				: URIS;
+	}
+
+	@Benchmark
+	public void match(Blackhole bh) {
+		if (strategy.equals("split")) {
+			for (String uri : uris)
+				bh.consume(split(uri));
+		} else {
+			for (String uri : uris)
+				bh.consume(accessFilter.getMatchedHandlers(uri));
+		}
+	}
+
+	// the way AccessFilter matched before patterns were compiled
+	private List<AccessHandler> split(String uri) {
+		for (String pattern : EXCLUDE_PATTERNS.split("\\s*,\\s*"))
+			if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pattern))
+				return null;
+		List<AccessHandler> result = new ArrayList<>();
+		loop: for (AccessHandler handler : handlers) {
+			String excludePattern = handler.getExcludePattern();
+			if (StringUtils.isNotBlank(excludePattern)) {
+				for (String pa : excludePattern.split("\\s*,\\s*"))
+					if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa))
+						continue loop;
+			}
+			String pattern = handler.getPattern();
+			boolean matched = StringUtils.isBlank(pattern);
+			if (!matched) {
+				for (String pa : pattern.split("\\s*,\\s*"))
+					if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa)) {
+						matched = true;
+						break;
+					}
+			}
+			if (matched)
+				result.add(handler);
+		}
+		return result;
+	}
+
+	private static class PatternHandler extends AccessHandler {
+
+		private final String pattern;
+
+		private final String excludePattern;
+
+		PatternHandler(String pattern, String excludePattern) {
+			this.pattern = pattern;
+			this.excludePattern = excludePattern;
+		}
+
+		@Override
+		public String getPattern() {
+			return pattern;
+		}
+
+		@Override
+		public String getExcludePattern() {
+			return excludePattern;
+		}
+
+		@Override
+		public boolean handle(HttpServletRequest request, HttpServletResponse response) {
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.ironrhino.core.session.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.CodecUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionTrackerCodecBenchmark {
+
+	// legacy trackers are still sent by clients of earlier releases
+	@Param({ "current", "legacy" })
+	public String format;
+
+	private SessionTrackerCodec codec;
+
+	private String sessionId;
+
+	private long creationTime;
+
+	private long lastAccessedTime;
+
+	private String tracker;
+
+	@Setup
+	public void setup() {
+		codec = new SessionTrackerCodec(CodecUtils.nextId());
+		sessionId = CodecUtils.nextId();
+		creationTime = System.currentTimeMillis() - 600000;
+		lastAccessedTime = System.currentTimeMillis();
+		tracker = encode();
+	}
+
+	@Benchmark
+	public String encode() {
+		return format.equals("legacy") ? codec.encodeLegacy(sessionId, creationTime, lastAccessedTime)
+				: codec.encode(sessionId, creationTime, lastAccessedTime);
+	}
+
+	@Benchmark
+	public SessionTrackerCodec.SessionTracker decode() {
+		return codec.decode(tracker);
+	}
+
+	@Benchmark
+	public String decodeId() {
+		return codec.decodeId(tracker);
+	}
+
+}
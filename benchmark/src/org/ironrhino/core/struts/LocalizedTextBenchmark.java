@@ -0,0 +1,65 @@
+package org.ironrhino.core.struts;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.opensymphony.xwork2.util.LocalizedTextUtil;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalizedTextBenchmark {
+
+	// texts looked up by richtable.ftl and pagination.ftl rendering an entity list
+	private static final String[] PAGE_KEYS = { "list", "search", "create", "delete", "reload", "ascending",
+			"descending", "all", "restore", "record", "pagesize", "firstpage", "previouspage", "currentpage",
+			"totalpage", "nextpage", "lastpage" };
+
+	private static final String[] COLUMN_KEYS = { "id", "name", "description", "enabled", "createDate",
+			"modifyDate", "createUser", "modifyUser" };
+
+	private static final String[] ROW_KEYS = { "edit", "view", "delete", "true", "false" };
+
+	private static final int ROWS = 20;
+
+	@Param({ "warm", "cold", "disabled" })
+	public String cache;
+
+	private final Locale locale = Locale.SIMPLIFIED_CHINESE;
+
+	@Setup
+	public void setup() {
+		LocalizedTextUtil.addDefaultResourceBundle("resources.i18n.common.messages");
+		LocalizedTextUtil.setMessageCacheSize(cache.equals("disabled") ? 0 : 10000);
+	}
+
+	@Benchmark
+	public void renderList(Blackhole bh) {
+		if (cache.equals("cold"))
+			LocalizedTextUtil.clearMessageCache();
+		for (String key : PAGE_KEYS)
+			bh.consume(LocalizedTextUtil.findText(EntityAction.class, key, locale, key, null, null));
+		for (String key : COLUMN_KEYS)
+			bh.consume(LocalizedTextUtil.findText(EntityAction.class, key, locale, key, null, null));
+		for (int i = 0; i < ROWS; i++)
+			for (String key : ROW_KEYS)
+				bh.consume(LocalizedTextUtil.findText(EntityAction.class, key, locale, key, null, null));
+	}
+
+}
@@ -0,0 +1,93 @@
+package org.ironrhino.core.struts.mapper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.model.ResultPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.config.entities.PackageConfig;
+import com.opensymphony.xwork2.config.impl.DefaultConfiguration;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultActionMapperBenchmark {
+
+	// namespaces and actions of the framework and a typical application
+	private static final String[][] PACKAGES = { { "", "index", "login", "logout", "signup", "password", "error" },
+			{ "/common", "region", "setting", "dictionary", "upload", "treeNode", "pageView" },
+			{ "/backend", "user", "role", "menu", "department" },
+			{ "/backend/system", "audit", "schema", "console", "cache", "sequence" },
+			{ "/api", "user", "order", "product" }, { "/api/v1", "user", "order", "product", "cart" },
+			{ "/cms", "page", "article", "column" }, { "/remoting", "service" } };
+
+	private static final String[] URIS = { "/login", "/signup", "/password/reset", "/common/region/children/12",
+			"/common/setting", "/common/upload/list", "/backend/user", "/backend/user/input/4F2ZfDvG4mDFaM5Gs6ahTX",
+			"/backend/system/audit", "/backend/system/console/execute", "/api/v1/order/123456",
+			"/api/v1/cart/view", "/api/product", "/cms/article/12", "/remoting/service/view",
+			"/common/pageView/url" };
+
+	@Param({ "cached", "uncached" })
+	public String routes;
+
+	private DefaultActionMapper actionMapper;
+
+	private ConfigurationManager configurationManager;
+
+	private MockHttpServletRequest[] requests;
+
+	@Setup
+	public void setup() {
+		DefaultConfiguration configuration = new DefaultConfiguration();
+		for (String[] arr : PACKAGES) {
+			String name = arr[0].isEmpty() ? "default" : arr[0].substring(1).replace('/', '-');
+			PackageConfig.Builder builder = new PackageConfig.Builder(name).namespace(arr[0]);
+			for (int i = 1; i < arr.length; i++)
+				builder.addActionConfig(arr[i],
+						new ActionConfig.Builder(name, arr[i], "org.ironrhino.core.struts.EntityAction").build());
+			configuration.addPackageConfig(name, builder.build());
+		}
+		configurationManager = new ConfigurationManager() {
+
+			// skip reload checks which require a container
+			@Override
+			public synchronized Configuration getConfiguration() {
+				return configuration;
+			}
+
+		};
+		configurationManager.setConfiguration(configuration);
+		actionMapper = new DefaultActionMapper();
+		actionMapper.setRouteCacheSize(routes.equals("cached") ? 10000 : 0);
+		requests = new MockHttpServletRequest[URIS.length];
+		for (int i = 0; i < URIS.length; i++) {
+			requests[i] = new MockHttpServletRequest("GET", URIS[i]);
+			requests[i].setParameter(ResultPage.PAGENO_PARAM_NAME, "2");
+		}
+	}
+
+	@Benchmark
+	public void getMapping(Blackhole bh) {
+		for (MockHttpServletRequest request : requests)
+			bh.consume(actionMapper.getMapping(request, configurationManager));
+	}
+
+}
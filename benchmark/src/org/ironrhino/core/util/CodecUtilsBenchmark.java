@@ -0,0 +1,69 @@
+package org.ironrhino.core.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecUtilsBenchmark {
+
+	private final String input = "admin:4F2ZfDvG4mDFaM5Gs6ahTX:1466403843000";
+
+	private final String fuzzified = CodecUtils.fuzzify(input);
+
+	private final String hex = CodecUtils.md5Hex(input);
+
+	@Benchmark
+	public String md5Hex() {
+		return CodecUtils.md5Hex(input);
+	}
+
+	@Benchmark
+	public String shaHex() {
+		return CodecUtils.shaHex(input);
+	}
+
+	@Benchmark
+	public String digest() {
+		return CodecUtils.digest(input);
+	}
+
+	@Benchmark
+	public String swap() {
+		return CodecUtils.swap(input);
+	}
+
+	@Benchmark
+	public String fuzzify() {
+		return CodecUtils.fuzzify(input);
+	}
+
+	@Benchmark
+	public String defuzzify() {
+		return CodecUtils.defuzzify(fuzzified);
+	}
+
+	@Benchmark
+	public String encodeBase62() {
+		return CodecUtils.encodeBase62(hex);
+	}
+
+	@Benchmark
+	public String nextId() {
+		return CodecUtils.nextId();
+	}
+
+}
@@ -0,0 +1,70 @@
+package org.ironrhino.core.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.ConsistentHash.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsistentHashBenchmark {
+
+	private static final int KEYS = 1024;
+
+	@Param({ "RING", "JUMP" })
+	public String strategy;
+
+	@Param({ "8", "64" })
+	public int nodes;
+
+	private ConsistentHash<String, String> consistentHash;
+
+	private String[] keys;
+
+	@Setup
+	public void setup() {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		for (int i = 0; i < nodes; i++)
+			map.put("10.0." + (i / 256) + "." + (i % 256) + ":6379", 1 + i % 3);
+		consistentHash = new ConsistentHash<>(map, new ConsistentHash.MurmurHash(), Strategy.valueOf(strategy));
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = "user:" + CodecUtils.nextId();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public void get(Blackhole bh) {
+		for (String key : keys)
+			bh.consume(consistentHash.get(key));
+	}
+
+	// lookups must not contend with each other
+	@Benchmark
+	@Threads(4)
+	@OperationsPerInvocation(KEYS)
+	public void getConcurrently(Blackhole bh) {
+		for (String key : keys)
+			bh.consume(consistentHash.get(key));
+	}
+
+}
@@ -0,0 +1,162 @@
+package org.ironrhino.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+	private static final TypeReference<List<Product>> PRODUCT_LIST_TYPE = new TypeReference<List<Product>>() {
+	};
+
+	// a page of a json api response
+	@Param({ "1", "20", "200" })
+	public int size;
+
+	private List<Product> products;
+
+	private String json;
+
+	private final OutputStream out = new OutputStream() {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+
+	};
+
+	@Setup
+	public void setup() {
+		products = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Product p = new Product();
+			p.setId(CodecUtils.nextId());
+			p.setName("产品 " + i);
+			p.setDescription("Description of product " + i);
+			p.setPrice(i * 1.5);
+			p.setStock(i);
+			p.setCreateDate(new Date());
+			p.setTags(Arrays.asList("tag" + i % 5, "tag" + i % 7));
+			products.add(p);
+		}
+		json = JsonUtils.toJson(products);
+	}
+
+	@Benchmark
+	public String toJson() {
+		return JsonUtils.toJson(products);
+	}
+
+	@Benchmark
+	public void writeJson() throws IOException {
+		JsonUtils.writeJson(products, out);
+	}
+
+	@Benchmark
+	public List<Product> fromJson() throws IOException {
+		return JsonUtils.fromJson(json, PRODUCT_LIST_TYPE);
+	}
+
+	public static class Product {
+
+		private String id;
+
+		private String name;
+
+		private String description;
+
+		private double price;
+
+		private int stock;
+
+		private Date createDate;
+
+		private List<String> tags;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public void setDescription(String description) {
+			this.description = description;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+
+		public int getStock() {
+			return stock;
+		}
+
+		public void setStock(int stock) {
+			this.stock = stock;
+		}
+
+		public Date getCreateDate() {
+			return createDate;
+		}
+
+		public void setCreateDate(Date createDate) {
+			this.createDate = createDate;
+		}
+
+		public List<String> getTags() {
+			return tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+
+	}
+
+}
@@ -93,6 +93,10 @@ public class LocalizedTextUtil {
     private static boolean reloadBundles = false;
     private static final ResourceBundle EMPTY_BUNDLE = new EmptyResourceBundle();
     private static final ConcurrentMap<String, ResourceBundle> bundlesMap = new ConcurrentHashMap<String, ResourceBundle>();
+    private static final Object MISSING = new Object();
+    // resolved message patterns or MISSING, keyed by class (null for default bundles), key and locale
+    private static final ConcurrentMap<MessageKey, Object> messagesMap = new ConcurrentHashMap<MessageKey, Object>();
+    private static volatile int messageCacheSize = 10000;
 
     private static ClassLoader delegatedClassLoader;
     private static final String RELOADED = "com.opensymphony.xwork2.util.LocalizedTextUtil.reloaded";
@@ -106,6 +110,7 @@ public class LocalizedTextUtil {
      * Clears the internal list of resource bundles.
      */
     public static void clearDefaultResourceBundles() {
+        messagesMap.clear();
         if (DEFAULT_RESOURCE_BUNDLES != null) {
             synchronized (DEFAULT_RESOURCE_BUNDLES) {
                 DEFAULT_RESOURCE_BUNDLES.clear();
@@ -127,6 +132,23 @@ public class LocalizedTextUtil {
         LocalizedTextUtil.reloadBundles = reloadBundles;
     }
 
+    /**
+     * Sets the maximum number of resolved messages to cache, 0 disables the cache.
+     *
+     * @param messageCacheSize the cache size
+     */
+    public static void setMessageCacheSize(int messageCacheSize) {
+        LocalizedTextUtil.messageCacheSize = messageCacheSize;
+        messagesMap.clear();
+    }
+
+    /**
+     * Clears resolved messages, bundles will be searched again on next lookup.
+     */
+    public static void clearMessageCache() {
+        messagesMap.clear();
+    }
+
     /**
      * Add's the bundle to the internal list of default bundles.
      * <p/>
@@ -140,6 +162,7 @@ public class LocalizedTextUtil {
             DEFAULT_RESOURCE_BUNDLES.remove(resourceBundleName);
             DEFAULT_RESOURCE_BUNDLES.add(0, resourceBundleName);
         }
+        messagesMap.clear();
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Added default resource bundle '" + resourceBundleName + "' to default resource bundles = " + DEFAULT_RESOURCE_BUNDLES);
@@ -197,6 +220,23 @@ public class LocalizedTextUtil {
      * @return a localized message based on the specified key, or null if no localized message can be found for it
      */
     public static String findDefaultText(String aTextName, Locale locale) {
+        if (messageCacheSize <= 0) {
+            return doFindDefaultText(aTextName, locale);
+        }
+        reloadBundles();
+        MessageKey cacheKey = new MessageKey(null, aTextName, locale);
+        Object text = messagesMap.get(cacheKey);
+        if (text == null) {
+            text = doFindDefaultText(aTextName, locale);
+            if (text == null) {
+                text = MISSING;
+            }
+            cacheMessage(cacheKey, text);
+        }
+        return text != MISSING ? (String) text : null;
+    }
+
+    private static String doFindDefaultText(String aTextName, Locale locale) {
         List<String> localList = DEFAULT_RESOURCE_BUNDLES;
 
         for (String bundleName : localList) {
@@ -279,6 +319,7 @@ public class LocalizedTextUtil {
         synchronized (bundlesMap) {
             delegatedClassLoader = classLoader;
         }
+        messagesMap.clear();
     }
 
     /**
@@ -288,6 +329,7 @@ public class LocalizedTextUtil {
      */
     public static void clearBundle(final String bundleName) {
         bundlesMap.remove(bundleName);
+        messagesMap.clear();
     }
 
 
@@ -422,7 +464,7 @@ public class LocalizedTextUtil {
         }
 
         // search up class hierarchy
-        String msg = findMessage(aClass, aTextName, indexedTextName, locale, args, null, valueStack);
+        String msg = findCachedMessage(aClass, aTextName, indexedTextName, locale, args, valueStack);
 
         if (msg != null) {
             return msg;
@@ -609,9 +651,7 @@ public class LocalizedTextUtil {
 
             // defaultMessage may be null
             if (message != null) {
-                MessageFormat mf = buildMessageFormat(message, locale);
-
-                String msg = formatWithNullDetection(mf, args);
+                String msg = format(message, locale, args);
                 result = new GetDefaultMessageReturnArg(msg, found);
             }
         }
@@ -654,6 +694,95 @@ public class LocalizedTextUtil {
         return format;
     }
 
+    /**
+     * Looks up the message pattern resolved by a previous {@link #findMessage} of the same class, key and
+     * locale, misses are cached too.
+     */
+    private static String findCachedMessage(Class clazz, String key, String indexedKey, Locale locale, Object[] args,
+                                            ValueStack valueStack) {
+        if (messageCacheSize <= 0) {
+            return findMessage(clazz, key, indexedKey, locale, args, null, valueStack);
+        }
+        if (valueStack != null)
+            reloadBundles(valueStack.getContext());
+        MessageKey cacheKey = new MessageKey(clazz, key, locale);
+        Object pattern = messagesMap.get(cacheKey);
+        if (pattern == null) {
+            pattern = findMessagePattern(clazz, key, indexedKey, locale);
+            if (pattern == null) {
+                pattern = MISSING;
+            }
+            cacheMessage(cacheKey, pattern);
+        }
+        if (pattern == MISSING) {
+            return null;
+        }
+        String msg = format((String) pattern, locale, args);
+        // formatted to "null", keep searching the way findMessage does
+        return msg != null ? msg : findMessage(clazz, key, indexedKey, locale, args, null, valueStack);
+    }
+
+    private static void cacheMessage(MessageKey cacheKey, Object value) {
+        if (messagesMap.size() >= messageCacheSize) {
+            messagesMap.clear();
+        }
+        messagesMap.put(cacheKey, value);
+    }
+
+    private static String format(String pattern, Locale locale, Object[] args) {
+        if (pattern.indexOf('{') < 0 && pattern.indexOf('\'') < 0) {
+            // nothing to substitute or unquote
+            return "null".equals(pattern) ? null : pattern;
+        }
+        return formatWithNullDetection(buildMessageFormat(pattern, locale), args);
+    }
+
+    /**
+     * Same traversal as {@link #findMessage} but returns the raw pattern.
+     */
+    private static String findMessagePattern(Class clazz, String key, String indexedKey, Locale locale) {
+        String pattern = getPattern(clazz.getName(), locale, key, indexedKey);
+        if (pattern != null) {
+            return pattern;
+        }
+        for (Class anInterface : clazz.getInterfaces()) {
+            pattern = getPattern(anInterface.getName(), locale, key, indexedKey);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        if (clazz.isInterface()) {
+            for (Class anInterface : clazz.getInterfaces()) {
+                pattern = findMessagePattern(anInterface, key, indexedKey, locale);
+                if (pattern != null) {
+                    return pattern;
+                }
+            }
+        } else if (!clazz.equals(Object.class) && !clazz.isPrimitive()) {
+            return findMessagePattern(clazz.getSuperclass(), key, indexedKey, locale);
+        }
+        return null;
+    }
+
+    private static String getPattern(String bundleName, Locale locale, String key, String indexedKey) {
+        ResourceBundle bundle = findResourceBundle(bundleName, locale);
+        if (bundle == null) {
+            return null;
+        }
+        try {
+            return bundle.getString(key);
+        } catch (MissingResourceException e) {
+            if (indexedKey == null) {
+                return null;
+            }
+        }
+        try {
+            return bundle.getString(indexedKey);
+        } catch (MissingResourceException e) {
+            return null;
+        }
+    }
+
     /**
      * Traverse up class hierarchy looking for message.  Looks at class, then implemented interface,
      * before going up hierarchy.
@@ -735,6 +864,7 @@ public class LocalizedTextUtil {
                 }
                 if (!reloaded) {
                     bundlesMap.clear();
+                    messagesMap.clear();
                     clearMap(ResourceBundle.class, null, "cacheList");
                     // now, for the true and utter hack, if we're running in tomcat, clear
                     // it's class loader resource cache as well.
@@ -799,6 +929,7 @@ public class LocalizedTextUtil {
     public static void reset() {
         clearDefaultResourceBundles();
         bundlesMap.clear();
+        messagesMap.clear();
     }
 
 
@@ -812,6 +943,38 @@ public class LocalizedTextUtil {
         }
     }
 
+    private static final class MessageKey {
+        private final Class clazz;
+        private final String key;
+        private final Locale locale;
+        private final int hash;
+
+        MessageKey(Class clazz, String key, Locale locale) {
+            this.clazz = clazz;
+            this.key = key;
+            this.locale = locale;
+            this.hash = (31 * (clazz != null ? clazz.hashCode() : 0) + key.hashCode()) * 31
+                    + (locale != null ? locale.hashCode() : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MessageKey)) {
+                return false;
+            }
+            MessageKey that = (MessageKey) obj;
+            return clazz == that.clazz && key.equals(that.key) && Objects.equals(locale, that.locale);
+        }
+    }
+
     private static class EmptyResourceBundle extends ResourceBundle {
         @Override
         public Enumeration<String> getKeys() {
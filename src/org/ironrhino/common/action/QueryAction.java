@@ -1,6 +1,6 @@
 package org.ironrhino.common.action;
 
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,17 +10,18 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.struts2.ServletActionContext;
+import org.ironrhino.core.jdbc.CsvResultSetExporter;
 import org.ironrhino.core.jdbc.JdbcQueryService;
-import org.ironrhino.core.jdbc.LineHandler;
 import org.ironrhino.core.jdbc.QueryCriteria;
+import org.ironrhino.core.jdbc.ResultSetExporter;
 import org.ironrhino.core.jdbc.SqlUtils;
+import org.ironrhino.core.jdbc.XlsxResultSetExporter;
 import org.ironrhino.core.metadata.Authorize;
 import org.ironrhino.core.metadata.AutoConfig;
 import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.security.role.UserRole;
 import org.ironrhino.core.spring.configuration.ResourcePresentConditional;
 import org.ironrhino.core.struts.BaseAction;
-import org.ironrhino.core.util.ErrorMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -41,6 +42,8 @@ public class QueryAction extends BaseAction {
 
 	protected ResultPage<Map<String, Object>> resultPage;
 
+	protected String format;
+
 	@Value("${query.result.maxSize:100000}")
 	private int resultMaxSize = 100000;
 
@@ -74,6 +77,14 @@ public class QueryAction extends BaseAction {
 		return tables;
 	}
 
+	public String getFormat() {
+		return format;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+
 	public ResultPage<Map<String, Object>> getResultPage() {
 		return resultPage;
 	}
@@ -117,39 +128,20 @@ public class QueryAction extends BaseAction {
 					}
 				}
 			}
-			long count = jdbcQueryService.count(sql, paramMap);
-			if (count > resultMaxSize)
-				throw new ErrorMessage("query.result.size.exceed", new Object[] { resultMaxSize });
 			HttpServletResponse response = ServletActionContext.getResponse();
-			response.setCharacterEncoding(csvDefaultEncoding);
-			response.setHeader("Content-type", "text/csv");
-			response.setHeader("Content-disposition", "attachment;filename=data.csv");
-			final PrintWriter writer = response.getWriter();
-			jdbcQueryService.query(sql, paramMap, new LineHandler() {
-				@Override
-				public boolean isWithHeader() {
-					return true;
-				}
-
-				@Override
-				public String getColumnSeperator() {
-					return ",";
-				}
-
-				@Override
-				public String getLineSeperator() {
-					return "\r\n";
-				}
-
-				@Override
-				public void handleLine(int index, String line) {
-					writer.write(line);
-					writer.write(getLineSeperator());
-					if (index > 0 && index % 100 == 0)
-						writer.flush();
-				}
-			});
-			writer.close();
+			boolean xlsx = "xlsx".equalsIgnoreCase(format);
+			if (xlsx) {
+				response.setHeader("Content-type", XlsxResultSetExporter.CONTENT_TYPE);
+				response.setHeader("Content-disposition", "attachment;filename=data.xlsx");
+			} else {
+				response.setHeader("Content-type", "text/csv;charset=" + csvDefaultEncoding);
+				response.setHeader("Content-disposition", "attachment;filename=data.csv");
+			}
+			OutputStream os = response.getOutputStream();
+			try (ResultSetExporter exporter = xlsx ? new XlsxResultSetExporter(os)
+					: new CsvResultSetExporter(os, csvDefaultEncoding)) {
+				jdbcQueryService.export(sql, paramMap, exporter, true, resultMaxSize);
+			}
 		}
 		return NONE;
 	}
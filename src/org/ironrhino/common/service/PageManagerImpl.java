@@ -9,6 +9,8 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.criterion.DetachedCriteria;
@@ -17,24 +19,45 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.ironrhino.common.model.Page;
 import org.ironrhino.core.aop.AopContext;
+import org.ironrhino.core.aop.PublishAware;
 import org.ironrhino.core.cache.CheckCache;
 import org.ironrhino.core.cache.EvictCache;
+import org.ironrhino.core.event.EntityOperationEvent;
+import org.ironrhino.core.event.EntityOperationType;
+import org.ironrhino.core.event.EventPublisher;
 import org.ironrhino.core.hibernate.CriterionUtils;
 import org.ironrhino.core.model.ResultPage;
-import org.ironrhino.core.search.elasticsearch.ElasticSearchCriteria;
-import org.ironrhino.core.search.elasticsearch.ElasticSearchService;
+import org.ironrhino.core.search.SearchCriteria;
+import org.ironrhino.core.search.SearchService;
 import org.ironrhino.core.service.BaseManagerImpl;
 import org.ironrhino.core.util.JsonUtils;
 import org.ironrhino.core.util.ValueThenKeyComparator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
 public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManager {
 
 	@Autowired(required = false)
-	private transient ElasticSearchService<Page> elasticSearchService;
+	private transient SearchService<Page> searchService;
+
+	@Value("${pageManager.tagIndex:true}")
+	private boolean tagIndexEnabled = true;
+
+	@Autowired(required = false)
+	private EventPublisher eventPublisher;
+
+	private volatile PageTagIndex tagIndex;
+
+	// changes arrived while loading tag index, guarded by itself
+	private final List<Consumer<PageTagIndex>> pendingTagIndexChanges = new ArrayList<>();
+
+	private boolean tagIndexLoading;
 
 	@Override
 	@Transactional
@@ -50,6 +73,8 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 	@EvictCache(key = "${page.path}", namespace = "page", renew = "${page}")
 	public void update(Page page) {
 		super.update(page);
+		// not published by PublishAspect
+		publishAfterCommit(page, EntityOperationType.UPDATE);
 	}
 
 	@Override
@@ -99,6 +124,8 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 			p.setContent("");
 		}
 		super.save(p);
+		// self invocation bypasses PublishAspect
+		publishAfterCommit(p, isnew ? EntityOperationType.CREATE : EntityOperationType.UPDATE);
 		return p;
 	}
 
@@ -120,6 +147,8 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 		page.setDraft(null);
 		page.setDraftDate(null);
 		super.save(page);
+		// self invocation bypasses PublishAspect
+		publishAfterCommit(page, EntityOperationType.UPDATE);
 		return page;
 	}
 
@@ -151,6 +180,15 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 	@Transactional(readOnly = true)
 	public Page[] findPreviousAndNextPage(Page page, String... tags) {
 		Page[] arr = new Page[2];
+		PageTagIndex index = searchService == null ? getTagIndex() : null;
+		if (index != null) {
+			String[] ids = index.findPreviousAndNext(page.getDisplayOrder(), page.getCreateDate(), tags);
+			if (ids[0] != null)
+				arr[0] = get(ids[0]);
+			if (ids[1] != null)
+				arr[1] = get(ids[1]);
+			return arr;
+		}
 		DetachedCriteria dc = detachedCriteria();
 		for (String tag : tags)
 			if (StringUtils.isNotBlank(tag))
@@ -179,7 +217,8 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 		if (tag.length == 0 || StringUtils.isBlank(tag[0]))
 			return Collections.EMPTY_LIST;
 		List<Page> list;
-		if (elasticSearchService != null) {
+		PageTagIndex index = searchService == null ? getTagIndex() : null;
+		if (searchService != null) {
 			String query = null;
 			if (tag.length == 1) {
 				query = "tags:" + tag[0];
@@ -190,15 +229,17 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 					sb.append(" AND ").append("tags:").append(tag[i]);
 				query = sb.toString();
 			}
-			ElasticSearchCriteria criteria = new ElasticSearchCriteria();
+			SearchCriteria criteria = new SearchCriteria();
 			criteria.setQuery(query);
 			criteria.setTypes(new String[] { "page" });
 			criteria.addSort("displayOrder", false);
 			criteria.addSort("createDate", true);
 			if (limit > 0)
-				list = elasticSearchService.search(criteria, null, limit);
+				list = searchService.search(criteria, null, limit);
 			else
-				list = elasticSearchService.search(criteria);
+				list = searchService.search(criteria);
+		} else if (index != null) {
+			list = getPages(index.find(0, limit > 0 ? limit : ResultPage.DEFAULT_MAX_PAGESIZE, tag));
 		} else {
 			DetachedCriteria dc = detachedCriteria();
 			dc.addOrder(Order.asc("displayOrder"));
@@ -240,9 +281,9 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 				sb.append(" AND ").append("tags:").append(tag[i]);
 			query = sb.toString();
 		}
-		ElasticSearchCriteria criteria = resultPage.getCriteria();
+		SearchCriteria criteria = resultPage.getCriteria();
 		if (criteria == null) {
-			criteria = new ElasticSearchCriteria();
+			criteria = new SearchCriteria();
 			resultPage.setCriteria(criteria);
 		}
 		criteria.setQuery(query);
@@ -252,8 +293,20 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 			criteria.addSort("createDate", true);
 		}
 
-		if (elasticSearchService != null) {
-			resultPage = elasticSearchService.search(resultPage);
+		PageTagIndex index = searchService == null ? getTagIndex() : null;
+		if (searchService != null) {
+			resultPage = searchService.search(resultPage);
+		} else if (index != null && !resultPage.isKeyset() && !resultPage.isReverse()
+				&& isDefaultTagSorts(criteria.getSorts())) {
+			long time = System.currentTimeMillis();
+			resultPage.setTotalResults(index.count(tag));
+			if (resultPage.getPageNo() < 1)
+				resultPage.setPageNo(1);
+			int start = resultPage.isPaginating() ? (resultPage.getPageNo() - 1) * resultPage.getPageSize() : 0;
+			int limit = resultPage.isPaginating() ? resultPage.getPageSize() : ResultPage.DEFAULT_MAX_PAGESIZE;
+			resultPage.setResult(getPages(index.find(start, limit, tag)));
+			resultPage.setStart(start);
+			resultPage.setTookInMillis(System.currentTimeMillis() - time);
 		} else {
 			DetachedCriteria dc = detachedCriteria();
 			for (int i = 0; i < tag.length; i++)
@@ -273,11 +326,12 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 	public Map<String, Integer> findMatchedTags(String keyword) {
 		if (keyword == null || keyword.length() < 2)
 			return Collections.EMPTY_MAP;
-		if (elasticSearchService != null) {
-			ElasticSearchCriteria cc = new ElasticSearchCriteria();
+		PageTagIndex index = searchService == null ? getTagIndex() : null;
+		if (searchService != null) {
+			SearchCriteria cc = new SearchCriteria();
 			cc.setQuery(new StringBuilder("tags:").append(keyword).append("*").toString());
 			cc.setTypes(new String[] { "page" });
-			Map<String, Integer> map = elasticSearchService.countTermsByField(cc, "tags");
+			Map<String, Integer> map = searchService.countTermsByField(cc, "tags");
 			Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
 			while (it.hasNext()) {
 				Map.Entry<String, Integer> entry = it.next();
@@ -285,6 +339,8 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 					it.remove();
 			}
 			return map;
+		} else if (index != null) {
+			return index.countTags(keyword);
 		} else {
 			final Map<String, Integer> map = new HashMap<>();
 			DetachedCriteria dc = detachedCriteria();
@@ -312,6 +368,107 @@ public class PageManagerImpl extends BaseManagerImpl<Page> implements PageManage
 
 	}
 
+	@EventListener
+	public void onApplicationEvent(EntityOperationEvent<Page> event) {
+		Page page = event.getEntity();
+		if (event.getType() == EntityOperationType.DELETE)
+			changeTagIndex(index -> index.remove(page.getId()));
+		else if (event.getType() != EntityOperationType.READ)
+			changeTagIndex(
+					index -> index.put(page.getId(), page.getDisplayOrder(), page.getCreateDate(), page.getTags()));
+	}
+
+	private void publishAfterCommit(Page page, EntityOperationType type) {
+		Runnable publish = () -> {
+			EntityOperationEvent<Page> event = new EntityOperationEvent<>(page, type);
+			if (eventPublisher != null)
+				eventPublisher.publish(event, Page.class.getAnnotation(PublishAware.class).scope());
+			else
+				onApplicationEvent(event);
+		};
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					publish.run();
+				}
+			});
+		else
+			publish.run();
+	}
+
+	private void changeTagIndex(Consumer<PageTagIndex> change) {
+		PageTagIndex index = tagIndex;
+		if (index == null) {
+			synchronized (pendingTagIndexChanges) {
+				index = tagIndex;
+				if (index == null) {
+					// loading reads committed pages, replay changes racing with it
+					if (tagIndexLoading)
+						pendingTagIndexChanges.add(change);
+					return;
+				}
+			}
+		}
+		change.accept(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	private PageTagIndex getTagIndex() {
+		if (!tagIndexEnabled)
+			return null;
+		PageTagIndex index = tagIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = tagIndex;
+				if (index == null) {
+					synchronized (pendingTagIndexChanges) {
+						tagIndexLoading = true;
+					}
+					// build aside and publish as a whole
+					PageTagIndex loading = new PageTagIndex();
+					boolean loaded = false;
+					try {
+						List<Object[]> rows = executeFind(session -> session
+								.createQuery("select p.id, p.displayOrder, p.createDate, p.tags from Page p").list());
+						for (Object[] row : rows)
+							loading.put((String) row[0], (Integer) row[1], (Date) row[2], (Set<String>) row[3]);
+						loaded = true;
+					} finally {
+						synchronized (pendingTagIndexChanges) {
+							if (loaded) {
+								for (Consumer<PageTagIndex> change : pendingTagIndexChanges)
+									change.accept(loading);
+								tagIndex = index = loading;
+							}
+							pendingTagIndexChanges.clear();
+							tagIndexLoading = false;
+						}
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	private List<Page> getPages(List<String> ids) {
+		List<Page> list = new ArrayList<>(ids.size());
+		for (Page page : get(ids))
+			if (page != null)
+				list.add(page);
+		return list;
+	}
+
+	private static boolean isDefaultTagSorts(Map<String, Boolean> sorts) {
+		if (sorts.size() != 2)
+			return false;
+		Iterator<Map.Entry<String, Boolean>> it = sorts.entrySet().iterator();
+		Map.Entry<String, Boolean> first = it.next();
+		Map.Entry<String, Boolean> second = it.next();
+		return first.getKey().equals("displayOrder") && !first.getValue() && second.getKey().equals("createDate")
+				&& second.getValue();
+	}
+
 	protected static String encodeURL(String content) {
 		return content != null ? content.replaceAll("\"(/assets/[^\"]*)\"", "\"<@url value=\"$1\"/>\"") : null;
 	}
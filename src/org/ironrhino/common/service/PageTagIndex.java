@@ -0,0 +1,192 @@
+package org.ironrhino.common.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ironrhino.core.util.ValueThenKeyComparator;
+
+/**
+ * In-memory inverted index from tag to pages, each tag keeps its pages
+ * ordered by displayOrder asc and createDate desc
+ */
+public class PageTagIndex {
+
+	private static final Entry[] EMPTY = new Entry[0];
+
+	private static final Comparator<Entry> ORDER = (a, b) -> {
+		int i = Integer.compare(a.displayOrder, b.displayOrder);
+		if (i == 0)
+			i = Long.compare(b.createDate, a.createDate);
+		if (i == 0)
+			i = a.id.compareTo(b.id);
+		return i;
+	};
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	// replaced as a whole on change, never mutated
+	private final Map<String, Entry[]> tags = new ConcurrentHashMap<>();
+
+	public synchronized void put(String id, int displayOrder, Date createDate, Collection<String> pageTags) {
+		Set<String> set = new LinkedHashSet<>();
+		if (pageTags != null)
+			for (String tag : pageTags)
+				if (StringUtils.isNotBlank(tag))
+					set.add(tag.trim());
+		Entry entry = new Entry(id, displayOrder, createDate != null ? createDate.getTime() : 0,
+				Collections.unmodifiableSet(set));
+		Entry old = entries.put(id, entry);
+		if (old != null)
+			for (String tag : old.tags)
+				unlink(tag, old);
+		for (String tag : entry.tags)
+			link(tag, entry);
+	}
+
+	public synchronized void remove(String id) {
+		Entry old = entries.remove(id);
+		if (old != null)
+			for (String tag : old.tags)
+				unlink(tag, old);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		tags.clear();
+	}
+
+	public int count(String... tag) {
+		return filter(tag).size();
+	}
+
+	public List<String> find(int start, int limit, String... tag) {
+		List<Entry> list = filter(tag);
+		if (start >= list.size())
+			return Collections.emptyList();
+		int end = limit > 0 ? Math.min(list.size(), start + limit) : list.size();
+		List<String> ids = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++)
+			ids.add(list.get(i).id);
+		return ids;
+	}
+
+	/**
+	 * @return ids of previous and next page, same as the criteria used by
+	 *         {@link PageManager#findPreviousAndNextPage}
+	 */
+	public String[] findPreviousAndNext(int displayOrder, Date createDate, String... tag) {
+		long time = createDate != null ? createDate.getTime() : 0;
+		Entry previous = null;
+		Entry next = null;
+		for (Entry e : filter(tag)) {
+			if (e.createDate > time && e.displayOrder <= displayOrder) {
+				if (previous == null || e.displayOrder > previous.displayOrder
+						|| e.displayOrder == previous.displayOrder && e.createDate < previous.createDate)
+					previous = e;
+			} else if (e.createDate < time && e.displayOrder >= displayOrder) {
+				if (next == null || e.displayOrder < next.displayOrder
+						|| e.displayOrder == next.displayOrder && e.createDate > next.createDate)
+					next = e;
+			}
+		}
+		return new String[] { previous != null ? previous.id : null, next != null ? next.id : null };
+	}
+
+	public Map<String, Integer> countTags(String prefix) {
+		Map<String, Integer> map = new HashMap<>();
+		for (Map.Entry<String, Entry[]> entry : tags.entrySet())
+			if (entry.getKey().startsWith(prefix) && entry.getValue().length > 0)
+				map.put(entry.getKey(), entry.getValue().length);
+		List<Map.Entry<String, Integer>> list = new ArrayList<>(map.entrySet());
+		Collections.sort(list, ValueThenKeyComparator.<String, Integer>getDefaultInstance());
+		Map<String, Integer> sortedMap = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : list)
+			sortedMap.put(entry.getKey(), entry.getValue());
+		return sortedMap;
+	}
+
+	private List<Entry> filter(String... tag) {
+		List<String> required = new ArrayList<>(tag.length);
+		for (String t : tag)
+			if (StringUtils.isNotBlank(t))
+				required.add(t.trim());
+		if (required.isEmpty())
+			return Collections.emptyList();
+		// scan the rarest tag and check the others
+		Entry[] smallest = null;
+		for (String t : required) {
+			Entry[] arr = tags.getOrDefault(t, EMPTY);
+			if (smallest == null || arr.length < smallest.length)
+				smallest = arr;
+		}
+		if (required.size() == 1)
+			return Arrays.asList(smallest);
+		List<Entry> list = new ArrayList<>();
+		for (Entry e : smallest)
+			if (e.tags.containsAll(required))
+				list.add(e);
+		return list;
+	}
+
+	private void link(String tag, Entry entry) {
+		Entry[] arr = tags.getOrDefault(tag, EMPTY);
+		int index = Arrays.binarySearch(arr, entry, ORDER);
+		if (index >= 0)
+			return;
+		index = -index - 1;
+		Entry[] copy = new Entry[arr.length + 1];
+		System.arraycopy(arr, 0, copy, 0, index);
+		copy[index] = entry;
+		System.arraycopy(arr, index, copy, index + 1, arr.length - index);
+		tags.put(tag, copy);
+	}
+
+	private void unlink(String tag, Entry entry) {
+		Entry[] arr = tags.get(tag);
+		if (arr == null)
+			return;
+		int index = Arrays.binarySearch(arr, entry, ORDER);
+		if (index < 0)
+			return;
+		if (arr.length == 1) {
+			tags.remove(tag);
+			return;
+		}
+		Entry[] copy = new Entry[arr.length - 1];
+		System.arraycopy(arr, 0, copy, 0, index);
+		System.arraycopy(arr, index + 1, copy, index, arr.length - index - 1);
+		tags.put(tag, copy);
+	}
+
+	private static class Entry {
+
+		private final String id;
+
+		private final int displayOrder;
+
+		private final long createDate;
+
+		private final Set<String> tags;
+
+		Entry(String id, int displayOrder, long createDate, Set<String> tags) {
+			this.id = id;
+			this.displayOrder = displayOrder;
+			this.createDate = createDate;
+			this.tags = tags;
+		}
+
+	}
+
+}
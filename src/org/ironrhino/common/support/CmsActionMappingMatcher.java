@@ -4,6 +4,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +25,7 @@ import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.struts.mapper.AbstractActionMapper;
 import org.ironrhino.core.struts.mapper.ActionMappingMatcher;
 import org.ironrhino.core.struts.mapper.DefaultActionMapper;
+import org.ironrhino.core.util.CharTrieNode;
 import org.ironrhino.core.util.RequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +37,8 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 
 	public static final String DEFAULT_PAGE_PATH_PREFIX = "/p/";
 
+	private static final String LIST_PATH = "/list/";
+
 	@Value("${cms.pagePathPrefix:" + DEFAULT_PAGE_PATH_PREFIX + "}")
 	private String pagePathPrefix = DEFAULT_PAGE_PATH_PREFIX;
 
@@ -53,6 +57,9 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 
 	private List<String> issuesList;
 
+	// rebuilt lazily after lists changed
+	private volatile Routes routes;
+
 	@Autowired(required = false)
 	private SettingControl settingControl;
 
@@ -78,105 +85,50 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 				mapping.setParams(params);
 				return mapping;
 			}
-			for (String name : seriesesList) {
-				String pageurl = new StringBuilder("/").append(URLEncoder.encode(name, encoding))
-						.append(DEFAULT_PAGE_PATH_PREFIX).toString();
-				if (uri.equals("/" + URLEncoder.encode(name, encoding)) || uri.startsWith(pageurl)) {
-					ActionMapping mapping = new ActionMapping();
-					mapping.setNamespace(SeriesPageAction.NAMESPACE);
-					mapping.setName(SeriesPageAction.ACTION_NAME);
-					Map<String, Object> params = new HashMap<>(8);
-					params.put("name", name);
-					String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
-					if (StringUtils.isNumeric(pn))
-						params.put("resultPage.pageNo", pn);
-					String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
-					if (StringUtils.isNumeric(ps))
-						params.put("resultPage.pageSize", ps);
-					if (uri.startsWith(pageurl)) {
-						params.put(AbstractActionMapper.ID, uri.substring(pageurl.length()));
-					}
-					mapping.setParams(params);
-					return mapping;
-				}
+			if (uri.length() < 2 || uri.charAt(0) != '/')
+				return null;
+			Routes r = routes;
+			if (r == null || !r.encoding.equals(encoding)) {
+				r = new Routes(encoding, seriesesList, columnsList, issuesList);
+				routes = r;
 			}
-			for (String name : columnsList) {
-				String listurl = new StringBuilder("/").append(URLEncoder.encode(name, encoding)).append("/list/")
-						.toString();
-				String pageurl = new StringBuilder("/").append(URLEncoder.encode(name, encoding))
-						.append(DEFAULT_PAGE_PATH_PREFIX).toString();
-				if (uri.equals("/" + URLEncoder.encode(name, encoding)) || uri.startsWith(listurl)
-						|| uri.startsWith(pageurl)) {
-					ActionMapping mapping = new ActionMapping();
-					mapping.setNamespace(ColumnPageAction.NAMESPACE);
-					mapping.setName(ColumnPageAction.ACTION_NAME);
-					Map<String, Object> params = new HashMap<>(8);
-					params.put("name", name);
-					String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
-					if (StringUtils.isNumeric(pn))
-						params.put("resultPage.pageNo", pn);
-					String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
-					if (StringUtils.isNumeric(ps))
-						params.put("resultPage.pageSize", ps);
-					if (uri.startsWith(listurl)) {
-						mapping.setMethod("list");
-						try {
-							params.put(AbstractActionMapper.ID,
-									URLDecoder.decode(uri.substring(listurl.length()), encoding));
-						} catch (UnsupportedEncodingException e) {
-							e.printStackTrace();
-						}
-					} else if (uri.startsWith(pageurl)) {
-						mapping.setMethod("p");
-						try {
-							params.put(AbstractActionMapper.ID,
-									URLDecoder.decode(uri.substring(pageurl.length()), encoding));
-						} catch (UnsupportedEncodingException e) {
-							e.printStackTrace();
-						}
-					}
-					mapping.setParams(params);
+			int end = uri.indexOf('/', 1);
+			if (end < 0)
+				end = uri.length();
+			Section[] sections = r.find(uri, 1, end);
+			if (sections == null)
+				return null;
+			boolean exact = end == uri.length();
+			boolean list = !exact && uri.startsWith(LIST_PATH, end);
+			boolean page = !exact && uri.startsWith(DEFAULT_PAGE_PATH_PREFIX, end);
+			for (Section section : sections) {
+				if (section.kind == Kind.SERIES) {
+					if (!exact && !page)
+						continue;
+					ActionMapping mapping = createMapping(request, SeriesPageAction.NAMESPACE,
+							SeriesPageAction.ACTION_NAME, section.name);
+					if (page)
+						mapping.getParams().put(AbstractActionMapper.ID,
+								uri.substring(end + DEFAULT_PAGE_PATH_PREFIX.length()));
 					return mapping;
 				}
-			}
-			for (String name : issuesList) {
-				String listurl = new StringBuilder("/").append(URLEncoder.encode(name, encoding)).append("/list/")
-						.toString();
-				String pageurl = new StringBuilder("/").append(URLEncoder.encode(name, encoding))
-						.append(DEFAULT_PAGE_PATH_PREFIX).toString();
-				if (uri.equals("/" + URLEncoder.encode(name, encoding)) || uri.startsWith(listurl)
-						|| uri.startsWith(pageurl)) {
-					ActionMapping mapping = new ActionMapping();
-					mapping.setNamespace(IssuePageAction.NAMESPACE);
-					mapping.setName(IssuePageAction.ACTION_NAME);
-					Map<String, Object> params = new HashMap<>(8);
-					params.put("name", name);
-					String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
-					if (StringUtils.isNumeric(pn))
-						params.put("resultPage.pageNo", pn);
-					String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
-					if (StringUtils.isNumeric(ps))
-						params.put("resultPage.pageSize", ps);
-					if (uri.startsWith(listurl)) {
-						mapping.setMethod("list");
-						try {
-							params.put(AbstractActionMapper.ID,
-									URLDecoder.decode(uri.substring(listurl.length()), encoding));
-						} catch (UnsupportedEncodingException e) {
-							e.printStackTrace();
-						}
-					} else if (uri.startsWith(pageurl)) {
-						mapping.setMethod("p");
-						try {
-							params.put(AbstractActionMapper.ID,
-									URLDecoder.decode(uri.substring(pageurl.length()), encoding));
-						} catch (UnsupportedEncodingException e) {
-							e.printStackTrace();
-						}
-					}
-					mapping.setParams(params);
-					return mapping;
+				if (!exact && !list && !page)
+					continue;
+				ActionMapping mapping = section.kind == Kind.COLUMN
+						? createMapping(request, ColumnPageAction.NAMESPACE, ColumnPageAction.ACTION_NAME,
+								section.name)
+						: createMapping(request, IssuePageAction.NAMESPACE, IssuePageAction.ACTION_NAME,
+								section.name);
+				if (list) {
+					mapping.setMethod("list");
+					mapping.getParams().put(AbstractActionMapper.ID,
+							URLDecoder.decode(uri.substring(end + LIST_PATH.length()), encoding));
+				} else if (page) {
+					mapping.setMethod("p");
+					mapping.getParams().put(AbstractActionMapper.ID,
+							URLDecoder.decode(uri.substring(end + DEFAULT_PAGE_PATH_PREFIX.length()), encoding));
 				}
+				return mapping;
 			}
 		} catch (UnsupportedEncodingException e) {
 			e.printStackTrace();
@@ -184,6 +136,23 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 		return null;
 	}
 
+	private static ActionMapping createMapping(HttpServletRequest request, String namespace, String actionName,
+			String name) {
+		ActionMapping mapping = new ActionMapping();
+		mapping.setNamespace(namespace);
+		mapping.setName(actionName);
+		Map<String, Object> params = new HashMap<>(8);
+		params.put("name", name);
+		String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
+		if (StringUtils.isNumeric(pn))
+			params.put("resultPage.pageNo", pn);
+		String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
+		if (StringUtils.isNumeric(ps))
+			params.put("resultPage.pageSize", ps);
+		mapping.setParams(params);
+		return mapping;
+	}
+
 	private void buildSerieses() {
 		List<String> list = new ArrayList<>();
 		if (StringUtils.isNotBlank(serieses))
@@ -193,6 +162,7 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 			for (String s : settingControl.getStringArray(Constants.SETTING_KEY_CMS_SERIESES))
 				list.add(s);
 		seriesesList = list;
+		routes = null;
 	}
 
 	private void buildColumns() {
@@ -204,6 +174,7 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 			for (String s : settingControl.getStringArray(Constants.SETTING_KEY_CMS_COLUMNS))
 				list.add(s);
 		columnsList = list;
+		routes = null;
 	}
 
 	private void buildIssues() {
@@ -215,6 +186,7 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 			for (String s : settingControl.getStringArray(Constants.SETTING_KEY_CMS_ISSUES))
 				list.add(s);
 		issuesList = list;
+		routes = null;
 	}
 
 	@EventListener
@@ -249,5 +221,69 @@ public class CmsActionMappingMatcher implements ActionMappingMatcher {
 					list.add(s);
 			issuesList = list;
 		}
+		routes = null;
+	}
+
+	private enum Kind {
+		SERIES, COLUMN, ISSUE
+	}
+
+	private static class Section {
+
+		private final Kind kind;
+
+		private final String name;
+
+		Section(Kind kind, String name) {
+			this.kind = kind;
+			this.name = name;
+		}
+
+	}
+
+	// trie of url encoded names, sections under same name are kept in
+	// series, column, issue order
+	private static class Routes {
+
+		private final String encoding;
+
+		private final Node root = new Node();
+
+		Routes(String encoding, List<String> serieses, List<String> columns, List<String> issues)
+				throws UnsupportedEncodingException {
+			this.encoding = encoding;
+			for (String name : serieses)
+				add(Kind.SERIES, name);
+			for (String name : columns)
+				add(Kind.COLUMN, name);
+			for (String name : issues)
+				add(Kind.ISSUE, name);
+		}
+
+		private void add(Kind kind, String name) throws UnsupportedEncodingException {
+			String encoded = URLEncoder.encode(name, encoding);
+			Node node = root.getOrCreate(encoded);
+			node.sections = Arrays.copyOf(node.sections, node.sections.length + 1);
+			node.sections[node.sections.length - 1] = new Section(kind, name);
+		}
+
+		Section[] find(String uri, int start, int end) {
+			Node node = root;
+			for (int i = start; i < end && node != null; i++)
+				node = node.getChild(uri.charAt(i));
+			return node != null && node.sections.length > 0 ? node.sections : null;
+		}
+
+	}
+
+	private static class Node extends CharTrieNode<Node> {
+
+		private Section[] sections = new Section[0];
+
+		@Override
+		protected Node newChild() {
+			return new Node();
+		}
+
 	}
 }
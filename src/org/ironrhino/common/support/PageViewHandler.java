@@ -1,16 +1,21 @@
 package org.ironrhino.common.support;
 
 import java.util.Date;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.ironrhino.common.service.PageViewService;
+import org.ironrhino.core.disruptor.DisruptorPipeline;
 import org.ironrhino.core.servlet.AccessHandler;
 import org.ironrhino.core.session.HttpSessionManager;
 import org.ironrhino.core.util.RequestUtils;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
@@ -21,32 +26,73 @@ public class PageViewHandler extends AccessHandler {
 	@Autowired(required = false)
 	private PageViewService pageViewService;
 
-	@Autowired(required = false)
-	private ExecutorService executorService;
-
 	@Autowired
 	private HttpSessionManager httpSessionManager;
 
+	@Autowired
+	private Logger logger;
+
+	@Value("${pageView.bufferSize:8192}")
+	private int bufferSize = 8192;
+
+	@Value("${pageView.waitStrategy:BLOCKING}")
+	private DisruptorPipeline.Strategy waitStrategy = DisruptorPipeline.Strategy.BLOCKING;
+
+	private DisruptorPipeline<PageView> pipeline;
+
+	@PostConstruct
+	public void init() {
+		if (pageViewService == null)
+			return;
+		pipeline = new DisruptorPipeline<>("pageView", bufferSize, batch -> {
+			for (PageView pv : batch)
+				put(pv);
+		}, 1, 1000, waitStrategy);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (pipeline != null)
+			pipeline.shutdown(10, TimeUnit.SECONDS);
+	}
+
 	@Override
 	public boolean handle(final HttpServletRequest request, HttpServletResponse response) {
 		String uri = RequestUtils.getRequestUri(request);
 		if (pageViewService != null && request.getMethod().equalsIgnoreCase("GET")
 				&& !RequestUtils.isInternalTesting(request) && !uri.startsWith("/assets/")
 				&& !uri.endsWith("/favicon.ico")) {
-			final String remoteAddr = request.getRemoteAddr();
-			final String requestURL = request.getRequestURL().toString();
-			final String sessionId = httpSessionManager.getSessionId(request);
+			PageView pv = new PageView();
+			pv.date = new Date();
+			pv.remoteAddr = request.getRemoteAddr();
+			pv.requestURL = request.getRequestURL().toString();
+			pv.sessionId = httpSessionManager.getSessionId(request);
 			String str = RequestUtils.getCookieValue(request, "U");
 			if (str == null)
 				str = RequestUtils.getCookieValue(request, "UU");
-			final String username = str;
-			final String referer = request.getHeader("Referer");
-			Runnable task = () -> pageViewService.put(new Date(), remoteAddr, requestURL, sessionId, username, referer);
-			if (executorService != null)
-				executorService.execute(task);
-			else
-				task.run();
+			pv.username = str;
+			pv.referer = request.getHeader("Referer");
+			// caller runs if the buffer is full
+			if (pipeline == null || !pipeline.tryPublish(pv))
+				put(pv);
 		}
 		return false;
 	}
+
+	private void put(PageView pv) {
+		try {
+			pageViewService.put(pv.date, pv.remoteAddr, pv.requestURL, pv.sessionId, pv.username, pv.referer);
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	private static class PageView {
+		Date date;
+		String remoteAddr;
+		String requestURL;
+		String sessionId;
+		String username;
+		String referer;
+	}
 }
@@ -1,10 +1,51 @@
 package org.ironrhino.common.support;
 
 import org.ironrhino.common.model.Region;
+import org.ironrhino.common.util.RegionMatcher;
+import org.ironrhino.common.util.RegionUtils;
+import org.ironrhino.core.event.EntityOperationEvent;
 import org.ironrhino.core.service.BaseTreeControl;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 @Component
 public class RegionTreeControl extends BaseTreeControl<Region> {
 
+	private volatile RegionMatcher regionMatcher;
+
+	public RegionMatcher getRegionMatcher() {
+		RegionMatcher matcher = regionMatcher;
+		if (matcher == null) {
+			Region tree = getTree();
+			synchronized (this) {
+				matcher = regionMatcher;
+				if (matcher == null)
+					regionMatcher = matcher = new RegionMatcher(tree);
+			}
+		}
+		return matcher;
+	}
+
+	public Region parse(String value) {
+		return RegionUtils.parse(value, getRegionMatcher());
+	}
+
+	public Region parseByAddress(String address) {
+		return RegionUtils.parseByAddress(address, getRegionMatcher());
+	}
+
+	@Override
+	public synchronized void buildTree() {
+		super.buildTree();
+		regionMatcher = null;
+	}
+
+	@Override
+	@EventListener
+	public void onApplicationEvent(EntityOperationEvent<Region> event) {
+		super.onApplicationEvent(event);
+		if (event.getEntity() instanceof Region)
+			regionMatcher = null;
+	}
+
 }
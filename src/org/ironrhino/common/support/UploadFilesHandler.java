@@ -1,8 +1,8 @@
 package org.ironrhino.common.support;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLDecoder;
 
@@ -10,11 +10,14 @@ import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.common.action.UploadAction;
+import org.ironrhino.core.fs.FileInfo;
 import org.ironrhino.core.fs.FileStorage;
+import org.ironrhino.core.fs.impl.LocalFileStorage;
 import org.ironrhino.core.servlet.AccessHandler;
 import org.ironrhino.core.util.RequestUtils;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -23,6 +26,11 @@ import org.springframework.stereotype.Component;
 @Order(2)
 public class UploadFilesHandler extends AccessHandler {
 
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+	@Autowired
+	private Logger logger;
+
 	@Autowired
 	private FileStorage fileStorage;
 
@@ -38,53 +46,156 @@ public class UploadFilesHandler extends AccessHandler {
 
 	@Override
 	public boolean handle(HttpServletRequest request, HttpServletResponse response) {
-		long since = request.getDateHeader("If-Modified-Since");
 		String uri = RequestUtils.getRequestUri(request);
 		String path = uri.substring(uri.indexOf('/', 1));
 		try {
 			path = URLDecoder.decode(path, "UTF-8");
-			long lastModified = fileStorage.getLastModified(path);
-			lastModified = lastModified / 1000 * 1000;
-			if (since > 0 && since == lastModified) {
-				response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
+			FileInfo info = fileStorage.getFileInfo(path);
+			if (info == null) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
 				return true;
 			}
-			InputStream is = fileStorage.open(path);
-			if (is == null) {
-				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			long length = info.getSize();
+			long lastModified = info.getLastModified() / 1000 * 1000;
+			String etag = info.getETag();
+			if (isNotModified(request, etag, lastModified)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				if (etag != null)
+					response.setHeader("ETag", etag);
 				return true;
 			}
+			if (etag != null)
+				response.setHeader("ETag", etag);
 			if (lastModified > 0)
 				response.setDateHeader("Last-Modified", lastModified);
+			response.setHeader("Accept-Ranges", "bytes");
 			String filename = path.substring(path.lastIndexOf("/") + 1);
 			String contentType = servletContext.getMimeType(filename);
 			if (contentType != null)
 				response.setContentType(contentType);
+
+			long offset = 0;
+			long count = length;
+			String range = request.getHeader("Range");
+			if (range != null && isRangeApplicable(request, etag, lastModified)) {
+				long[] r = parseRange(range, length);
+				if (r == null) {
+					response.setHeader("Content-Range", "bytes */" + length);
+					response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return true;
+				}
+				if (r.length == 2) {
+					offset = r[0];
+					count = r[1] - r[0] + 1;
+					response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+					response.setHeader("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + length);
+				}
+			}
+			response.setHeader("Content-Length", String.valueOf(count));
+			if ("HEAD".equalsIgnoreCase(request.getMethod()))
+				return true;
+			if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+					&& fileStorage instanceof LocalFileStorage) {
+				// let container write file with sendfile
+				File file = ((LocalFileStorage) fileStorage).getFile(path);
+				request.setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+				request.setAttribute("org.apache.tomcat.sendfile.start", offset);
+				request.setAttribute("org.apache.tomcat.sendfile.end", offset + count);
+				return true;
+			}
 			OutputStream os = response.getOutputStream();
 			try {
-				IOUtils.copy(is, os);
-				IOUtils.closeQuietly(os);
-			} catch (Exception e) {
+				fileStorage.transferTo(info, offset, count, os);
+				os.flush();
+			} catch (FileNotFoundException e) {
+				throw e;
+			} catch (IOException e) {
 				// supress ClientAbortException
 			}
-			IOUtils.closeQuietly(is);
 		} catch (FileNotFoundException fne) {
 			try {
-				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				if (!response.isCommitted())
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
 				return true;
 			} catch (IOException e1) {
-				e1.printStackTrace();
+				logger.error(e1.getMessage(), e1);
 			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			logger.error(e.getMessage(), e);
 			try {
-				response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				if (!response.isCommitted())
+					response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 				return true;
 			} catch (IOException e1) {
-				e1.printStackTrace();
+				logger.error(e1.getMessage(), e1);
 			}
 		}
 		return true;
 	}
 
+	private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			if (etag == null)
+				return false;
+			for (String s : ifNoneMatch.split(","))
+				if (s.trim().equals("*") || StringUtils.removeStart(s.trim(), "W/").equals(etag))
+					return true;
+			return false;
+		}
+		long since = request.getDateHeader("If-Modified-Since");
+		return since > 0 && since == lastModified;
+	}
+
+	private static boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null)
+			return true;
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			return etag != null && ifRange.equals(etag);
+		try {
+			return request.getDateHeader("If-Range") == lastModified;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return null if unsatisfiable, empty array if whole content should be
+	 *         served, otherwise first and last byte position
+	 */
+	static long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes="))
+			return new long[0];
+		String spec = range.substring(6).trim();
+		if (spec.indexOf(',') > 0)
+			return new long[0]; // multiple ranges are not supported
+		int index = spec.indexOf('-');
+		if (index < 0)
+			return new long[0];
+		try {
+			String first = spec.substring(0, index).trim();
+			String last = spec.substring(index + 1).trim();
+			long start, end;
+			if (first.isEmpty()) {
+				if (last.isEmpty())
+					return new long[0];
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0)
+					return null;
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(first);
+				end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+			}
+			if (start < 0 || start >= length || end < start)
+				return null;
+			return new long[] { start, end };
+		} catch (NumberFormatException e) {
+			return new long[0];
+		}
+	}
+
 }
@@ -2,72 +2,168 @@ package org.ironrhino.common.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.net.InetAddress;
-import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.io.IOUtils;
 import org.ironrhino.core.util.AppInfo;
 
+/**
+ * qqwry data is loaded once into sorted arrays of address ranges, lookups are
+ * lock free binary searches
+ */
 public class LocationParser {
 
-	static class Holder {
-		static LocationParser instance = new LocationParser();
-	}
-
-	private static final int ADDRESS_RECORD_LENGTH = 7;
+	private static final int INDEX_RECORD_LENGTH = 7;
 
 	private static final byte AREA_FOLLOWED = 0x01;
 
 	private static final byte NO_AREA = 0x2;
 
-	private RandomAccessFile file;
+	private static final Charset GBK = Charset.forName("GBK");
+
+	private static volatile LocationParser instance;
+
+	private static volatile boolean loaded;
+
+	private static volatile int cacheSize = 4096;
 
-	private long start, end;
+	private static final Map<Integer, Location> cache = new ConcurrentHashMap<>();
 
-	private byte[] buf;
+	// unsigned, sorted
+	private final int[] startAddresses;
 
-	private byte[] b4;
+	private final int[] endAddresses;
 
-	private byte[] b3;
+	private final String[] locations;
 
-	private boolean available;
+	private LocationParser(byte[] data) {
+		long start = readInt4(data, 0) & 0xFFFFFFFFL;
+		long end = readInt4(data, 4) & 0xFFFFFFFFL;
+		int count = (int) ((end - start) / INDEX_RECORD_LENGTH) + 1;
+		startAddresses = new int[count];
+		endAddresses = new int[count];
+		locations = new String[count];
+		Map<Integer, String> strings = new HashMap<>();
+		Map<String, String> dedup = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			int index = (int) start + i * INDEX_RECORD_LENGTH;
+			int offset = readInt3(data, index + 4);
+			startAddresses[i] = readInt4(data, index);
+			endAddresses[i] = readInt4(data, offset);
+			String[] loc = parseLocation(data, offset, strings);
+			String string = (loc[0] != null ? loc[0] : "") + (loc[1] != null ? loc[1] : "");
+			String s = dedup.putIfAbsent(string, string);
+			locations[i] = s != null ? s : string;
+		}
+	}
+
+	public static void setCacheSize(int cacheSize) {
+		LocationParser.cacheSize = cacheSize;
+		cache.clear();
+	}
+
+	public static void reload() {
+		instance = load();
+		loaded = true;
+		cache.clear();
+	}
+
+	public static void reload(File file) throws IOException {
+		instance = new LocationParser(Files.readAllBytes(file.toPath()));
+		loaded = true;
+		cache.clear();
+	}
+
+	private static LocationParser getInstance() {
+		if (!loaded) {
+			synchronized (LocationParser.class) {
+				if (!loaded) {
+					instance = load();
+					loaded = true;
+				}
+			}
+		}
+		return instance;
+	}
 
-	private LocationParser() {
-		buf = new byte[100];
-		b4 = new byte[4];
-		b3 = new byte[3];
+	private static LocationParser load() {
 		try {
 			File f = new File(AppInfo.getAppHome() + "/data/wry.dat");
-			if (f.exists()) {
-				file = new RandomAccessFile(f, "r");
-			} else {
-				ClassLoader cl = Thread.currentThread().getContextClassLoader();
-				if (cl == null)
-					cl = LocationParser.class.getClassLoader();
-				URL url = cl.getResource("resources/data/wry.dat");
-				if (url != null)
-					file = new RandomAccessFile(url.getFile(), "r");
-			}
-			start = readLong4(0);
-			end = readLong4(4);
-			if (start == -1 || end == -1) {
-				file.close();
-				file = null;
+			if (f.exists())
+				return new LocationParser(Files.readAllBytes(f.toPath()));
+			ClassLoader cl = Thread.currentThread().getContextClassLoader();
+			if (cl == null)
+				cl = LocationParser.class.getClassLoader();
+			try (InputStream is = cl.getResourceAsStream("resources/data/wry.dat")) {
+				if (is != null)
+					return new LocationParser(IOUtils.toByteArray(is));
 			}
-			available = true;
 		} catch (Exception e) {
-			file = null;
 			e.printStackTrace();
 		}
+		return null;
 	}
 
 	public static Location parseLocal(String host) {
 		try {
-			LocationParser instance = Holder.instance;
-			if (instance == null || !instance.available)
+			LocationParser parser = getInstance();
+			if (parser == null)
 				return null;
-			String[] loc = instance.parseLocation(InetAddress.getByName(host).getAddress());
-			String string = (loc[0] != null ? loc[0] : "") + (loc[1] != null ? loc[1] : "");
+			byte[] address = InetAddress.getByName(host).getAddress();
+			if (address.length != 4)
+				return null;
+			int ip = ((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16) | ((address[2] & 0xFF) << 8)
+					| (address[3] & 0xFF);
+			Location location = cacheSize > 0 ? cache.get(ip) : null;
+			if (location == null) {
+				String string = parser.lookup(ip);
+				if (string == null)
+					return null;
+				location = toLocation(string);
+				if (location == null)
+					return null;
+				if (cacheSize > 0) {
+					if (cache.size() >= cacheSize)
+						cache.clear();
+					cache.put(ip, location);
+				}
+			}
+			// callers may modify it
+			Location copy = new Location(location.getLocation());
+			copy.setFirstArea(location.getFirstArea());
+			copy.setSecondArea(location.getSecondArea());
+			copy.setThirdArea(location.getThirdArea());
+			return copy;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private String lookup(int ip) {
+		int low = 0, high = startAddresses.length - 1, floor = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (Integer.compareUnsigned(startAddresses[mid], ip) <= 0) {
+				floor = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (floor < 0 || Integer.compareUnsigned(ip, endAddresses[floor]) > 0
+				&& startAddresses[floor] != ip)
+			return null;
+		return locations[floor];
+	}
+
+	private static Location toLocation(String string) {
+		try {
 			Location location = new Location(string);
 			for (String s : LocationUtils.autonomousRegions)
 				if (string.startsWith(s)) {
@@ -108,174 +204,67 @@ public class LocationParser {
 		}
 	}
 
-	private String[] parseLocation(byte[] address) throws Exception {
+	private static String[] parseLocation(byte[] data, int offset, Map<Integer, String> strings) {
 		String[] loc = new String[2];
-		long offset = locateAddress(address);
-		file.seek(offset + 4);
-		byte b = file.readByte();
+		int pointer = offset + 4;
+		byte b = data[pointer++];
 		if (b == AREA_FOLLOWED) {
-			long countryOffset = readLong3();
-			file.seek(countryOffset);
-			b = file.readByte();
+			int countryOffset = readInt3(data, pointer);
+			b = data[countryOffset];
 			if (b == NO_AREA) {
-				loc[0] = readString(readLong3());
-				file.seek(countryOffset + 4);
-			} else
-				loc[0] = readString(countryOffset);
-			loc[1] = readArea(file.getFilePointer());
+				loc[0] = readString(data, readInt3(data, countryOffset + 1), strings);
+				pointer = countryOffset + 4;
+			} else {
+				loc[0] = readString(data, countryOffset, strings);
+				pointer = stringEnd(data, countryOffset) + 1;
+			}
+			loc[1] = readArea(data, pointer, strings);
 		} else if (b == NO_AREA) {
-			loc[0] = readString(readLong3());
-			loc[1] = readArea(offset + 8);
+			loc[0] = readString(data, readInt3(data, pointer), strings);
+			loc[1] = readArea(data, offset + 8, strings);
 		} else {
-			loc[0] = readString(file.getFilePointer() - 1);
-			loc[1] = readArea(file.getFilePointer());
+			loc[0] = readString(data, pointer - 1, strings);
+			loc[1] = readArea(data, stringEnd(data, pointer - 1) + 1, strings);
 		}
 		return loc;
 	}
 
-	private long readLong4(long offset) {
-		long ret = 0;
-		try {
-			file.seek(offset);
-			ret |= (file.readByte() & 0xFF);
-			ret |= ((file.readByte() << 8) & 0xFF00);
-			ret |= ((file.readByte() << 16) & 0xFF0000);
-			ret |= ((file.readByte() << 24) & 0xFF000000);
-			return ret;
-		} catch (Exception e) {
-			return -1;
-		}
-	}
-
-	private long readLong3(long offset) {
-		long ret = 0;
-		try {
-			file.seek(offset);
-			file.readFully(b3);
-			ret |= (b3[0] & 0xFF);
-			ret |= ((b3[1] << 8) & 0xFF00);
-			ret |= ((b3[2] << 16) & 0xFF0000);
-			return ret;
-		} catch (IOException e) {
-			return -1;
-		}
-	}
-
-	private long readLong3() {
-		long ret = 0;
-		try {
-			file.readFully(b3);
-			ret |= (b3[0] & 0xFF);
-			ret |= ((b3[1] << 8) & 0xFF00);
-			ret |= ((b3[2] << 16) & 0xFF0000);
-			return ret;
-		} catch (IOException e) {
-			return -1;
-		}
-	}
-
-	private void readAddress(long offset, byte[] address) {
-		try {
-			file.seek(offset);
-			file.readFully(address);
-			byte temp = address[0];
-			address[0] = address[3];
-			address[3] = temp;
-			temp = address[1];
-			address[1] = address[2];
-			address[2] = temp;
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-
-	private int compareAddress(byte[] address, byte[] beginAddress) {
-		for (int i = 0; i < 4; i++) {
-			int r = compareByte(address[i], beginAddress[i]);
-			if (r != 0)
-				return r;
-		}
-		return 0;
-	}
-
-	private int compareByte(byte b1, byte b2) {
-		if ((b1 & 0xFF) > (b2 & 0xFF))
-			return 1;
-		else if ((b1 ^ b2) == 0)
-			return 0;
-		else
-			return -1;
-	}
-
-	private long locateAddress(byte[] address) {
-		long m = 0;
-		int r;
-		readAddress(start, b4);
-		r = compareAddress(address, b4);
-		if (r == 0)
-			return start;
-		else if (r < 0)
-			return -1;
-		for (long i = start, j = end; i < j;) {
-			m = getMiddleOffset(i, j);
-			readAddress(m, b4);
-			r = compareAddress(address, b4);
-			if (r > 0)
-				i = m;
-			else if (r < 0) {
-				if (m == j) {
-					j -= ADDRESS_RECORD_LENGTH;
-					m = j;
-				} else
-					j = m;
-			} else
-				return readLong3(m + 4);
-		}
-		m = readLong3(m + 4);
-		readAddress(m, b4);
-		r = compareAddress(address, b4);
-		if (r <= 0)
-			return m;
-		else
-			return -1;
-	}
-
-	private long getMiddleOffset(long begin, long end) {
-		long records = (end - begin) / ADDRESS_RECORD_LENGTH;
-		records >>= 1;
-		if (records == 0)
-			records = 1;
-		return begin + records * ADDRESS_RECORD_LENGTH;
-	}
-
-	private String readArea(long offset) throws Exception {
-		file.seek(offset);
-		byte b = file.readByte();
+	private static String readArea(byte[] data, int offset, Map<Integer, String> strings) {
+		byte b = data[offset];
 		if (b == 0x01 || b == 0x02) {
-			long areaOffset = readLong3(offset + 1);
+			int areaOffset = readInt3(data, offset + 1);
 			if (areaOffset == 0)
 				return null;
 			else
-				return readString(areaOffset);
+				return readString(data, areaOffset, strings);
 		} else
-			return readString(offset);
+			return readString(data, offset, strings);
 	}
 
-	private String readString(long offset) throws Exception {
-		file.seek(offset);
-		int i;
-		for (i = 0, buf[i] = file.readByte(); buf[i] != 0; buf[++i] = file.readByte())
-			;
-		if (i != 0)
-			return new String(buf, 0, i, "GBK");
-		return null;
+	private static String readString(byte[] data, int offset, Map<Integer, String> strings) {
+		String s = strings.get(offset);
+		if (s == null) {
+			int end = stringEnd(data, offset);
+			s = end > offset ? new String(data, offset, end - offset, GBK) : "";
+			strings.put(offset, s);
+		}
+		return s.isEmpty() ? null : s;
+	}
+
+	private static int stringEnd(byte[] data, int offset) {
+		int i = offset;
+		while (data[i] != 0)
+			i++;
+		return i;
+	}
+
+	private static int readInt4(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16)
+				| ((data[offset + 3] & 0xFF) << 24);
 	}
 
-	@Override
-	protected void finalize() throws Throwable {
-		super.finalize();
-		if (file != null)
-			file.close();
+	private static int readInt3(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16);
 	}
 
 }
@@ -0,0 +1,219 @@
+package org.ironrhino.common.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ironrhino.common.model.Region;
+import org.ironrhino.core.util.CharTrieNode;
+
+/**
+ * Immutable Aho-Corasick index over names, short names and aliases of a region
+ * tree, resolves free text to the most specific region in a single pass.
+ * Matches are anchored at the region chain starting earliest in the text, so
+ * "上海市南京东路" resolves to 上海 rather than 南京, then regions whose
+ * ancestors appear earlier are preferred, so "北京市朝阳区" resolves to 朝阳区
+ * of 北京 rather than 朝阳市 of 辽宁.
+ */
+public class RegionMatcher {
+
+	private final Region[] regions;
+
+	private final int[] parents;
+
+	private final int[] depths;
+
+	// region indexes per key
+	private final int[][] candidates;
+
+	private final int[] keyLengths;
+
+	private final Node root = new Node();
+
+	public RegionMatcher(Region tree) {
+		List<Region> regionList = new ArrayList<>();
+		List<Integer> parentList = new ArrayList<>();
+		List<Integer> depthList = new ArrayList<>();
+		if (tree != null)
+			for (Region child : tree.getChildren())
+				collect(child, -1, 1, regionList, parentList, depthList);
+		regions = regionList.toArray(new Region[regionList.size()]);
+		parents = new int[regions.length];
+		depths = new int[regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			parents[i] = parentList.get(i);
+			depths[i] = depthList.get(i);
+		}
+
+		Map<String, List<Integer>> keys = new HashMap<>();
+		for (int i = 0; i < regions.length; i++)
+			for (String key : keysOf(regions[i].getName()))
+				keys.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		candidates = new int[keys.size()][];
+		keyLengths = new int[keys.size()];
+		int id = 0;
+		for (Map.Entry<String, List<Integer>> entry : keys.entrySet()) {
+			String key = entry.getKey();
+			candidates[id] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+			keyLengths[id] = key.length();
+			root.getOrCreate(key).addOutput(id);
+			id++;
+		}
+		link();
+	}
+
+	public int size() {
+		return regions.length;
+	}
+
+	public Region match(String text) {
+		if (StringUtils.isBlank(text) || regions.length == 0)
+			return null;
+		// longest hit per region, earliest wins on tie, only a handful per text
+		int[] hit = new int[8];
+		int[] starts = new int[8];
+		int[] ends = new int[8];
+		int hits = 0;
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			Node next;
+			while ((next = node.getChild(c)) == null && node != root)
+				node = node.fail;
+			node = next != null ? next : root;
+			for (int output : node.outputs) {
+				int length = keyLengths[output];
+				for (int r : candidates[output]) {
+					int h = indexOf(hit, hits, r);
+					if (h < 0) {
+						if (hits == hit.length) {
+							hit = Arrays.copyOf(hit, hits * 2);
+							starts = Arrays.copyOf(starts, hits * 2);
+							ends = Arrays.copyOf(ends, hits * 2);
+						}
+						h = hits++;
+						hit[h] = r;
+					} else if (ends[h] - starts[h] >= length) {
+						continue;
+					}
+					starts[h] = i + 1 - length;
+					ends[h] = i + 1;
+				}
+			}
+		}
+		// anchor at the chain starting earliest like parsing by address does,
+		// then prefer the longest chain, the deepest region and the longest hit
+		int best = -1, bestChain = 0, bestStart = 0;
+		for (int h = 0; h < hits; h++) {
+			int r = hit[h];
+			int chain = 1;
+			int cursor = starts[h];
+			for (int p = parents[r]; p >= 0; p = parents[p]) {
+				int ph = indexOf(hit, hits, p);
+				if (ph >= 0 && ends[ph] <= cursor) {
+					chain++;
+					cursor = starts[ph];
+				}
+			}
+			boolean better;
+			if (best < 0 || cursor != bestStart)
+				better = best < 0 || cursor < bestStart;
+			else if (chain != bestChain)
+				better = chain > bestChain;
+			else if (depths[r] != depths[hit[best]])
+				better = depths[r] > depths[hit[best]];
+			else
+				better = ends[h] - starts[h] > ends[best] - starts[best];
+			if (better) {
+				best = h;
+				bestChain = chain;
+				bestStart = cursor;
+			}
+		}
+		return best >= 0 ? regions[hit[best]] : null;
+	}
+
+	private static int indexOf(int[] array, int length, int value) {
+		for (int i = 0; i < length; i++)
+			if (array[i] == value)
+				return i;
+		return -1;
+	}
+
+	private static void collect(Region region, int parent, int depth, List<Region> regionList,
+			List<Integer> parentList, List<Integer> depthList) {
+		if (StringUtils.isBlank(region.getName()))
+			return;
+		int index = regionList.size();
+		regionList.add(region);
+		parentList.add(parent);
+		depthList.add(depth);
+		for (Region child : region.getChildren())
+			collect(child, index, depth + 1, regionList, parentList, depthList);
+	}
+
+	private static Set<String> keysOf(String name) {
+		Set<String> keys = new LinkedHashSet<>();
+		name = name.trim();
+		keys.add(name);
+		for (Map.Entry<String, String> entry : LocationUtils.mapping.entrySet())
+			if (name.contains(entry.getKey()))
+				keys.add(name.replace(entry.getKey(), entry.getValue()));
+		keys.add(LocationUtils.shortenAddress(name));
+		String shortName = LocationUtils.shortenName(name);
+		if (shortName.length() > 1)
+			keys.add(shortName);
+		keys.remove("");
+		return keys;
+	}
+
+	private void link() {
+		Deque<Node> queue = new ArrayDeque<>();
+		for (int i = 0; i < root.getChildCount(); i++) {
+			Node child = root.getChildAt(i);
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			for (int i = 0; i < node.getChildCount(); i++) {
+				char c = node.getKey(i);
+				Node child = node.getChildAt(i);
+				Node fail = node.fail;
+				Node next;
+				while ((next = fail.getChild(c)) == null && fail != root)
+					fail = fail.fail;
+				child.fail = next != null ? next : root;
+				for (int output : child.fail.outputs)
+					child.addOutput(output);
+				queue.add(child);
+			}
+		}
+	}
+
+	private static class Node extends CharTrieNode<Node> {
+
+		private int[] outputs = new int[0];
+
+		private Node fail;
+
+		@Override
+		protected Node newChild() {
+			return new Node();
+		}
+
+		void addOutput(int output) {
+			outputs = Arrays.copyOf(outputs, outputs.length + 1);
+			outputs[outputs.length - 1] = output;
+		}
+
+	}
+
+}
@@ -19,6 +19,17 @@ public class RegionUtils {
 		return thirdRegion != null ? thirdRegion : secondRegion;
 	}
 
+	public static Region parse(String value, RegionMatcher regionMatcher) {
+		Location loc = LocationUtils.parse(value);
+		if (loc == null || regionMatcher == null)
+			return null;
+		StringBuilder sb = new StringBuilder();
+		for (String area : new String[] { loc.getFirstArea(), loc.getSecondArea(), loc.getThirdArea() })
+			if (StringUtils.isNotBlank(area))
+				sb.append(area).append(' ');
+		return regionMatcher.match(sb.toString());
+	}
+
 	public static Region getChildOrSelfByName(Region parent, String name) {
 		if (StringUtils.isBlank(name))
 			return null;
@@ -50,6 +61,12 @@ public class RegionUtils {
 		return region;
 	}
 
+	public static Region parseByAddress(String address, RegionMatcher regionMatcher) {
+		if (StringUtils.isBlank(address) || regionMatcher == null)
+			return null;
+		return regionMatcher.match(address);
+	}
+
 	public static boolean isAutonomousRegion(Region region) {
 		if (region == null || StringUtils.isBlank(region.getName()))
 			return false;
@@ -0,0 +1,139 @@
+package org.ironrhino.core.dataroute;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DataSourceStats {
+
+	private static final double ALPHA = 0.2;
+
+	private final String name;
+
+	private final int weight;
+
+	private final AtomicBoolean dead = new AtomicBoolean();
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	private final AtomicLong nextRetryTime = new AtomicLong();
+
+	private final AtomicInteger inflight = new AtomicInteger();
+
+	private final LongAdder successCount = new LongAdder();
+
+	private final LongAdder failureCount = new LongAdder();
+
+	private final AtomicLong acquireNanos = new AtomicLong(Double.doubleToLongBits(0));
+
+	private final AtomicLong holdNanos = new AtomicLong(Double.doubleToLongBits(0));
+
+	private volatile long replicationLag = -1;
+
+	public DataSourceStats(String name, int weight) {
+		this.name = name;
+		this.weight = weight > 0 ? weight : 1;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public boolean isDead() {
+		return dead.get();
+	}
+
+	public int getConsecutiveFailures() {
+		return consecutiveFailures.get();
+	}
+
+	public int getInflight() {
+		return inflight.get();
+	}
+
+	public long getSuccessCount() {
+		return successCount.sum();
+	}
+
+	public long getFailureCount() {
+		return failureCount.sum();
+	}
+
+	public double getAcquireMillis() {
+		return Double.longBitsToDouble(acquireNanos.get()) / 1000000;
+	}
+
+	public double getHoldMillis() {
+		return Double.longBitsToDouble(holdNanos.get()) / 1000000;
+	}
+
+	public long getReplicationLag() {
+		return replicationLag;
+	}
+
+	void setReplicationLag(long replicationLag) {
+		this.replicationLag = replicationLag;
+	}
+
+	double score() {
+		double latency = Double.longBitsToDouble(acquireNanos.get()) + Double.longBitsToDouble(holdNanos.get());
+		return (latency + 1) * (inflight.get() + 1) / weight;
+	}
+
+	boolean tryAcquireTrial(long now, long retryInterval) {
+		long next = nextRetryTime.get();
+		return now >= next && nextRetryTime.compareAndSet(next, now + retryInterval);
+	}
+
+	void onAcquired(long nanos) {
+		ewma(acquireNanos, nanos);
+		successCount.increment();
+		consecutiveFailures.set(0);
+		inflight.incrementAndGet();
+	}
+
+	void onReleased(long nanos) {
+		inflight.decrementAndGet();
+		ewma(holdNanos, nanos);
+	}
+
+	boolean onFailed(int deadThreshold, long now, long retryInterval) {
+		failureCount.increment();
+		if (consecutiveFailures.incrementAndGet() >= deadThreshold && dead.compareAndSet(false, true)) {
+			nextRetryTime.set(now + retryInterval);
+			return true;
+		}
+		return false;
+	}
+
+	boolean markAlive() {
+		if (dead.compareAndSet(true, false)) {
+			consecutiveFailures.set(0);
+			return true;
+		}
+		return false;
+	}
+
+	private static void ewma(AtomicLong holder, long sample) {
+		while (true) {
+			long bits = holder.get();
+			double current = Double.longBitsToDouble(bits);
+			double updated = current == 0 ? sample : current + ALPHA * (sample - current);
+			if (holder.compareAndSet(bits, Double.doubleToLongBits(updated)))
+				return;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name + "[dead=" + isDead() + ",inflight=" + getInflight() + ",success=" + getSuccessCount()
+				+ ",failure=" + getFailureCount() + ",acquireMillis=" + getAcquireMillis() + ",holdMillis="
+				+ getHoldMillis() + ",replicationLag=" + replicationLag + "]";
+	}
+
+}
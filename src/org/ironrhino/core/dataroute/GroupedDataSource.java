@@ -1,13 +1,18 @@
 package org.ironrhino.core.dataroute;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.sql.DataSource;
 
@@ -22,6 +27,7 @@ import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
 import org.springframework.scheduling.annotation.Scheduled;
 
 public class GroupedDataSource extends AbstractDataSource implements InitializingBean, BeanFactoryAware, BeanNameAware {
@@ -49,16 +55,22 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 
 	private Map<String, DataSource> readSlaves = new HashMap<>();
 
-	private RoundRobin<String> readRoundRobin;
-
 	private RoundRobin<String> writeRoundRobin;
 
-	private Set<DataSource> deadDataSources = new HashSet<>();
+	private DataSourceStats[] readStats;
 
-	private Map<DataSource, Integer> failureCount = new ConcurrentHashMap<>();
+	private Map<String, DataSourceStats> stats = new LinkedHashMap<>();
 
 	private int deadFailureThreshold = 3;
 
+	private long recoverInterval = 30000;
+
+	private String replicationLagQuery;
+
+	private String replicationLagColumn;
+
+	private long maxReplicationLag;
+
 	public void setDeadFailureThreshold(int deadFailureThreshold) {
 		this.deadFailureThreshold = deadFailureThreshold;
 	}
@@ -79,8 +91,21 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 		this.maxAttempts = maxAttempts;
 	}
 
-	public RoundRobin<String> getReadRoundRobin() {
-		return readRoundRobin;
+	public void setRecoverInterval(long recoverInterval) {
+		this.recoverInterval = recoverInterval;
+	}
+
+	// e.g. "show slave status" for MySQL with column "Seconds_Behind_Master"
+	public void setReplicationLagQuery(String replicationLagQuery) {
+		this.replicationLagQuery = replicationLagQuery;
+	}
+
+	public void setReplicationLagColumn(String replicationLagColumn) {
+		this.replicationLagColumn = replicationLagColumn;
+	}
+
+	public void setMaxReplicationLag(long maxReplicationLag) {
+		this.maxReplicationLag = maxReplicationLag;
 	}
 
 	public RoundRobin<String> getWriteRoundRobin() {
@@ -91,6 +116,10 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 		return groupName;
 	}
 
+	public Map<String, DataSourceStats> getStats() {
+		return Collections.unmodifiableMap(stats);
+	}
+
 	@Override
 	public void setBeanName(String beanName) {
 		this.groupName = beanName;
@@ -103,21 +132,30 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 
 	@Override
 	public void afterPropertiesSet() {
-		if (masterName != null)
+		if (masterName != null) {
 			master = (DataSource) beanFactory.getBean(masterName);
+			stats.put(masterName, new DataSourceStats(masterName, 1));
+		}
 		if (writeSlaveNames != null && writeSlaveNames.size() > 0) {
-			for (String name : writeSlaveNames.keySet())
+			for (Map.Entry<String, Integer> entry : writeSlaveNames.entrySet()) {
+				String name = entry.getKey();
 				writeSlaves.put(name, (DataSource) beanFactory.getBean(name));
+				stats.putIfAbsent(name, new DataSourceStats(name, entry.getValue() != null ? entry.getValue() : 1));
+			}
 			if (masterName != null)
 				writeSlaves.put(masterName, master);
-			writeRoundRobin = new RoundRobin<>(writeSlaveNames,
-					target -> !deadDataSources.contains(writeSlaves.get(target)));
+			writeRoundRobin = new RoundRobin<>(writeSlaveNames, target -> !stats.get(target).isDead());
 		}
 		if (readSlaveNames != null && readSlaveNames.size() > 0) {
-			for (String name : readSlaveNames.keySet())
+			readStats = new DataSourceStats[readSlaveNames.size()];
+			int i = 0;
+			for (Map.Entry<String, Integer> entry : readSlaveNames.entrySet()) {
+				String name = entry.getKey();
 				readSlaves.put(name, (DataSource) beanFactory.getBean(name));
-			readRoundRobin = new RoundRobin<>(readSlaveNames,
-					target -> !deadDataSources.contains(readSlaves.get(target)));
+				DataSourceStats dss = stats.computeIfAbsent(name,
+						key -> new DataSourceStats(key, entry.getValue() != null ? entry.getValue() : 1));
+				readStats[i++] = dss;
+			}
 		}
 	}
 
@@ -130,13 +168,15 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 		DataSource ds = null;
 		String dbname = null;
 		boolean read = false;
-		if (DataRouteContext.isReadonly() && getReadRoundRobin() != null) {
-			read = true;
-			dbname = getReadRoundRobin().pick();
-			ds = readSlaves.get(dbname);
+		if (DataRouteContext.isReadonly() && readStats != null) {
+			dbname = pickRead();
+			if (dbname != null) {
+				read = true;
+				ds = readSlaves.get(dbname);
+			}
 		}
-		if (ds == null && getWriteRoundRobin() != null) {
-			dbname = getWriteRoundRobin().pick();
+		if (ds == null && writeRoundRobin != null) {
+			dbname = writeRoundRobin.pick();
 			ds = writeSlaves.get(dbname);
 		}
 		if (ds == null && masterName != null) {
@@ -145,32 +185,26 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 		}
 		if (ds == null)
 			throw new IllegalStateException("No underlying DataSource found");
+		DataSourceStats dss = stats.get(dbname);
+		long start = System.nanoTime();
 		try {
 			Connection conn = username == null ? ds.getConnection() : ds.getConnection(username, password);
 			if (read)
 				conn.setReadOnly(true);
-			failureCount.remove(ds);
-			StatLog.add(new Key("dataroute", true, groupName, dbname, "success"));
-			return conn;
+			long acquired = System.nanoTime();
+			dss.onAcquired(acquired - start);
+			if (dss.markAlive())
+				logger.warn("dataSource[" + groupName + ":" + dbname + "] recovered");
+			return wrap(conn, dss, acquired);
 		} catch (SQLException e) {
 			logger.error(e.getMessage(), e);
-			if (--attempts < 1)
-				throw e;
-			Integer failureTimes = failureCount.get(ds);
-			if (failureTimes == null)
-				failureTimes = 1;
-			else
-				failureTimes += 1;
-			if (failureTimes == deadFailureThreshold) {
-				failureCount.remove(ds);
-				deadDataSources.add(ds);
+			if (dss.onFailed(deadFailureThreshold, System.currentTimeMillis(), recoverInterval)) {
 				logger.error(
 						"dataSource[" + groupName + ":" + dbname + "] down!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
 				StatLog.add(new Key("dataroute", false, groupName, dbname, "down"));
-			} else {
-				failureCount.put(ds, failureTimes);
 			}
-			StatLog.add(new Key("dataroute", true, groupName, dbname, "failed"));
+			if (--attempts < 1)
+				throw e;
 			return getConnection(username, password, attempts);
 		}
 	}
@@ -180,35 +214,116 @@ public class GroupedDataSource extends AbstractDataSource implements Initializin
 		return getConnection(null, null);
 	}
 
-	@Scheduled(initialDelayString = "${dataSource.tryRecover.initialDelay:300000}", fixedDelayString = "${dataSource.tryRecover.fixedDelay:300000}")
-	public void tryRecover() {
-		Iterator<DataSource> it = deadDataSources.iterator();
-		while (it.hasNext()) {
-			DataSource ds = it.next();
-			try {
-				Connection conn = ds.getConnection();
-				conn.isValid(5);
-				conn.close();
-				it.remove();
-				String dbname = null;
-				for (Map.Entry<String, DataSource> entry : writeSlaves.entrySet()) {
-					if (entry.getValue() == ds) {
-						dbname = entry.getKey();
-						break;
-					}
-				}
-				if (dbname == null)
-					for (Map.Entry<String, DataSource> entry : readSlaves.entrySet()) {
-						if (entry.getValue() == ds) {
-							dbname = entry.getKey();
+	private String pickRead() {
+		// power of two choices over live replicas, dead ones get a single trial
+		// per recoverInterval
+		long now = System.currentTimeMillis();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		DataSourceStats first = null;
+		DataSourceStats second = null;
+		int usable = 0;
+		for (DataSourceStats dss : readStats) {
+			if (dss.isDead()) {
+				if (dss.tryAcquireTrial(now, recoverInterval))
+					return dss.getName();
+				continue;
+			}
+			if (maxReplicationLag > 0 && dss.getReplicationLag() > maxReplicationLag)
+				continue;
+			usable++;
+			if (usable == 1) {
+				first = dss;
+			} else if (usable == 2) {
+				second = dss;
+			} else {
+				int r = random.nextInt(usable);
+				if (r == 0)
+					first = dss;
+				else if (r == 1)
+					second = dss;
+			}
+		}
+		if (first == null)
+			return null;
+		if (second == null)
+			return first.getName();
+		return first.score() <= second.score() ? first.getName() : second.getName();
+	}
+
+	private static Connection wrap(Connection conn, DataSourceStats dss, long acquired) {
+		return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+				new Class<?>[] { ConnectionProxy.class }, new InvocationHandler() {
+
+					private boolean released;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						switch (method.getName()) {
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "getTargetConnection":
+							return conn;
+						case "close":
+							if (!released) {
+								released = true;
+								dss.onReleased(System.nanoTime() - acquired);
+							}
+							break;
+						default:
 							break;
 						}
+						try {
+							return method.invoke(conn, args);
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
 					}
-				logger.warn("dataSource[" + groupName + ":" + dbname + "] recovered");
+				});
+	}
+
+	@Scheduled(initialDelayString = "${dataSource.tryRecover.initialDelay:30000}", fixedDelayString = "${dataSource.tryRecover.fixedDelay:30000}")
+	public void tryRecover() {
+		for (DataSourceStats dss : stats.values()) {
+			if (!dss.isDead())
+				continue;
+			String dbname = dss.getName();
+			DataSource ds = dbname.equals(masterName) ? master : writeSlaves.get(dbname);
+			if (ds == null)
+				ds = readSlaves.get(dbname);
+			try (Connection conn = ds.getConnection()) {
+				if (conn.isValid(5) && dss.markAlive())
+					logger.warn("dataSource[" + groupName + ":" + dbname + "] recovered");
 			} catch (Exception e) {
 				logger.debug(e.getMessage(), e);
 			}
 		}
 	}
 
+	@Scheduled(initialDelayString = "${dataSource.checkReplicationLag.initialDelay:10000}", fixedDelayString = "${dataSource.checkReplicationLag.fixedDelay:10000}")
+	public void checkReplicationLag() {
+		if (replicationLagQuery == null || readStats == null)
+			return;
+		for (DataSourceStats dss : readStats) {
+			if (dss.isDead())
+				continue;
+			try (Connection conn = readSlaves.get(dss.getName()).getConnection();
+					Statement stmt = conn.createStatement();
+					ResultSet rs = stmt.executeQuery(replicationLagQuery)) {
+				long lag = -1;
+				if (rs.next()) {
+					Object value = replicationLagColumn != null ? rs.getObject(replicationLagColumn) : rs.getObject(1);
+					// null means replication is broken
+					lag = value instanceof Number ? ((Number) value).longValue()
+							: value != null ? Long.parseLong(value.toString()) : Long.MAX_VALUE;
+				}
+				dss.setReplicationLag(lag);
+			} catch (Exception e) {
+				logger.warn("check replication lag of dataSource[" + groupName + ":" + dss.getName() + "] failed: "
+						+ e.getMessage());
+			}
+		}
+	}
+
 }
\ No newline at end of file
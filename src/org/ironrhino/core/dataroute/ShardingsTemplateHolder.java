@@ -1,34 +1,77 @@
 package org.ironrhino.core.dataroute;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import javax.sql.DataSource;
 
+import org.ironrhino.core.util.NameableThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
-public class ShardingsTemplateHolder implements InitializingBean {
+public class ShardingsTemplateHolder implements InitializingBean, DisposableBean {
 
 	protected RoutingDataSource routingDataSource;
 
 	protected List<TemplateHolder> templateHolders;
 
+	protected int maxConcurrency;
+
+	protected long timeout = 30000;
+
+	private ExecutorService executorService;
+
+	// deadline of the scatter task running on current thread
+	private static final ThreadLocal<Long> deadlineHolder = new ThreadLocal<>();
+
+	private static final long NO_DEADLINE = Long.MIN_VALUE;
+
 	public ShardingsTemplateHolder(DataSource dataSource) {
 		if (!(dataSource instanceof RoutingDataSource))
 			throw new IllegalArgumentException("dataSource should be RoutingDataSource");
 		this.routingDataSource = (RoutingDataSource) dataSource;
 	}
 
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	// milliseconds, each shard shares the same deadline
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
 	@Override
 	public void afterPropertiesSet() {
 		templateHolders = new ArrayList<>();
 		for (DataSource ds : routingDataSource.getShardings()) {
-			JdbcTemplate jt = new JdbcTemplate(ds);
+			JdbcTemplate jt = new DeadlineAwareJdbcTemplate(ds);
 			jt.afterPropertiesSet();
 			NamedParameterJdbcTemplate njt = new NamedParameterJdbcTemplate(jt);
 			DataSourceTransactionManager tm = new DataSourceTransactionManager(ds);
@@ -37,6 +80,14 @@ public class ShardingsTemplateHolder implements InitializingBean {
 			tt.afterPropertiesSet();
 			templateHolders.add(new TemplateHolder(jt, njt, tt));
 		}
+		executorService = Executors.newFixedThreadPool(maxConcurrency > 0 ? maxConcurrency : templateHolders.size(),
+				new NameableThreadFactory("scatter"));
+	}
+
+	@Override
+	public void destroy() {
+		if (executorService != null)
+			executorService.shutdownNow();
 	}
 
 	public Collection<TemplateHolder> list() {
@@ -55,6 +106,220 @@ public class ShardingsTemplateHolder implements InitializingBean {
 		return templateHolders.get(router.route(routingDataSource.getShardingNames(), routingKey));
 	}
 
+	public <T> List<T> scatter(Function<TemplateHolder, T> callback) {
+		return doScatter(templateHolders, callback);
+	}
+
+	public <T> List<T> scatter(Collection<?> routingKeys, Function<TemplateHolder, T> callback) {
+		Set<Integer> indexes = new TreeSet<>();
+		for (Object routingKey : routingKeys)
+			indexes.add(routingDataSource.getDefaultRouter().route(routingDataSource.getShardingNames(), routingKey));
+		List<TemplateHolder> list = new ArrayList<>(indexes.size());
+		for (Integer index : indexes)
+			list.add(templateHolders.get(index));
+		return doScatter(list, callback);
+	}
+
+	public <T> List<T> queryForList(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper) {
+		List<List<T>> results = scatter(th -> th.namedJdbc.query(sql, paramMap, rowMapper));
+		int size = 0;
+		for (List<T> list : results)
+			size += list.size();
+		List<T> merged = new ArrayList<>(size);
+		for (List<T> list : results)
+			merged.addAll(list);
+		return merged;
+	}
+
+	// sql should be ordered consistently with comparator and limited per shard
+	public <T> List<T> queryForSortedList(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper,
+			Comparator<? super T> comparator, int limit) {
+		return mergeSorted(scatter(th -> th.namedJdbc.query(sql, paramMap, rowMapper)), comparator, limit);
+	}
+
+	public long queryForCount(String sql, Map<String, ?> paramMap) {
+		Object count = queryForAggregates(sql, paramMap, Aggregation.COUNT)[0];
+		return count != null ? ((Number) count).longValue() : 0;
+	}
+
+	public Object queryForAggregate(String sql, Map<String, ?> paramMap, Aggregation aggregation) {
+		return queryForAggregates(sql, paramMap, aggregation)[0];
+	}
+
+	// sql should return one row with one column per aggregation
+	public Object[] queryForAggregates(String sql, Map<String, ?> paramMap, Aggregation... aggregations) {
+		List<Object[]> rows = scatter(th -> th.namedJdbc.query(sql, paramMap, rs -> {
+			Object[] row = new Object[aggregations.length];
+			if (rs.next())
+				for (int i = 0; i < row.length; i++)
+					row[i] = rs.getObject(i + 1);
+			return row;
+		}));
+		Object[] result = new Object[aggregations.length];
+		for (Object[] row : rows)
+			for (int i = 0; i < result.length; i++)
+				result[i] = aggregations[i].combine(result[i], row[i]);
+		return result;
+	}
+
+	protected <T> List<T> doScatter(List<TemplateHolder> holders, Function<TemplateHolder, T> callback) {
+		Long outerDeadline = deadlineHolder.get();
+		long deadline = outerDeadline != null ? outerDeadline
+				: timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : NO_DEADLINE;
+		if (holders.size() == 1)
+			return Collections.singletonList(apply(callback, holders.get(0), deadline));
+		if (outerDeadline != null) {
+			// nested scatter runs inline, waiting on the pool it occupies may deadlock
+			List<T> results = new ArrayList<>(holders.size());
+			for (TemplateHolder th : holders) {
+				if (deadline != NO_DEADLINE && deadline - System.nanoTime() <= 0)
+					throw new QueryTimeoutException("scatter query timed out after " + timeout + "ms");
+				results.add(apply(callback, th, deadline));
+			}
+			return results;
+		}
+		List<Future<T>> futures = new ArrayList<>(holders.size());
+		for (TemplateHolder th : holders)
+			futures.add(executorService.submit(() -> apply(callback, th, deadline)));
+		List<T> results = new ArrayList<>(holders.size());
+		try {
+			for (Future<T> future : futures)
+				results.add(deadline != NO_DEADLINE ? future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+						: future.get());
+			return results;
+		} catch (TimeoutException e) {
+			throw new QueryTimeoutException("scatter query timed out after " + timeout + "ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} finally {
+			for (Future<T> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	private static <T> T apply(Function<TemplateHolder, T> callback, TemplateHolder th, long deadline) {
+		Long previous = deadlineHolder.get();
+		deadlineHolder.set(deadline);
+		try {
+			return callback.apply(th);
+		} finally {
+			if (previous != null)
+				deadlineHolder.set(previous);
+			else
+				deadlineHolder.remove();
+		}
+	}
+
+	public static <T> List<T> mergeSorted(List<? extends List<T>> sortedLists, Comparator<? super T> comparator,
+			int limit) {
+		int size = 0;
+		for (List<T> list : sortedLists)
+			size += list.size();
+		if (limit > 0 && limit < size)
+			size = limit;
+		List<T> merged = new ArrayList<>(size);
+		PriorityQueue<Cursor<T>> queue = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+				(c1, c2) -> comparator.compare(c1.head, c2.head));
+		for (List<T> list : sortedLists) {
+			Iterator<T> it = list.iterator();
+			if (it.hasNext())
+				queue.add(new Cursor<>(it));
+		}
+		while (merged.size() < size) {
+			Cursor<T> cursor = queue.poll();
+			merged.add(cursor.head);
+			if (cursor.it.hasNext()) {
+				cursor.head = cursor.it.next();
+				queue.add(cursor);
+			}
+		}
+		return merged;
+	}
+
+	private static class Cursor<T> {
+
+		private final Iterator<T> it;
+
+		private T head;
+
+		Cursor(Iterator<T> it) {
+			this.it = it;
+			this.head = it.next();
+		}
+
+	}
+
+	public static enum Aggregation {
+
+		COUNT, SUM, MIN, MAX;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Object combine(Object a, Object b) {
+			if (a == null)
+				return b;
+			if (b == null)
+				return a;
+			switch (this) {
+			case COUNT:
+			case SUM:
+				if (isIntegral(a) && isIntegral(b))
+					return ((Number) a).longValue() + ((Number) b).longValue();
+				return toBigDecimal(a).add(toBigDecimal(b));
+			default:
+				int c;
+				if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass())
+					c = toBigDecimal(a).compareTo(toBigDecimal(b));
+				else
+					c = ((Comparable) a).compareTo(b);
+				return (this == MIN ? c <= 0 : c >= 0) ? a : b;
+			}
+		}
+
+		private static boolean isIntegral(Object o) {
+			return o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte;
+		}
+
+		private static BigDecimal toBigDecimal(Object o) {
+			if (o instanceof BigDecimal)
+				return (BigDecimal) o;
+			if (o instanceof BigInteger)
+				return new BigDecimal((BigInteger) o);
+			return new BigDecimal(o.toString());
+		}
+
+	}
+
+	// cancelling a future does not stop a running statement, bound it by the deadline
+	private static class DeadlineAwareJdbcTemplate extends JdbcTemplate {
+
+		DeadlineAwareJdbcTemplate(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		protected void applyStatementSettings(Statement stmt) throws SQLException {
+			super.applyStatementSettings(stmt);
+			Long deadline = deadlineHolder.get();
+			if (deadline == null || deadline == NO_DEADLINE)
+				return;
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				throw new SQLTimeoutException("scatter query deadline exceeded");
+			int seconds = (int) Math.max(1, (remaining + 999999999L) / 1000000000L);
+			if (stmt.getQueryTimeout() == 0 || seconds < stmt.getQueryTimeout())
+				stmt.setQueryTimeout(seconds);
+		}
+
+	}
+
 	public static class TemplateHolder {
 
 		public final JdbcTemplate jdbc;
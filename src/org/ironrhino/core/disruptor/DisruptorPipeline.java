@@ -0,0 +1,280 @@
+package org.ironrhino.core.disruptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * In-process pipeline over a pre-allocated ring buffer, consumers receive
+ * events in batches as they become available. {@link #publish(Object)} blocks
+ * if the buffer is full, {@link #tryPublish(Object)} returns false instead so
+ * callers decide how to handle backpressure.
+ */
+public class DisruptorPipeline<T> {
+
+	private static final EventTranslatorOneArg<Slot<Object>, Object> TRANSLATOR = (slot, sequence, value) -> slot.value = value;
+
+	private Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final String name;
+
+	private final Disruptor<Slot<T>> disruptor;
+
+	private final RingBuffer<Slot<T>> ringBuffer;
+
+	private final LongAdder published = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final BatchConsumer<T>[] consumers;
+
+	public DisruptorPipeline(String name, int bufferSize, BatchHandler<T> handler) {
+		this(name, bufferSize, handler, 1, 1000, Strategy.BLOCKING);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            will be rounded up to power of 2
+	 * @param concurrency
+	 *            number of consumer threads, events are sharded by sequence
+	 * @param maxBatchSize
+	 *            max events passed to handler at once
+	 */
+	@SuppressWarnings("unchecked")
+	public DisruptorPipeline(String name, int bufferSize, BatchHandler<T> handler, int concurrency,
+			int maxBatchSize, Strategy strategy) {
+		if (concurrency < 1 || maxBatchSize < 1)
+			throw new IllegalArgumentException("concurrency and maxBatchSize should be positive");
+		this.name = name;
+		AtomicInteger threads = new AtomicInteger();
+		Executor executor = runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			thread.start();
+		};
+		disruptor = new Disruptor<>(Slot::new, ceilingPowerOfTwo(bufferSize), executor, ProducerType.MULTI,
+				strategy.create());
+		consumers = new BatchConsumer[concurrency];
+		for (int i = 0; i < concurrency; i++)
+			consumers[i] = new BatchConsumer<>(handler, i, concurrency, maxBatchSize);
+		// must be set before handlers, the default one halts the consumer
+		disruptor.handleExceptionsWith(new ExceptionHandler<Slot<T>>() {
+
+			@Override
+			public void handleEventException(Throwable ex, long sequence, Slot<T> event) {
+				logger.error("Pipeline [" + name + "] failed to handle events: " + ex.getMessage(), ex);
+			}
+
+			@Override
+			public void handleOnStartException(Throwable ex) {
+				logger.error(ex.getMessage(), ex);
+			}
+
+			@Override
+			public void handleOnShutdownException(Throwable ex) {
+				logger.error(ex.getMessage(), ex);
+			}
+		});
+		disruptor.handleEventsWith(consumers);
+		ringBuffer = disruptor.start();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void publish(T value) {
+		ringBuffer.publishEvent((EventTranslatorOneArg) TRANSLATOR, value);
+		published.increment();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public boolean tryPublish(T value) {
+		if (ringBuffer.tryPublishEvent((EventTranslatorOneArg) TRANSLATOR, value)) {
+			published.increment();
+			return true;
+		}
+		rejected.increment();
+		return false;
+	}
+
+	public long getPublished() {
+		return published.sum();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	public long getProcessed() {
+		long processed = 0;
+		for (BatchConsumer<T> consumer : consumers)
+			processed += consumer.processed;
+		return processed;
+	}
+
+	public long getBatches() {
+		long batches = 0;
+		for (BatchConsumer<T> consumer : consumers)
+			batches += consumer.batches;
+		return batches;
+	}
+
+	public long getBacklog() {
+		return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+	}
+
+	public int getBufferSize() {
+		return ringBuffer.getBufferSize();
+	}
+
+	/**
+	 * waits until published events are handled
+	 */
+	public void shutdown(long timeout, TimeUnit unit) {
+		// Disruptor.shutdown() ignores consumers whose thread is not running
+		// yet, wait on gating sequences instead so nothing is left behind
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (ringBuffer.getMinimumGatingSequence() < ringBuffer.getCursor()) {
+			if (System.nanoTime() - deadline > 0) {
+				logger.warn("Pipeline [{}] shutdown timeout with {} events remaining", name, getBacklog());
+				break;
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		disruptor.halt();
+	}
+
+	@Override
+	public String toString() {
+		return name + "{published=" + getPublished() + ",rejected=" + getRejected() + ",processed="
+				+ getProcessed() + ",batches=" + getBatches() + ",backlog=" + getBacklog() + "}";
+	}
+
+	private static int ceilingPowerOfTwo(int value) {
+		if (value < 2)
+			return 2;
+		int n = Integer.highestOneBit(value);
+		return n == value ? n : n << 1;
+	}
+
+	@FunctionalInterface
+	public static interface BatchHandler<T> {
+
+		// batch is reused after return
+		void handle(List<T> batch) throws Exception;
+
+	}
+
+	public static enum Strategy {
+
+		// lowest cpu usage
+		BLOCKING {
+			@Override
+			WaitStrategy create() {
+				return new BlockingWaitStrategy();
+			}
+		},
+		LITE_BLOCKING {
+			@Override
+			WaitStrategy create() {
+				return new LiteBlockingWaitStrategy();
+			}
+		},
+		SLEEPING {
+			@Override
+			WaitStrategy create() {
+				return new SleepingWaitStrategy();
+			}
+		},
+		YIELDING {
+			@Override
+			WaitStrategy create() {
+				return new YieldingWaitStrategy();
+			}
+		},
+		// lowest latency, occupies a core per consumer
+		BUSY_SPIN {
+			@Override
+			WaitStrategy create() {
+				return new BusySpinWaitStrategy();
+			}
+		};
+
+		abstract WaitStrategy create();
+
+	}
+
+	private static class Slot<T> {
+
+		T value;
+
+	}
+
+	private static class BatchConsumer<T> implements EventHandler<Slot<T>> {
+
+		private final BatchHandler<T> handler;
+
+		private final int ordinal;
+
+		private final int concurrency;
+
+		private final int maxBatchSize;
+
+		private final List<T> batch;
+
+		// single writer
+		private volatile long processed;
+
+		private volatile long batches;
+
+		BatchConsumer(BatchHandler<T> handler, int ordinal, int concurrency, int maxBatchSize) {
+			this.handler = handler;
+			this.ordinal = ordinal;
+			this.concurrency = concurrency;
+			this.maxBatchSize = maxBatchSize;
+			this.batch = new ArrayList<>(Math.min(maxBatchSize, 1024));
+		}
+
+		@Override
+		public void onEvent(Slot<T> slot, long sequence, boolean endOfBatch) throws Exception {
+			if (concurrency == 1 || sequence % concurrency == ordinal) {
+				batch.add(slot.value);
+				slot.value = null;
+			}
+			if ((endOfBatch || batch.size() >= maxBatchSize) && !batch.isEmpty()) {
+				int size = batch.size();
+				try {
+					handler.handle(batch);
+				} finally {
+					batch.clear();
+					processed += size;
+					batches++;
+				}
+			}
+		}
+
+	}
+
+}
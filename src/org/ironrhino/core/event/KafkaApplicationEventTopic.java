@@ -0,0 +1,24 @@
+package org.ironrhino.core.event;
+
+import org.ironrhino.core.kafka.KafkaTopic;
+import org.ironrhino.core.metadata.Scope;
+import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+@Primary
+@Component
+@ServiceImplementationConditional(profiles = "kafka")
+public class KafkaApplicationEventTopic extends KafkaTopic<ApplicationEvent> implements ApplicationEventTopic {
+
+	@Autowired
+	private EventPublisher eventPublisher;
+
+	@Override
+	public void subscribe(ApplicationEvent event) {
+		eventPublisher.publish(event, Scope.LOCAL);
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.ironrhino.core.fs;
+
+import java.io.Serializable;
+
+public class FileInfo implements Serializable {
+
+	private static final long serialVersionUID = -3467193812304915522L;
+
+	private final String path;
+
+	private final long size;
+
+	private final long lastModified;
+
+	private final String etag;
+
+	public FileInfo(String path, long size, long lastModified, String etag) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.etag = etag;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public String getETag() {
+		return etag;
+	}
+
+}
@@ -2,15 +2,37 @@ package org.ironrhino.core.fs;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.io.ByteStreams;
+
 public interface FileStorage {
 
 	public void write(InputStream is, String path) throws IOException;
 
 	public InputStream open(String path) throws IOException;
 
+	public default InputStream open(String path, long offset, long length) throws IOException {
+		InputStream is = open(path);
+		if (offset > 0)
+			ByteStreams.skipFully(is, offset);
+		return length >= 0 ? ByteStreams.limit(is, length) : is;
+	}
+
+	public default long transferTo(String path, long offset, long length, OutputStream os) throws IOException {
+		try (InputStream is = open(path, offset, length)) {
+			return IOUtils.copyLarge(is, os);
+		}
+	}
+
+	public default long transferTo(FileInfo file, long offset, long length, OutputStream os) throws IOException {
+		return transferTo(file.getPath(), offset, length, os);
+	}
+
 	public boolean mkdir(String path);
 
 	public boolean delete(String path);
@@ -23,6 +45,33 @@ public interface FileStorage {
 
 	public long getLastModified(String path);
 
+	public default long getSize(String path) {
+		if (!exists(path) || isDirectory(path))
+			return -1;
+		try (InputStream is = open(path)) {
+			return IOUtils.skip(is, Long.MAX_VALUE);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	public default String getETag(String path) {
+		long size = getSize(path);
+		if (size < 0)
+			return null;
+		return "\"" + Long.toHexString(getLastModified(path)) + "-" + Long.toHexString(size) + "\"";
+	}
+
+	/**
+	 * @return null if the path is not a file
+	 */
+	public default FileInfo getFileInfo(String path) {
+		long size = getSize(path);
+		if (size < 0)
+			return null;
+		return new FileInfo(path, size, getLastModified(path), getETag(path));
+	}
+
 	public List<String> listFiles(String path);
 
 	public Map<String, Boolean> listFilesAndDirectory(String path);
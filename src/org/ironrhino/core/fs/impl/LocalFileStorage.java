@@ -8,8 +8,13 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +35,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 
 @Component("fileStorage")
@@ -88,6 +94,42 @@ public class LocalFileStorage implements FileStorage {
 		return new FileInputStream(new File(directory, path));
 	}
 
+	@Override
+	public InputStream open(String path, long offset, long length) throws IOException {
+		FileChannel channel = FileChannel.open(getFile(path).toPath(), StandardOpenOption.READ);
+		try {
+			channel.position(offset);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		InputStream is = Channels.newInputStream(channel);
+		return length >= 0 ? ByteStreams.limit(is, length) : is;
+	}
+
+	@Override
+	public long transferTo(String path, long offset, long length, OutputStream os) throws IOException {
+		try (FileChannel channel = FileChannel.open(getFile(path).toPath(), StandardOpenOption.READ)) {
+			long end = length >= 0 ? Math.min(offset + length, channel.size()) : channel.size();
+			// not zero-copy, a stream wrapped channel copies through a heap buffer,
+			// UploadFilesHandler hands local files to container sendfile when available
+			WritableByteChannel target = Channels.newChannel(os);
+			long position = offset;
+			while (position < end) {
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0)
+					break;
+				position += transferred;
+			}
+			return position - offset;
+		}
+	}
+
+	public File getFile(String path) {
+		path = Files.simplifyPath(path);
+		return new File(directory, path);
+	}
+
 	@Override
 	public boolean mkdir(String path) {
 		path = Files.simplifyPath(path);
@@ -106,6 +148,12 @@ public class LocalFileStorage implements FileStorage {
 		return new File(directory, path).lastModified();
 	}
 
+	@Override
+	public long getSize(String path) {
+		File file = getFile(path);
+		return file.isFile() ? file.length() : -1;
+	}
+
 	@Override
 	public boolean exists(String path) {
 		path = Files.simplifyPath(path);
@@ -5,11 +5,14 @@ import static org.ironrhino.core.metadata.Profiles.CLUSTER;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -18,18 +21,26 @@ import java.util.Map;
 
 import javax.annotation.PostConstruct;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.ironrhino.core.fs.FileInfo;
 import org.ironrhino.core.fs.FileStorage;
 import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
+import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.ValueThenKeyComparator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 
 @Component("fileStorage")
@@ -42,6 +53,10 @@ public class MongoFileStorage implements FileStorage {
 	@Value("${fileStorage.baseUrl:}")
 	protected String baseUrl;
 
+	// same as GridFS default
+	@Value("${fileStorage.chunkSize:261120}")
+	protected int chunkSize = 261120;
+
 	@Autowired
 	private MongoTemplate mongoTemplate;
 
@@ -49,6 +64,9 @@ public class MongoFileStorage implements FileStorage {
 	public void afterPropertiesSet() {
 		if (!mongoTemplate.collectionExists(File.class))
 			mongoTemplate.createCollection(File.class);
+		if (!mongoTemplate.collectionExists(Chunk.class))
+			mongoTemplate.createCollection(Chunk.class);
+		mongoTemplate.indexOps(Chunk.class).ensureIndex(new Index().on("files", Direction.ASC));
 	}
 
 	@Override
@@ -77,24 +95,45 @@ public class MongoFileStorage implements FileStorage {
 						throw new IOException("parent " + parent + " is not directory while writing path " + path);
 				}
 			}
-			file = new File();
-			file.setPath(path);
 		} else if (file.isDirectory())
 			throw new IOException("path " + path + " is directory,can not be written");
-		ByteArrayOutputStream os = new ByteArrayOutputStream(512 * 1024);
+		// new content is written under a new id and swapped in afterwards
+		String chunks = CodecUtils.nextId();
+		long length = 0;
+		String md5;
 		try {
-			IOUtils.copy(is, os);
-			file.setData(os.toByteArray());
-			file.setLastModified(System.currentTimeMillis());
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] buffer = new byte[chunkSize];
+			int n = 0;
+			int read;
+			while ((read = ByteStreams.read(is, buffer, 0, buffer.length)) > 0) {
+				byte[] data = read == buffer.length ? buffer.clone() : Arrays.copyOf(buffer, read);
+				md.update(data);
+				mongoTemplate.save(new Chunk(chunks, n++, data));
+				length += read;
+			}
+			md5 = Hex.encodeHexString(md.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		} catch (IOException | RuntimeException e) {
+			removeChunks(chunks);
+			throw e;
 		} finally {
-			IOUtils.closeQuietly(os);
 			IOUtils.closeQuietly(is);
 		}
-		mongoTemplate.save(file);
+		Update update = new Update().set("directory", false).unset("data").set("chunks", chunks)
+				.set("chunkSize", chunkSize).set("length", length).set("md5", md5)
+				.set("lastModified", System.currentTimeMillis());
+		swap(path, update);
 	}
 
 	@Override
 	public InputStream open(String path) throws IOException {
+		return open(path, 0, -1);
+	}
+
+	@Override
+	public InputStream open(String path, long offset, long length) throws IOException {
 		path = Files.simplifyPath(path);
 		if (path.equals("/"))
 			throw new IOException("cannot direct access path /");
@@ -103,7 +142,35 @@ public class MongoFileStorage implements FileStorage {
 			throw new IOException("path " + path + " doesn't exists");
 		if (file.isDirectory())
 			throw new IOException("path " + path + " is directory");
-		return new ByteArrayInputStream(file.getData());
+		return open(file, offset, length);
+	}
+
+	@Override
+	public long transferTo(String path, long offset, long length, OutputStream os) throws IOException {
+		try (InputStream is = open(path, offset, length)) {
+			return ByteStreams.copy(is, os);
+		}
+	}
+
+	@Override
+	public long transferTo(FileInfo file, long offset, long length, OutputStream os) throws IOException {
+		if (!(file instanceof MongoFileInfo))
+			return FileStorage.super.transferTo(file, offset, length, os);
+		try (InputStream is = open(((MongoFileInfo) file).file, offset, length)) {
+			return ByteStreams.copy(is, os);
+		}
+	}
+
+	private InputStream open(File file, long offset, long length) throws IOException {
+		if (file.getChunks() == null) {
+			// stored as single document before chunking was introduced
+			byte[] data = file.getData() != null ? file.getData() : new byte[0];
+			int from = (int) Math.min(offset, data.length);
+			int len = length >= 0 ? (int) Math.min(length, data.length - from) : data.length - from;
+			return new ByteArrayInputStream(data, from, len);
+		}
+		long end = length >= 0 ? Math.min(offset + length, file.getLength()) : file.getLength();
+		return new ChunkInputStream(file, Math.min(offset, end), end);
 	}
 
 	@Override
@@ -158,6 +225,8 @@ public class MongoFileStorage implements FileStorage {
 				return false;
 		}
 		mongoTemplate.remove(file);
+		if (file.getChunks() != null)
+			removeChunks(file.getChunks());
 		return true;
 	}
 
@@ -170,6 +239,44 @@ public class MongoFileStorage implements FileStorage {
 		return file != null ? file.getLastModified() : -1;
 	}
 
+	@Override
+	public long getSize(String path) {
+		File file = findFile(path);
+		return file != null ? size(file) : -1;
+	}
+
+	@Override
+	public String getETag(String path) {
+		File file = findFile(path);
+		return file != null ? etag(file) : null;
+	}
+
+	@Override
+	public FileInfo getFileInfo(String path) {
+		File file = findFile(path);
+		return file != null ? new MongoFileInfo(file) : null;
+	}
+
+	private File findFile(String path) {
+		path = Files.simplifyPath(path);
+		if (path.equals("/"))
+			return null;
+		File file = mongoTemplate.findById(path, File.class);
+		return file != null && !file.isDirectory() ? file : null;
+	}
+
+	private static long size(File file) {
+		if (file.getChunks() == null)
+			return file.getData() != null ? file.getData().length : 0;
+		return file.getLength();
+	}
+
+	private static String etag(File file) {
+		if (file.getMd5() != null)
+			return "\"" + file.getMd5() + "\"";
+		return "\"" + Long.toHexString(file.getLastModified()) + "\"";
+	}
+
 	@Override
 	public boolean exists(String path) {
 		path = Files.simplifyPath(path);
@@ -191,14 +298,11 @@ public class MongoFileStorage implements FileStorage {
 		File fromfile = mongoTemplate.findById(fromPath, File.class);
 		if (fromfile == null)
 			return false;
-		File tofile = mongoTemplate.findById(toPath, File.class);
-		if (tofile == null) {
-			tofile = new File();
-			tofile.setPath(toPath);
-		}
-		tofile.setData(fromfile.getData());
-		tofile.setLastModified(fromfile.getLastModified());
-		mongoTemplate.save(tofile);
+		Update update = new Update().set("data", fromfile.getData())
+				.set("chunks", fromfile.getChunks()).set("chunkSize", fromfile.getChunkSize())
+				.set("length", fromfile.getLength()).set("md5", fromfile.getMd5())
+				.set("lastModified", fromfile.getLastModified());
+		swap(toPath, update);
 		mongoTemplate.remove(fromfile);
 		return true;
 	}
@@ -260,6 +364,18 @@ public class MongoFileStorage implements FileStorage {
 		return StringUtils.isNotBlank(baseUrl) ? baseUrl + path : path;
 	}
 
+	private void swap(String path, Update update) {
+		// atomic, chunks of the replaced content are removed only after the swap
+		File previous = mongoTemplate.findAndModify(new Query(where("path").is(path)), update,
+				FindAndModifyOptions.options().upsert(true), File.class);
+		if (previous != null && previous.getChunks() != null)
+			removeChunks(previous.getChunks());
+	}
+
+	private void removeChunks(String chunks) {
+		mongoTemplate.remove(new Query(where("files").is(chunks)), Chunk.class);
+	}
+
 	private ValueThenKeyComparator<String, Boolean> comparator = new ValueThenKeyComparator<String, Boolean>() {
 		@Override
 		protected int compareValue(Boolean a, Boolean b) {
@@ -267,6 +383,19 @@ public class MongoFileStorage implements FileStorage {
 		}
 	};
 
+	private static class MongoFileInfo extends FileInfo {
+
+		private static final long serialVersionUID = 2812760853427925093L;
+
+		private final File file;
+
+		MongoFileInfo(File file) {
+			super(file.getPath(), size(file), file.getLastModified(), etag(file));
+			this.file = file;
+		}
+
+	}
+
 	private static class File implements Serializable {
 
 		private static final long serialVersionUID = -7690537474523537861L;
@@ -280,6 +409,14 @@ public class MongoFileStorage implements FileStorage {
 
 		private byte[] data;
 
+		private String chunks;
+
+		private int chunkSize;
+
+		private long length;
+
+		private String md5;
+
 		public String getPath() {
 			return path;
 		}
@@ -312,6 +449,168 @@ public class MongoFileStorage implements FileStorage {
 			this.data = data;
 		}
 
+		public String getChunks() {
+			return chunks;
+		}
+
+		public void setChunks(String chunks) {
+			this.chunks = chunks;
+		}
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public void setLength(long length) {
+			this.length = length;
+		}
+
+		public String getMd5() {
+			return md5;
+		}
+
+		public void setMd5(String md5) {
+			this.md5 = md5;
+		}
+
+	}
+
+	private static class Chunk implements Serializable {
+
+		private static final long serialVersionUID = 3525839574958826231L;
+
+		@Id
+		private String id;
+
+		private String files;
+
+		private int n;
+
+		private byte[] data;
+
+		public Chunk() {
+
+		}
+
+		public Chunk(String files, int n, byte[] data) {
+			this.id = id(files, n);
+			this.files = files;
+			this.n = n;
+			this.data = data;
+		}
+
+		static String id(String files, int n) {
+			return files + ":" + n;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getFiles() {
+			return files;
+		}
+
+		public void setFiles(String files) {
+			this.files = files;
+		}
+
+		public int getN() {
+			return n;
+		}
+
+		public void setN(int n) {
+			this.n = n;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public void setData(byte[] data) {
+			this.data = data;
+		}
+
+	}
+
+	// fetches chunks lazily so only one chunk is held in memory
+	private class ChunkInputStream extends InputStream {
+
+		private final String chunks;
+
+		private final int chunkSize;
+
+		private final long end;
+
+		private long position;
+
+		private byte[] current;
+
+		private int currentIndex = -1;
+
+		ChunkInputStream(File file, long offset, long end) {
+			this.chunks = file.getChunks();
+			this.chunkSize = file.getChunkSize();
+			this.position = offset;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (position >= end)
+				return -1;
+			int index = (int) (position / chunkSize);
+			if (index != currentIndex) {
+				Chunk chunk = mongoTemplate.findById(Chunk.id(chunks, index), Chunk.class);
+				if (chunk == null)
+					throw new IOException("missing chunk " + index + " of " + chunks);
+				current = chunk.getData();
+				currentIndex = index;
+			}
+			int start = (int) (position - (long) index * chunkSize);
+			int n = (int) Math.min(Math.min(len, current.length - start), end - position);
+			if (n <= 0)
+				return -1;
+			System.arraycopy(current, start, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = Math.max(0, Math.min(n, end - position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			if (currentIndex < 0 || position >= end)
+				return 0;
+			long currentEnd = Math.min((long) (currentIndex + 1) * chunkSize, end);
+			return (int) Math.max(0, currentEnd - position);
+		}
+
 	}
 
 }
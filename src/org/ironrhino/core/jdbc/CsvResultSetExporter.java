@@ -0,0 +1,99 @@
+package org.ironrhino.core.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+public class CsvResultSetExporter implements ResultSetExporter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Writer writer;
+
+	private char columnSeperator = ',';
+
+	private String lineSeperator = "\r\n";
+
+	public CsvResultSetExporter(OutputStream os, String encoding) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName(encoding)), BUFFER_SIZE);
+	}
+
+	public void setColumnSeperator(char columnSeperator) {
+		this.columnSeperator = columnSeperator;
+	}
+
+	public void setLineSeperator(String lineSeperator) {
+		this.lineSeperator = lineSeperator;
+	}
+
+	@Override
+	public void writeHeader(String[] columnNames) throws IOException {
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i > 0)
+				writer.write(columnSeperator);
+			writeText(columnNames[i]);
+		}
+		writer.write(lineSeperator);
+	}
+
+	@Override
+	public void writeRow(ResultSet rs, int columnCount) throws IOException, SQLException {
+		for (int i = 1; i <= columnCount; i++) {
+			if (i > 1)
+				writer.write(columnSeperator);
+			Object value = JdbcUtils.getResultSetValue(rs, i);
+			if (value == null)
+				continue;
+			if (value instanceof Number || value instanceof Boolean)
+				writer.write(value.toString());
+			else
+				writeText(value.toString());
+		}
+		writer.write(lineSeperator);
+	}
+
+	private void writeText(String text) throws IOException {
+		int length = text.length();
+		boolean quote = false;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == columnSeperator || c == '"' || c == '\n' || c == '\r') {
+				quote = true;
+				break;
+			}
+		}
+		if (!quote) {
+			writer.write(text);
+			return;
+		}
+		writer.write('"');
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) == '"') {
+				writer.write(text, start, i + 1 - start);
+				writer.write('"');
+				start = i + 1;
+			}
+		}
+		writer.write(text, start, length - start);
+		writer.write('"');
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+}
@@ -1,5 +1,7 @@
 package org.ironrhino.core.jdbc;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -10,10 +12,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
@@ -69,9 +73,17 @@ public class JdbcQueryService {
 
 	private List<String> keywords = new ArrayList<>();
 
+	private boolean nullsSortedHigh;
+
 	@Value("${csv.maxRows:0}")
 	private int csvMaxRows;
 
+	@Value("${jdbcQueryService.exportFetchSize:1000}")
+	private int exportFetchSize = 1000;
+
+	@Value("${jdbcQueryService.exportFlushRows:1000}")
+	private int exportFlushRows = 1000;
+
 	public int getCsvMaxRows() {
 		return csvMaxRows > 0 ? csvMaxRows : 1000 * ResultPage.DEFAULT_PAGE_SIZE;
 	}
@@ -140,6 +152,7 @@ public class JdbcQueryService {
 				databaseMajorVersion = dbmd.getDatabaseMajorVersion();
 			if (databaseMinorVersion == 0)
 				databaseMinorVersion = dbmd.getDatabaseMinorVersion();
+			nullsSortedHigh = dbmd.nullsAreSortedHigh();
 			String str = dbmd.getIdentifierQuoteString();
 			if (StringUtils.isNotBlank(str))
 				quoteString = str.trim().substring(0, 1);
@@ -441,6 +454,43 @@ public class JdbcQueryService {
 		validateAndConvertTypes(sql, paramMap);
 		boolean hasLimit = hasLimit(sql);
 		resultPage.setPaginating(!hasLimit);
+		if (resultPage.isKeyset()) {
+			String orderby = hasLimit ? null : SqlUtils.extractOrderby(sql);
+			String[] columns = null;
+			boolean[] descendings = null;
+			if (orderby != null && KEYSET_ORDERBY_PATTERN.matcher(orderby).matches()) {
+				String[] items = orderby.split(",");
+				columns = new String[items.length];
+				descendings = new boolean[items.length];
+				for (int i = 0; i < items.length && columns != null; i++) {
+					String[] arr = items[i].trim().split("\\s+");
+					descendings[i] = arr.length > 1 && arr[1].equalsIgnoreCase("desc");
+					columns[i] = resolveKeysetColumn(sql, arr[0]);
+					if (columns[i] == null)
+						columns = null;
+				}
+			}
+			if (columns != null) {
+				// rows sharing the boundary value would be skipped if the order is not unique
+				String[] keys = resolveUniqueKeyColumns(sql);
+				if (keys != null) {
+					List<String> list = new ArrayList<>(Arrays.asList(columns));
+					for (String key : keys)
+						if (!list.contains(key))
+							list.add(key);
+					boolean[] array = Arrays.copyOf(descendings, list.size());
+					columns = list.toArray(new String[list.size()]);
+					descendings = array;
+				} else {
+					columns = null;
+				}
+			}
+			if (columns != null)
+				return queryByKeyset(resultPage, sql, paramMap, columns, descendings);
+			// order by can not be mapped to columns of the derived table or made unique
+			resultPage.setKeyset(false);
+			resultPage.setCursor(null);
+		}
 		jdbcTemplate.setQueryTimeout(queryTimeout);
 		resultPage.setTotalResults(count(sql, paramMap));
 		if (resultPage.getTotalResults() > getCsvMaxRows() && (hasLimit
@@ -459,6 +509,149 @@ public class JdbcQueryService {
 		return resultPage;
 	}
 
+	// label of the order by column in the derived table, null if unresolvable
+	private String resolveKeysetColumn(String sql, String column) {
+		List<String> items = SqlUtils.extractSelectItems(sql);
+		if (items == null)
+			return null;
+		String name = normalizeIdentifier(column);
+		int index = name.lastIndexOf('.');
+		String qualifier = index > 0 ? name.substring(0, index) : null;
+		String unqualified = index > 0 ? name.substring(index + 1) : name;
+		String byExpression = null, byLabel = null;
+		int expressionMatches = 0, labelMatches = 0;
+		boolean star = false;
+		for (String item : items) {
+			if (item.equals("*") || qualifier != null && normalizeIdentifier(item).equals(qualifier + ".*")) {
+				star = true;
+				continue;
+			}
+			String expression = item, label = null;
+			Matcher m = SELECT_ITEM_ALIAS_PATTERN.matcher(item);
+			if (m.matches() && !m.group(2).equalsIgnoreCase("end")) {
+				expression = m.group(1).trim();
+				label = m.group(2);
+			} else if (IDENTIFIER_PATTERN.matcher(item).matches()) {
+				label = item.substring(item.lastIndexOf('.') + 1);
+			}
+			if (normalizeIdentifier(expression).equals(name)) {
+				expressionMatches++;
+				byExpression = label;
+			}
+			if (label != null && normalizeIdentifier(label).equals(unqualified)) {
+				labelMatches++;
+				byLabel = label;
+			}
+		}
+		if (expressionMatches > 0)
+			return expressionMatches == 1 ? byExpression : null;
+		if (qualifier == null && labelMatches > 0)
+			return labelMatches == 1 ? byLabel : null;
+		if (star && labelMatches == 0) {
+			// a plain star over joined tables may expose duplicated columns
+			if (items.contains("*") && SqlUtils.extractTables(sql, quoteString).size()
+					+ SqlUtils.extractTables(sql, quoteString, "join").size() > 1)
+				return null;
+			return column.substring(column.lastIndexOf('.') + 1);
+		}
+		return null;
+	}
+
+	// labels of the primary key of the only table, null if unresolvable
+	private String[] resolveUniqueKeyColumns(String sql) {
+		Set<String> tables = SqlUtils.extractTables(sql, quoteString);
+		if (tables.size() != 1 || !SqlUtils.extractTables(sql, quoteString, "join").isEmpty()
+				|| SUBQUERY_PATTERN.matcher(sql).find())
+			return null;
+		List<String> keys = getPrimaryKeys(tables.iterator().next());
+		if (keys.isEmpty())
+			keys = Arrays.asList("id");
+		String[] columns = new String[keys.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = resolveKeysetColumn(sql, keys.get(i));
+			if (columns[i] == null)
+				return null;
+		}
+		return columns;
+	}
+
+	private List<String> getPrimaryKeys(String table) {
+		table = StringUtils.remove(table, quoteString);
+		table = table.substring(table.lastIndexOf('.') + 1);
+		List<String> keys = new ArrayList<>();
+		Connection con = DataSourceUtils.getConnection(jdbcTemplate.getDataSource());
+		try {
+			DatabaseMetaData dbmd = con.getMetaData();
+			for (String name : new LinkedHashSet<>(Arrays.asList(table, table.toUpperCase(), table.toLowerCase()))) {
+				try (ResultSet rs = dbmd.getPrimaryKeys(catalog, schema, name)) {
+					while (rs.next())
+						keys.add(rs.getString("COLUMN_NAME"));
+				}
+				if (!keys.isEmpty())
+					break;
+			}
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+		} finally {
+			DataSourceUtils.releaseConnection(con, jdbcTemplate.getDataSource());
+		}
+		return keys;
+	}
+
+	private String normalizeIdentifier(String identifier) {
+		return StringUtils.remove(identifier, quoteString).replaceAll("\\s+", "").toLowerCase();
+	}
+
+	private ResultPage<Map<String, Object>> queryByKeyset(ResultPage<Map<String, Object>> resultPage, String sql,
+			Map<String, ?> paramMap, String[] columns, boolean[] descendings) {
+		// the order by columns are unique in combination with the trailing key columns
+		StringBuilder orders = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				orders.append(",");
+			orders.append(columns[i]).append(descendings[i] ? " desc" : " asc");
+		}
+		if (resultPage.isCounting())
+			resultPage.setTotalResults(count(sql, paramMap));
+		long time = System.currentTimeMillis();
+		String alias = "tks";
+		while (sql.contains(alias))
+			alias += "0";
+		Map<String, Object> params = paramMap != null ? new HashMap<>(paramMap) : new HashMap<>();
+		StringBuilder sb = new StringBuilder("select * from (\n").append(SqlUtils.trimOrderby(sql)).append("\n) ")
+				.append(alias);
+		if (resultPage.getCursor() != null) {
+			Object[] values = ResultPage.decodeCursor(resultPage.getCursor());
+			if (values.length != columns.length)
+				throw new IllegalArgumentException("invalid cursor: " + resultPage.getCursor());
+			String[] parameters = new String[values.length];
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					parameters[i] = alias + "_" + i;
+					params.put(parameters[i], values[i]);
+				}
+			}
+			sb.append(" where ")
+					.append(SqlUtils.buildSeekPredicate(columns, descendings, parameters, nullsSortedHigh));
+		}
+		sb.append(" order by ").append(orders);
+		int pageSize = resultPage.getPageSize();
+		List<Map<String, Object>> list = query(sb.toString(), params, pageSize + 1, 0);
+		String nextCursor = null;
+		if (list.size() > pageSize) {
+			list = new ArrayList<>(list.subList(0, pageSize));
+			Map<String, Object> last = list.get(pageSize - 1);
+			Object[] values = new Object[columns.length];
+			for (int i = 0; i < columns.length; i++)
+				values[i] = last.get(StringUtils.strip(columns[i], quoteString));
+			nextCursor = ResultPage.encodeCursor(values);
+		}
+		resultPage.setNextCursor(nextCursor);
+		resultPage.setResult(list);
+		resultPage.setTookInMillis(System.currentTimeMillis() - time);
+		return resultPage;
+	}
+
 	@Transactional(readOnly = true)
 	public void query(String sql, Map<String, ?> paramMap, final LineHandler lh) {
 		query(sql, paramMap, new RowHandler() {
@@ -468,25 +661,85 @@ public class JdbcQueryService {
 				return lh.isWithHeader();
 			}
 
+			private final StringBuilder sb = new StringBuilder(256);
+
 			@Override
 			public void handleRow(int index, Object[] row) {
 				String seperator = lh.getColumnSeperator();
-				String[] arr = new String[row.length];
-				for (int i = 0; i < arr.length; i++) {
+				sb.setLength(0);
+				for (int i = 0; i < row.length; i++) {
+					if (i > 0)
+						sb.append(seperator);
 					Object value = row[i];
-					String text = value != null ? value.toString() : "";
-					if (text.contains(String.valueOf(seperator)) || text.contains("\"") || text.contains("\n")) {
-						if (text.contains("\""))
-							text = text.replaceAll("\"", "\"\"");
-						text = new StringBuilder(text.length() + 2).append("\"").append(text).append("\"").toString();
+					if (value == null)
+						continue;
+					String text = value.toString();
+					if (text.contains(seperator) || text.indexOf('"') > -1 || text.indexOf('\n') > -1) {
+						sb.append('"');
+						for (int j = 0; j < text.length(); j++) {
+							char c = text.charAt(j);
+							if (c == '"')
+								sb.append('"');
+							sb.append(c);
+						}
+						sb.append('"');
+					} else {
+						sb.append(text);
 					}
-					arr[i] = text;
 				}
-				lh.handleLine(index, StringUtils.join(arr, seperator));
+				lh.handleLine(index, sb.toString());
 			}
 		});
 	}
 
+	@Transactional(readOnly = true)
+	public long export(String sql, Map<String, ?> paramMap, final ResultSetExporter exporter,
+			final boolean withHeader) throws IOException {
+		return export(sql, paramMap, exporter, withHeader, 0);
+	}
+
+	// rows beyond maxRows are not fetched, no count query is issued up front
+	@Transactional(readOnly = true)
+	public long export(String sql, Map<String, ?> paramMap, final ResultSetExporter exporter,
+			final boolean withHeader, final int maxRows) throws IOException {
+		try {
+			return namedParameterJdbcTemplate.execute(sql, paramMap, ps -> {
+				// MySQL Connector/J only streams with Integer.MIN_VALUE
+				ps.setFetchSize(databaseProduct == DatabaseProduct.MYSQL ? Integer.MIN_VALUE : exportFetchSize);
+				if (maxRows > 0)
+					ps.setMaxRows(maxRows + 1);
+				long rows = 0;
+				try (ResultSet rs = ps.executeQuery()) {
+					ResultSetMetaData rsmd = rs.getMetaData();
+					int columnCount = rsmd.getColumnCount();
+					if (withHeader) {
+						String[] columnNames = new String[columnCount];
+						for (int i = 1; i <= columnCount; i++)
+							columnNames[i - 1] = JdbcUtils.lookupColumnName(rsmd, i);
+						exporter.writeHeader(columnNames);
+					}
+					while (rs.next()) {
+						if (maxRows > 0 && rows == maxRows) {
+							logger.warn("Export truncated to {} rows: {}", maxRows, sql);
+							break;
+						}
+						exporter.writeRow(rs, columnCount);
+						if (++rows % exportFlushRows == 0)
+							exporter.flush();
+					}
+					exporter.flush();
+				} catch (IOException e) {
+					// client aborted, stop fetching remaining rows
+					ps.cancel();
+					throw new UncheckedIOException(e);
+				}
+				return rows;
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
 	@Transactional(readOnly = true)
 	public void query(String sql, Map<String, ?> paramMap, final RowHandler rh) {
 		final AtomicInteger ai = new AtomicInteger(0);
@@ -540,6 +793,16 @@ public class JdbcQueryService {
 		return false;
 	}
 
+	private static final Pattern KEYSET_ORDERBY_PATTERN = Pattern.compile(
+			"[\\w.\"`]+(\\s+(asc|desc))?(\\s*,\\s*[\\w.\"`]+(\\s+(asc|desc))?)*", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern SUBQUERY_PATTERN = Pattern.compile("\\(\\s*select\\s", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern SELECT_ITEM_ALIAS_PATTERN = Pattern.compile("(.*?[\\w\\)\"`'])\\s+(?:as\\s+)?([\\w\"`]+)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[\\w.\"`]+");
+
 	private static final Pattern LIMIT_PATTERN = Pattern.compile("\\s+limit\\s+\\d+", Pattern.CASE_INSENSITIVE);
 
 	private static final Pattern TOP_PATTERN = Pattern.compile("\\s+top\\s+\\d+\\s+", Pattern.CASE_INSENSITIVE);
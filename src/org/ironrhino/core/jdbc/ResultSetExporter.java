@@ -0,0 +1,16 @@
+package org.ironrhino.core.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public interface ResultSetExporter extends Closeable {
+
+	public void writeHeader(String[] columnNames) throws IOException;
+
+	public void writeRow(ResultSet rs, int columnCount) throws IOException, SQLException;
+
+	public void flush() throws IOException;
+
+}
@@ -131,6 +131,88 @@ public class SqlUtils {
 		return m.replaceAll("");
 	}
 
+	public static String extractOrderby(String sql) {
+		Matcher m = ORDERBY_PATTERN.matcher(sql);
+		if (!m.find())
+			return null;
+		String orderby = m.group().trim();
+		return orderby.substring(orderby.toLowerCase().indexOf("by") + 2).trim();
+	}
+
+	// top level items of the outermost select list, null if not a plain select
+	public static List<String> extractSelectItems(String sql) {
+		if (StringUtils.isBlank(sql))
+			return null;
+		sql = clearComments(sql).trim();
+		Matcher m = SELECT_PATTERN.matcher(sql);
+		if (!m.find())
+			return null;
+		List<String> items = new ArrayList<>();
+		int depth = 0;
+		boolean quoted = false;
+		int start = m.end();
+		for (int i = start; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'')
+				quoted = !quoted;
+			if (quoted)
+				continue;
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0) {
+				if (c == ',') {
+					items.add(sql.substring(start, i).trim());
+					start = i + 1;
+				} else if ((c == 'f' || c == 'F') && Character.isWhitespace(sql.charAt(i - 1))
+						&& sql.regionMatches(true, i, "from", 0, 4)
+						&& (i + 4 == sql.length() || !Character.isLetterOrDigit(sql.charAt(i + 4)))) {
+					items.add(sql.substring(start, i).trim());
+					return items;
+				}
+			}
+		}
+		return null;
+	}
+
+	public static String buildSeekPredicate(String[] columns, boolean[] descendings, String[] parameters,
+			boolean nullsSortedHigh) {
+		// parameters[i] is null if the value of columns[i] in the cursor is null
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			boolean nullsAfter = descendings[i] != nullsSortedHigh;
+			String term;
+			if (parameters[i] == null) {
+				if (nullsAfter)
+					continue;
+				term = columns[i] + " is not null";
+			} else {
+				term = columns[i] + (descendings[i] ? " < :" : " > :") + parameters[i];
+				if (nullsAfter)
+					term = "(" + term + " or " + columns[i] + " is null)";
+			}
+			if (sb.length() > 0)
+				sb.append(" or ");
+			sb.append("(");
+			for (int j = 0; j < i; j++) {
+				sb.append(columns[j]);
+				if (parameters[j] == null)
+					sb.append(" is null");
+				else
+					sb.append(" = :").append(parameters[j]);
+				sb.append(" and ");
+			}
+			sb.append(term).append(")");
+		}
+		if (sb.length() == 0)
+			return "1 = 0";
+		return sb.insert(0, "(").append(")").toString();
+	}
+
+	private static final Pattern SELECT_PATTERN = Pattern.compile("^select\\s+(distinct\\s+)?",
+			Pattern.CASE_INSENSITIVE);
+
 	private static final Pattern ORDERBY_PATTERN = Pattern.compile("\\s+order\\s+by\\s+.+$", Pattern.CASE_INSENSITIVE);
 
 	private static final Pattern PARAMETER_PATTERN = Pattern
@@ -0,0 +1,215 @@
+package org.ironrhino.core.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.ironrhino.core.util.DateUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Write rows as SpreadsheetML with inline strings, start a new sheet when rows
+ * exceed the limit of a worksheet, nothing is kept in memory
+ */
+public class XlsxResultSetExporter implements ResultSetExporter {
+
+	public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_ROWS_PER_SHEET = 1048576;
+
+	private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	private static final String NS_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private static final String NS_PACKAGE_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+	private final ZipOutputStream zos;
+
+	private final Writer writer;
+
+	private String[] header;
+
+	private int sheets;
+
+	private int rows;
+
+	public XlsxResultSetExporter(OutputStream os) {
+		this.zos = new ZipOutputStream(os, StandardCharsets.UTF_8);
+		this.writer = new BufferedWriter(new OutputStreamWriter(zos, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	@Override
+	public void writeHeader(String[] columnNames) throws IOException {
+		header = columnNames;
+		if (sheets == 0)
+			nextSheet();
+		else
+			writeHeaderRow();
+	}
+
+	@Override
+	public void writeRow(ResultSet rs, int columnCount) throws IOException, SQLException {
+		if (sheets == 0 || rows == MAX_ROWS_PER_SHEET)
+			nextSheet();
+		writer.write("<row r=\"");
+		writer.write(String.valueOf(++rows));
+		writer.write("\">");
+		for (int i = 1; i <= columnCount; i++) {
+			Object value = JdbcUtils.getResultSetValue(rs, i);
+			if (value == null) {
+				writer.write("<c/>");
+			} else if (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())
+					|| value instanceof Float && (((Float) value).isNaN() || ((Float) value).isInfinite())) {
+				// excel has no representation for them
+				writeInlineString(value.toString());
+			} else if (value instanceof Number) {
+				writer.write("<c><v>");
+				writer.write(value.toString());
+				writer.write("</v></c>");
+			} else if (value instanceof Date) {
+				Date date = (Date) value;
+				if (value instanceof Time)
+					writeInlineString(DateUtils.format(date, "HH:mm:ss"));
+				else if (value instanceof java.sql.Date)
+					writeInlineString(DateUtils.formatDate10(date));
+				else
+					writeInlineString(DateUtils.formatDatetime(date));
+			} else {
+				writeInlineString(value.toString());
+			}
+		}
+		writer.write("</row>");
+	}
+
+	private void writeHeaderRow() throws IOException {
+		writer.write("<row r=\"");
+		writer.write(String.valueOf(++rows));
+		writer.write("\">");
+		for (String name : header)
+			writeInlineString(name);
+		writer.write("</row>");
+	}
+
+	private void writeInlineString(String text) throws IOException {
+		writer.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+		int length = text.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String replacement;
+			if (c == '&')
+				replacement = "&amp;";
+			else if (c == '<')
+				replacement = "&lt;";
+			else if (c == '>')
+				replacement = "&gt;";
+			else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == '\uFFFE' || c == '\uFFFF'
+					|| isUnpairedSurrogate(text, i))
+				replacement = ""; // not allowed in xml
+			else
+				continue;
+			writer.write(text, start, i - start);
+			writer.write(replacement);
+			start = i + 1;
+		}
+		writer.write(text, start, length - start);
+		writer.write("</t></is></c>");
+	}
+
+	private static boolean isUnpairedSurrogate(String text, int index) {
+		char c = text.charAt(index);
+		if (Character.isHighSurrogate(c))
+			return index + 1 == text.length() || !Character.isLowSurrogate(text.charAt(index + 1));
+		if (Character.isLowSurrogate(c))
+			return index == 0 || !Character.isHighSurrogate(text.charAt(index - 1));
+		return false;
+	}
+
+	private void nextSheet() throws IOException {
+		if (sheets > 0)
+			endSheet();
+		sheets++;
+		rows = 0;
+		zos.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheets + ".xml"));
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<worksheet xmlns=\"");
+		writer.write(NS_MAIN);
+		writer.write("\"><sheetData>");
+		if (header != null)
+			writeHeaderRow();
+	}
+
+	private void endSheet() throws IOException {
+		writer.write("</sheetData></worksheet>");
+		writer.flush();
+		zos.closeEntry();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+		zos.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (sheets == 0)
+			nextSheet();
+		endSheet();
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		sb.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+		sb.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+		sb.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+		sb.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"").append(CONTENT_TYPE)
+				.append(".main+xml\"/>");
+		for (int i = 1; i <= sheets; i++)
+			sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(
+					".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+		sb.append("</Types>");
+		writeEntry("[Content_Types].xml", sb);
+		sb.setLength(0);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		sb.append("<Relationships xmlns=\"").append(NS_PACKAGE_RELATIONSHIPS).append("\">");
+		sb.append("<Relationship Id=\"rId1\" Type=\"").append(NS_RELATIONSHIPS)
+				.append("/officeDocument\" Target=\"xl/workbook.xml\"/>");
+		sb.append("</Relationships>");
+		writeEntry("_rels/.rels", sb);
+		sb.setLength(0);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		sb.append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_RELATIONSHIPS)
+				.append("\"><sheets>");
+		for (int i = 1; i <= sheets; i++)
+			sb.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i).append("\" r:id=\"rId")
+					.append(i).append("\"/>");
+		sb.append("</sheets></workbook>");
+		writeEntry("xl/workbook.xml", sb);
+		sb.setLength(0);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		sb.append("<Relationships xmlns=\"").append(NS_PACKAGE_RELATIONSHIPS).append("\">");
+		for (int i = 1; i <= sheets; i++)
+			sb.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_RELATIONSHIPS)
+					.append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+		sb.append("</Relationships>");
+		writeEntry("xl/_rels/workbook.xml.rels", sb);
+		writer.close();
+	}
+
+	private void writeEntry(String name, CharSequence content) throws IOException {
+		zos.putNextEntry(new ZipEntry(name));
+		writer.append(content);
+		writer.flush();
+		zos.closeEntry();
+	}
+
+}
@@ -0,0 +1,42 @@
+package org.ironrhino.core.kafka;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+public class JavaSerializer implements Serializer<Serializable>, Deserializer<Serializable> {
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+
+	}
+
+	@Override
+	public byte[] serialize(String topic, Serializable data) {
+		return data != null ? SerializationUtils.serialize(data) : null;
+	}
+
+	@Override
+	public Serializable deserialize(String topic, byte[] data) {
+		if (data == null)
+			return null;
+		try {
+			return SerializationUtils.deserialize(data);
+		} catch (SerializationException e) {
+			// message from other app
+			if (e.getCause() instanceof ClassNotFoundException)
+				return null;
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.ironrhino.core.kafka;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+@Configuration
+@Profile("kafka")
+public class KafkaConfiguration {
+
+	@Value("${kafka.bootstrapServers:localhost:9092}")
+	private String bootstrapServers;
+
+	@Value("${kafka.producer.acks:1}")
+	private String acks;
+
+	@Value("${kafka.producer.batchSize:65536}")
+	private int batchSize;
+
+	@Value("${kafka.producer.lingerMs:5}")
+	private int lingerMs;
+
+	@Value("${kafka.producer.compressionType:none}")
+	private String compressionType;
+
+	@Value("${kafka.consumer.maxPartitionFetchBytes:1048576}")
+	private int maxPartitionFetchBytes;
+
+	@Bean
+	public ProducerFactory<String, Serializable> kafkaProducerFactory() {
+		Map<String, Object> configs = new HashMap<>();
+		configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		configs.put(ProducerConfig.ACKS_CONFIG, acks);
+		// records are sent asynchronously and batched per partition
+		configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+		configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+		configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+		return new DefaultKafkaProducerFactory<>(configs, new StringSerializer(), new JavaSerializer());
+	}
+
+	@Bean
+	public KafkaTemplate<String, Serializable> kafkaTemplate() {
+		return new KafkaTemplate<>(kafkaProducerFactory());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <T extends Serializable> ConsumerFactory<String, T> createConsumerFactory(String groupId,
+			boolean fromEarliest) {
+		Map<String, Object> configs = new HashMap<>();
+		configs.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		configs.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+		// offsets are committed by listener container after records processed
+		configs.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, fromEarliest ? "earliest" : "latest");
+		configs.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, maxPartitionFetchBytes);
+		return new DefaultKafkaConsumerFactory(configs, new StringDeserializer(), new JavaSerializer());
+	}
+
+}
@@ -0,0 +1,91 @@
+package org.ironrhino.core.kafka;
+
+import java.io.Serializable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.ironrhino.core.message.Queue;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+
+/**
+ * Consumers of all instances share one consumer group, each message is
+ * consumed once and offsets are committed after consumed. Parallelism is
+ * bounded by partitions of the topic.
+ */
+public abstract class KafkaQueue<T extends Serializable> implements Queue<T> {
+
+	protected String queueName;
+
+	protected boolean consuming;
+
+	protected int concurrency = 1;
+
+	@Autowired
+	protected KafkaTemplate<String, Serializable> kafkaTemplate;
+
+	@Autowired
+	protected KafkaConfiguration kafkaConfiguration;
+
+	private ConcurrentMessageListenerContainer<String, T> container;
+
+	public KafkaQueue() {
+		Class<?> clazz = ReflectionUtils.getGenericClass(getClass(), KafkaQueue.class);
+		if (clazz != null)
+			queueName = clazz.getName().replace('$', '_');
+	}
+
+	public String getQueueName() {
+		return queueName;
+	}
+
+	public void setQueueName(String queueName) {
+		this.queueName = queueName;
+	}
+
+	public void setConsuming(boolean consuming) {
+		this.consuming = consuming;
+	}
+
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (!consuming)
+			return;
+		container = new ConcurrentMessageListenerContainer<>(
+				kafkaConfiguration.createConsumerFactory(queueName, true), new ContainerProperties(queueName));
+		container.setupMessageListener((MessageListener<String, T>) record -> {
+			if (record.value() != null)
+				consume(record.value());
+		});
+		container.setConcurrency(concurrency);
+		container.setBeanName(queueName);
+		container.start();
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (container != null)
+			container.stop();
+	}
+
+	// messages with the same key go to the same partition and are consumed in
+	// order, null for round robin
+	protected String getPartitionKey(T message) {
+		return null;
+	}
+
+	@Override
+	public void produce(T message) {
+		kafkaTemplate.send(queueName, getPartitionKey(message), message);
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.ironrhino.core.kafka;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.ironrhino.core.message.Topic;
+import org.ironrhino.core.metadata.Scope;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+
+/**
+ * Every instance subscribes with its own consumer group, messages with the
+ * same partition key are delivered in order.
+ */
+public abstract class KafkaTopic<T extends Serializable> implements Topic<T> {
+
+	protected String topicName;
+
+	@Autowired
+	protected KafkaTemplate<String, Serializable> kafkaTemplate;
+
+	@Autowired
+	protected KafkaConfiguration kafkaConfiguration;
+
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
+	private ConcurrentMessageListenerContainer<String, T> container;
+
+	public KafkaTopic() {
+		Class<?> clazz = ReflectionUtils.getGenericClass(getClass(), KafkaTopic.class);
+		if (clazz != null)
+			topicName = clazz.getName().replace('$', '_');
+	}
+
+	public void setTopicName(String topicName) {
+		this.topicName = topicName;
+	}
+
+	@PostConstruct
+	public void init() {
+		container = new ConcurrentMessageListenerContainer<>(
+				kafkaConfiguration.createConsumerFactory(getConsumerGroupId(), false),
+				new ContainerProperties(getTopicName(Scope.GLOBAL), getTopicName(Scope.APPLICATION)));
+		container.setupMessageListener((MessageListener<String, T>) record -> {
+			if (record.value() != null)
+				subscribe(record.value());
+		});
+		container.setBeanName(topicName);
+		container.start();
+	}
+
+	@PreDestroy
+	public void destroy() {
+		container.stop();
+	}
+
+	// stable across restarts, so committed offsets are reused instead of
+	// leaving a consumer group per start behind
+	protected String getConsumerGroupId() {
+		StringBuilder sb = new StringBuilder(AppInfo.getAppName()).append("@").append(AppInfo.getHostAddress());
+		if (AppInfo.getHttpPort() > 0)
+			sb.append(':').append(AppInfo.getHttpPort());
+		return sb.toString();
+	}
+
+	protected String getTopicName(Scope scope) {
+		if (scope == null || scope == Scope.LOCAL)
+			return null;
+		StringBuilder sb = new StringBuilder(topicName).append(".");
+		if (scope == Scope.APPLICATION)
+			sb.append(AppInfo.getAppName());
+		return sb.toString();
+	}
+
+	// messages with the same key go to the same partition, null for round
+	// robin
+	protected String getPartitionKey(T message) {
+		return null;
+	}
+
+	@Override
+	public void publish(final T message, Scope scope) {
+		if (scope == null)
+			scope = Scope.GLOBAL;
+		if (scope == Scope.LOCAL) {
+			Runnable task = () -> subscribe(message);
+			if (executorService != null)
+				executorService.execute(task);
+			else
+				task.run();
+		} else {
+			kafkaTemplate.send(getTopicName(scope), getPartitionKey(message), message);
+		}
+	}
+
+}
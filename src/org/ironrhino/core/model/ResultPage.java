@@ -2,15 +2,22 @@ package org.ironrhino.core.model;
 
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.servlet.RequestContext;
+import org.ironrhino.core.util.JsonUtils;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -24,6 +31,8 @@ public class ResultPage<T> implements Serializable {
 
 	public static final String PAGESIZE_PARAM_NAME = "ps";
 
+	public static final String CURSOR_PARAM_NAME = "cursor";
+
 	public static final int DEFAULT_MAX_PAGESIZE = 1000;
 
 	public static ThreadLocal<Integer> MAX_PAGESIZE = new ThreadLocal<Integer>() {
@@ -61,6 +70,13 @@ public class ResultPage<T> implements Serializable {
 	@JsonIgnore
 	private int start = -1;
 
+	@JsonIgnore
+	private boolean keyset;
+
+	private String cursor;
+
+	private String nextCursor;
+
 	private Collection<T> result = new ArrayList<>(0);
 
 	public int getStart() {
@@ -99,6 +115,30 @@ public class ResultPage<T> implements Serializable {
 		return paginating == null || paginating;
 	}
 
+	public boolean isKeyset() {
+		return keyset || cursor != null;
+	}
+
+	public void setKeyset(boolean keyset) {
+		this.keyset = keyset;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = StringUtils.isNotBlank(cursor) ? cursor : null;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	public boolean isExecuted() {
 		return executed;
 	}
@@ -171,6 +211,8 @@ public class ResultPage<T> implements Serializable {
 
 	@JsonIgnore
 	public boolean isLast() {
+		if (isKeyset())
+			return nextCursor == null;
 		return this.pageNo >= getTotalPage();
 	}
 
@@ -222,6 +264,101 @@ public class ResultPage<T> implements Serializable {
 		}
 	}
 
+	public String renderCursorUrl(String cursor) {
+		HttpServletRequest request = RequestContext.getRequest();
+		String requestURI = (String) request.getAttribute("struts.request_uri");
+		if (requestURI == null)
+			requestURI = (String) request.getAttribute("javax.servlet.forward.request_uri");
+		if (requestURI == null)
+			requestURI = request.getRequestURI();
+		StringBuilder sb = new StringBuilder(requestURI);
+		String parameterString = _getParameterString();
+		if (StringUtils.isNotBlank(parameterString))
+			sb.append("?").append(parameterString);
+		if (!isDefaultPageSize())
+			sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGESIZE_PARAM_NAME).append("=")
+					.append(pageSize);
+		if (StringUtils.isNotBlank(cursor))
+			sb.append(sb.indexOf("?") > 0 ? "&" : "?").append(CURSOR_PARAM_NAME).append("=").append(cursor);
+		return sb.toString();
+	}
+
+	public static String encodeCursor(Object... values) {
+		List<String> list = new ArrayList<>(values.length);
+		for (Object value : values) {
+			if (value == null)
+				list.add(null);
+			else if (value instanceof Timestamp)
+				// keep sub-millisecond precision
+				list.add("T" + ((Timestamp) value).getTime() + "." + ((Timestamp) value).getNanos());
+			else if (value instanceof Date)
+				list.add("t" + ((Date) value).getTime());
+			else if (value instanceof Long)
+				list.add("l" + value);
+			else if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+				list.add("i" + value);
+			else if (value instanceof Double || value instanceof Float)
+				list.add("d" + value);
+			else if (value instanceof Number)
+				list.add("n" + value);
+			else if (value instanceof Boolean)
+				list.add("b" + value);
+			else if (value instanceof Enum)
+				list.add("s" + ((Enum<?>) value).name());
+			else
+				list.add("s" + value);
+		}
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(JsonUtils.toJson(list).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static Object[] decodeCursor(String cursor) {
+		List<String> list;
+		try {
+			list = JsonUtils.fromJson(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8),
+					JsonUtils.STRING_LIST_TYPE);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+		}
+		Object[] values = new Object[list.size()];
+		for (int i = 0; i < values.length; i++) {
+			String s = list.get(i);
+			if (s == null || s.isEmpty())
+				continue;
+			String value = s.substring(1);
+			switch (s.charAt(0)) {
+			case 'T':
+				int index = value.indexOf('.');
+				Timestamp timestamp = new Timestamp(Long.valueOf(index > 0 ? value.substring(0, index) : value));
+				if (index > 0)
+					timestamp.setNanos(Integer.valueOf(value.substring(index + 1)));
+				values[i] = timestamp;
+				break;
+			case 't':
+				values[i] = new Date(Long.valueOf(value));
+				break;
+			case 'l':
+				values[i] = Long.valueOf(value);
+				break;
+			case 'i':
+				values[i] = Integer.valueOf(value);
+				break;
+			case 'd':
+				values[i] = Double.valueOf(value);
+				break;
+			case 'n':
+				values[i] = new BigDecimal(value);
+				break;
+			case 'b':
+				values[i] = Boolean.valueOf(value);
+				break;
+			default:
+				values[i] = value;
+			}
+		}
+		return values;
+	}
+
 	private String _parameterString;
 
 	private String _getParameterString() {
@@ -232,7 +369,7 @@ public class ResultPage<T> implements Serializable {
 				String name = entry.getKey();
 				String[] values = entry.getValue();
 				if (values.length == 1 && values[0].equals("") || name.equals("_") || name.equals(PAGENO_PARAM_NAME)
-						|| name.equals(PAGESIZE_PARAM_NAME)
+						|| name.equals(PAGESIZE_PARAM_NAME) || name.equals(CURSOR_PARAM_NAME)
 						|| name.startsWith(StringUtils.uncapitalize(ResultPage.class.getSimpleName()) + '.'))
 					continue;
 				try {
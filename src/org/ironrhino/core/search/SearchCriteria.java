@@ -10,6 +10,8 @@ public class SearchCriteria implements Serializable {
 
 	private String query;
 
+	private String[] types;
+
 	private Map<String, Boolean> sorts = new LinkedHashMap<>(4, 1);
 
 	public String getQuery() {
@@ -20,6 +22,14 @@ public class SearchCriteria implements Serializable {
 		this.query = query;
 	}
 
+	public String[] getTypes() {
+		return types;
+	}
+
+	public void setTypes(String[] types) {
+		this.types = types;
+	}
+
 	public Map<String, Boolean> getSorts() {
 		return sorts;
 	}
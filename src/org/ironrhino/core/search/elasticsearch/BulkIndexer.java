@@ -0,0 +1,288 @@
+package org.ironrhino.core.search.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@SuppressWarnings("rawtypes")
+public class BulkIndexer {
+
+	private Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Client client;
+
+	private int capacity = 10000;
+
+	private int bulkSize = 500;
+
+	private long flushInterval = 1000;
+
+	private long offerTimeout = 5000;
+
+	private int maxRetries = 5;
+
+	private long maxBackoff = 60000;
+
+	// keyed by type and id, later operations replace pending ones
+	private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = lock.newCondition();
+
+	private final Condition flushNeeded = lock.newCondition();
+
+	private final AtomicLong flushed = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private volatile boolean running;
+
+	private Thread flusher;
+
+	private int consecutiveFailures;
+
+	public BulkIndexer(Client client) {
+		this.client = client;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setBulkSize(int bulkSize) {
+		this.bulkSize = bulkSize;
+	}
+
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	public void setOfferTimeout(long offerTimeout) {
+		this.offerTimeout = offerTimeout;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	public void start() {
+		running = true;
+		flusher = new Thread(this::run, "bulk-indexer");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	public void stop() {
+		running = false;
+		lock.lock();
+		try {
+			flushNeeded.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join(flushInterval + offerTimeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<Entry> batch;
+		while (!(batch = drain()).isEmpty())
+			if (!execute(batch))
+				break;
+	}
+
+	public void add(String key, ActionRequest request) {
+		lock.lock();
+		try {
+			Entry entry = pending.get(key);
+			if (entry != null) {
+				entry.request = request;
+				entry.attempts = 0;
+				return;
+			}
+			long nanos = TimeUnit.MILLISECONDS.toNanos(offerTimeout);
+			while (pending.size() >= capacity) {
+				if (nanos <= 0) {
+					dropped.incrementAndGet();
+					logger.error("index queue is full, dropped {}", key);
+					return;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			pending.put(key, new Entry(key, request));
+			if (pending.size() >= bulkSize)
+				flushNeeded.signal();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			dropped.incrementAndGet();
+			logger.error("interrupted, dropped {}", key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return pending.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getIndexLag() {
+		long oldest = 0;
+		lock.lock();
+		try {
+			for (Entry entry : pending.values())
+				if (oldest == 0 || entry.enqueued < oldest)
+					oldest = entry.enqueued;
+		} finally {
+			lock.unlock();
+		}
+		return oldest > 0 ? System.currentTimeMillis() - oldest : 0;
+	}
+
+	public long getFlushedCount() {
+		return flushed.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	private void run() {
+		while (running) {
+			try {
+				lock.lock();
+				try {
+					if (running && pending.size() < bulkSize)
+						flushNeeded.await(flushInterval, TimeUnit.MILLISECONDS);
+				} finally {
+					lock.unlock();
+				}
+				List<Entry> batch = drain();
+				if (batch.isEmpty())
+					continue;
+				if (execute(batch)) {
+					consecutiveFailures = 0;
+				} else {
+					long backoff = Math.min(maxBackoff, flushInterval << Math.min(++consecutiveFailures, 16));
+					Thread.sleep(backoff);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (Throwable e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	private List<Entry> drain() {
+		lock.lock();
+		try {
+			List<Entry> batch = new ArrayList<>(Math.min(bulkSize, pending.size()));
+			Iterator<Entry> it = pending.values().iterator();
+			while (it.hasNext() && batch.size() < bulkSize) {
+				batch.add(it.next());
+				it.remove();
+			}
+			if (!batch.isEmpty())
+				notFull.signalAll();
+			return batch;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean execute(List<Entry> batch) {
+		BulkRequest bulkRequest = new BulkRequest();
+		for (Entry entry : batch)
+			bulkRequest.add(entry.request);
+		try {
+			BulkResponse br = client.bulk(bulkRequest).actionGet();
+			if (!br.hasFailures()) {
+				flushed.addAndGet(batch.size());
+				return true;
+			}
+			List<Entry> retries = new ArrayList<>();
+			for (BulkItemResponse item : br.getItems()) {
+				// conflict of versioned request means a newer version is indexed
+				if (item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT)
+					retries.add(batch.get(item.getItemId()));
+				else
+					flushed.incrementAndGet();
+			}
+			if (retries.isEmpty())
+				return true;
+			logger.warn(br.buildFailureMessage());
+			requeue(retries);
+			return false;
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+			requeue(batch);
+			return false;
+		}
+	}
+
+	private void requeue(List<Entry> entries) {
+		lock.lock();
+		try {
+			for (Entry entry : entries) {
+				if (++entry.attempts > maxRetries) {
+					failed.incrementAndGet();
+					logger.error("give up indexing {} after {} attempts", entry.key, maxRetries);
+					continue;
+				}
+				// newer operation for the same document wins
+				pending.putIfAbsent(entry.key, entry);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static class Entry {
+
+		private final String key;
+
+		private final long enqueued = System.currentTimeMillis();
+
+		private ActionRequest request;
+
+		private int attempts;
+
+		Entry(String key, ActionRequest request) {
+			this.key = key;
+			this.request = request;
+		}
+
+	}
+
+}
@@ -9,8 +9,6 @@ public class ElasticSearchCriteria extends SearchCriteria {
 
 	private String[] indices;
 
-	private String[] types;
-
 	private QueryBuilder queryBuilder;
 
 	public QueryBuilder getQueryBuilder() {
@@ -29,12 +27,4 @@ public class ElasticSearchCriteria extends SearchCriteria {
 		this.indices = indices;
 	}
 
-	public String[] getTypes() {
-		return types;
-	}
-
-	public void setTypes(String[] types) {
-		this.types = types;
-	}
-
 }
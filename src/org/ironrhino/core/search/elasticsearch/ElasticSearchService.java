@@ -53,7 +53,7 @@ public class ElasticSearchService<T> implements SearchService<T> {
 
 	@Override
 	public ResultPage<T> search(ResultPage<T> resultPage, Mapper<T> mapper) {
-		ElasticSearchCriteria criteria = resultPage.getCriteria();
+		SearchCriteria criteria = resultPage.getCriteria();
 		if (criteria == null)
 			return resultPage;
 		SearchRequestBuilder srb = criteria2builder(criteria);
@@ -97,10 +97,9 @@ public class ElasticSearchService<T> implements SearchService<T> {
 
 	@Override
 	public List<T> search(SearchCriteria searchCriteria, Mapper mapper, int limit) {
-		ElasticSearchCriteria criteria = (ElasticSearchCriteria) searchCriteria;
-		if (criteria == null)
+		if (searchCriteria == null)
 			return null;
-		SearchRequestBuilder srb = criteria2builder(criteria);
+		SearchRequestBuilder srb = criteria2builder(searchCriteria);
 		srb.setFrom(0);
 		if (limit > 0 && limit < ResultPage.DEFAULT_MAX_PAGESIZE)
 			srb.setSize(limit);
@@ -125,10 +124,9 @@ public class ElasticSearchService<T> implements SearchService<T> {
 
 	@Override
 	public Map<String, Integer> countTermsByField(SearchCriteria searchCriteria, String field) {
-		ElasticSearchCriteria criteria = (ElasticSearchCriteria) searchCriteria;
-		if (criteria == null)
+		if (searchCriteria == null)
 			return null;
-		SearchRequestBuilder srb = criteria2builder(criteria);
+		SearchRequestBuilder srb = criteria2builder(searchCriteria);
 		srb.setFrom(0);
 		srb.setSize(0);
 		TermsBuilder tb = AggregationBuilders.terms(field);
@@ -150,8 +148,10 @@ public class ElasticSearchService<T> implements SearchService<T> {
 
 	private static Pattern wildcardQueryPattern = Pattern.compile("\\w+:.*[\\?\\*].*");
 
-	private SearchRequestBuilder criteria2builder(ElasticSearchCriteria criteria) {
-		String[] indices = criteria.getIndices();
+	private SearchRequestBuilder criteria2builder(SearchCriteria criteria) {
+		ElasticSearchCriteria esc = criteria instanceof ElasticSearchCriteria ? (ElasticSearchCriteria) criteria
+				: null;
+		String[] indices = esc != null ? esc.getIndices() : null;
 		if (indices == null || indices.length == 0)
 			indices = new String[] { indexManager.getIndexName() };
 		SearchRequestBuilder srb = client.prepareSearch(indices);
@@ -159,7 +159,7 @@ public class ElasticSearchService<T> implements SearchService<T> {
 		String[] types = criteria.getTypes();
 		if (types != null && types.length > 0)
 			srb.setTypes(types);
-		QueryBuilder qb = criteria.getQueryBuilder();
+		QueryBuilder qb = esc != null ? esc.getQueryBuilder() : null;
 		String query = criteria.getQuery();
 		if (qb == null && StringUtils.isBlank(query))
 			throw new NullPointerException("queryBuilder is null and queryString is blank");
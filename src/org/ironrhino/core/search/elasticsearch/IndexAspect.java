@@ -2,18 +2,28 @@ package org.ironrhino.core.search.elasticsearch;
 
 import java.util.List;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.aspectj.lang.annotation.AfterReturning;
 import org.aspectj.lang.annotation.Aspect;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.ironrhino.core.aop.AopContext;
 import org.ironrhino.core.model.Persistable;
 import org.ironrhino.core.search.elasticsearch.annotations.Searchable;
 import org.ironrhino.core.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 
 @Aspect
@@ -26,37 +36,109 @@ public class IndexAspect implements Ordered {
 	@Autowired
 	private IndexManager indexManager;
 
+	@Autowired
+	private Client client;
+
+	@Value("${indexAspect.async:true}")
+	private boolean async = true;
+
+	@Value("${indexAspect.queueCapacity:10000}")
+	private int queueCapacity = 10000;
+
+	@Value("${indexAspect.bulkSize:500}")
+	private int bulkSize = 500;
+
+	@Value("${indexAspect.flushInterval:1000}")
+	private long flushInterval = 1000;
+
+	@Value("${indexAspect.maxRetries:5}")
+	private int maxRetries = 5;
+
+	private BulkIndexer bulkIndexer;
+
 	private int order;
 
 	public IndexAspect() {
 		order = 1;
 	}
 
+	@PostConstruct
+	public void init() {
+		if (async) {
+			bulkIndexer = new BulkIndexer(client);
+			bulkIndexer.setCapacity(queueCapacity);
+			bulkIndexer.setBulkSize(bulkSize);
+			bulkIndexer.setFlushInterval(flushInterval);
+			bulkIndexer.setMaxRetries(maxRetries);
+			bulkIndexer.start();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (bulkIndexer != null)
+			bulkIndexer.stop();
+	}
+
+	public BulkIndexer getBulkIndexer() {
+		return bulkIndexer;
+	}
+
 	@AfterReturning(pointcut = "execution(java.util.List org.ironrhino.core.service.BaseManager.delete(*)) ", returning = "list")
 	public void deleteBatch(List list) throws Throwable {
 		if (!AopContext.isBypass(this.getClass()) && list != null)
 			for (Object entity : list) {
 				Searchable searchable = ReflectionUtils.getActualClass(entity).getAnnotation(Searchable.class);
-				if (searchable != null) {
-					ListenableActionFuture<DeleteResponse> laf = indexManager.delete((Persistable) entity);
-					laf.addListener(deleteResponseActionListener);
-				}
+				if (searchable != null)
+					doDelete((Persistable) entity);
 			}
 	}
 
 	@AfterReturning("execution(* org.ironrhino.core.service.BaseManager.delete(*)) and args(entity) and @args(searchable)")
 	public void delete(Persistable entity, Searchable searchable) {
-		if (!AopContext.isBypass(this.getClass())) {
-			ListenableActionFuture<DeleteResponse> laf = indexManager.delete(entity);
-			laf.addListener(deleteResponseActionListener);
-		}
+		if (!AopContext.isBypass(this.getClass()))
+			doDelete(entity);
 	}
 
 	@AfterReturning("execution(* org.ironrhino.core.service.BaseManager.save(*)) and args(entity) and @args(searchable)")
 	public void save(Persistable entity, Searchable searchable) throws Throwable {
 		if (!AopContext.isBypass(this.getClass())) {
-			ListenableActionFuture<IndexResponse> laf = indexManager.index(entity);
-			laf.addListener(indexResponseActionListener);
+			if (bulkIndexer != null) {
+				IndexRequest request = indexManager.prepareIndex(entity).request();
+				bulkIndexer.add(request.type() + '#' + request.id(), request);
+			} else {
+				ListenableActionFuture<IndexResponse> laf = indexManager.index(entity);
+				laf.addListener(indexResponseActionListener);
+			}
+			// keep the index being rebuilt up to date
+			String rebuildingIndexName = indexManager.getRebuildingIndexName();
+			if (rebuildingIndexName != null) {
+				IndexRequest request = indexManager.prepareIndex(entity).setIndex(rebuildingIndexName)
+						.setVersion(System.currentTimeMillis()).setVersionType(VersionType.EXTERNAL).request();
+				if (bulkIndexer != null)
+					bulkIndexer.add(rebuildingIndexName + '#' + request.type() + '#' + request.id(), request);
+				else
+					client.index(request).addListener(indexResponseActionListener);
+			}
+		}
+	}
+
+	private void doDelete(Persistable entity) {
+		if (bulkIndexer != null) {
+			DeleteRequest request = indexManager.prepareDelete(entity).request();
+			bulkIndexer.add(request.type() + '#' + request.id(), request);
+		} else {
+			ListenableActionFuture<DeleteResponse> laf = indexManager.delete(entity);
+			laf.addListener(deleteResponseActionListener);
+		}
+		String rebuildingIndexName = indexManager.getRebuildingIndexName();
+		if (rebuildingIndexName != null) {
+			DeleteRequest request = indexManager.prepareDelete(entity).setIndex(rebuildingIndexName)
+					.setVersion(System.currentTimeMillis()).setVersionType(VersionType.EXTERNAL).request();
+			if (bulkIndexer != null)
+				bulkIndexer.add(rebuildingIndexName + '#' + request.type() + '#' + request.id(), request);
+			else
+				client.delete(request).addListener(deleteResponseActionListener);
 		}
 	}
 
@@ -78,7 +160,8 @@ public class IndexAspect implements Ordered {
 
 		@Override
 		public void onFailure(Throwable e) {
-			logger.error(e.getMessage(), e);
+			if (!(ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException))
+				logger.error(e.getMessage(), e);
 		}
 	};
 
@@ -89,7 +172,8 @@ public class IndexAspect implements Ordered {
 
 		@Override
 		public void onFailure(Throwable e) {
-			logger.error(e.getMessage(), e);
+			if (!(ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException))
+				logger.error(e.getMessage(), e);
 		}
 	};
 
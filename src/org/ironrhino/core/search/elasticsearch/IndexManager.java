@@ -1,7 +1,9 @@
 package org.ironrhino.core.search.elasticsearch;
 
 import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.search.SearchHit;
 import org.ironrhino.core.model.Persistable;
@@ -13,10 +15,16 @@ public interface IndexManager {
 
 	public Object searchHitToEntity(SearchHit sh) throws Exception;
 
+	public IndexRequestBuilder prepareIndex(Persistable entity);
+
+	public DeleteRequestBuilder prepareDelete(Persistable entity);
+
 	public ListenableActionFuture<IndexResponse> index(Persistable entity);
 
 	public ListenableActionFuture<DeleteResponse> delete(Persistable entity);
 
+	public String getRebuildingIndexName();
+
 	public void rebuild();
 
 	public void indexAll(String type);
@@ -1,34 +1,52 @@
 package org.ironrhino.core.search.elasticsearch;
 
 import java.beans.PropertyDescriptor;
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang3.StringUtils;
-import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.ironrhino.core.coordination.LockService;
 import org.ironrhino.core.metadata.Trigger;
 import org.ironrhino.core.model.Persistable;
@@ -43,11 +61,14 @@ import org.ironrhino.core.util.AnnotationUtils;
 import org.ironrhino.core.util.ClassScanner;
 import org.ironrhino.core.util.DateUtils;
 import org.ironrhino.core.util.JsonUtils;
+import org.ironrhino.core.util.NameableThreadFactory;
 import org.ironrhino.core.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.introspect.Annotated;
@@ -56,6 +77,10 @@ import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
 @SuppressWarnings(value = { "unchecked", "rawtypes" })
 public class IndexManagerImpl implements IndexManager {
 
+	private static final String CHECKPOINT_TYPE = "checkpoint";
+
+	private static final String CHECKPOINT_CURRENT = "current";
+
 	@Autowired
 	private Logger logger;
 
@@ -75,6 +100,22 @@ public class IndexManagerImpl implements IndexManager {
 	@Autowired
 	private EntityManager entityManager;
 
+	@Value("${indexManager.rebuild.concurrency:4}")
+	private int rebuildConcurrency = 4;
+
+	@Value("${indexManager.rebuild.batchSize:500}")
+	private int rebuildBatchSize = 500;
+
+	@Value("${indexManager.rebuild.gcDeletes:12h}")
+	private String rebuildGcDeletes = "12h";
+
+	@Value("${indexManager.checkRebuilding.fixedDelay:10000}")
+	private long checkRebuildingInterval = 10000;
+
+	private volatile String rebuildingIndexName;
+
+	private volatile boolean rebuilding;
+
 	private ObjectMapper objectMapper;
 
 	@Override
@@ -461,26 +502,44 @@ public class IndexManagerImpl implements IndexManager {
 	}
 
 	@Override
-	public ListenableActionFuture<IndexResponse> index(Persistable entity) {
+	public IndexRequestBuilder prepareIndex(Persistable entity) {
 		return client.prepareIndex(getIndexName(), classToType(ReflectionUtils.getActualClass(entity)),
-				String.valueOf(entity.getId())).setSource(entityToDocument(entity)).execute();
+				String.valueOf(entity.getId())).setSource(entityToDocument(entity));
 	}
 
 	@Override
-	public ListenableActionFuture<DeleteResponse> delete(Persistable entity) {
+	public DeleteRequestBuilder prepareDelete(Persistable entity) {
 		return client.prepareDelete(getIndexName(), classToType(ReflectionUtils.getActualClass(entity)),
-				String.valueOf(entity.getId())).execute();
+				String.valueOf(entity.getId()));
+	}
+
+	@Override
+	public ListenableActionFuture<IndexResponse> index(Persistable entity) {
+		return prepareIndex(entity).execute();
+	}
+
+	@Override
+	public ListenableActionFuture<DeleteResponse> delete(Persistable entity) {
+		return prepareDelete(entity).execute();
 	}
 
 	private void initialize() {
 		IndicesAdminClient adminClient = client.admin().indices();
 		try {
 			IndicesExistsResponse ies = adminClient.exists(new IndicesExistsRequest(getIndexName())).get();
-			if (!ies.isExists())
-				adminClient.create(new CreateIndexRequest(getIndexName())).get();
+			if (!ies.isExists()) {
+				String index = newVersionedIndexName();
+				adminClient.create(new CreateIndexRequest(index)).get();
+				adminClient.prepareAliases().addAlias(index, getIndexName()).execute().get();
+			}
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
 		}
+		putMappings(getIndexName());
+	}
+
+	private void putMappings(String index) {
+		IndicesAdminClient adminClient = client.admin().indices();
 		for (Map.Entry<Class, Map<String, Object>> entry : schemaMapping.entrySet()) {
 			HashMap<String, Map<String, Object>> map = new HashMap<>();
 			map.put(classToType(entry.getKey()), entry.getValue());
@@ -488,75 +547,280 @@ public class IndexManagerImpl implements IndexManager {
 			if (logger.isDebugEnabled())
 				logger.debug("Mapping {} : {}", entry.getKey(), mapping);
 			try {
-				adminClient.preparePutMapping(getIndexName()).setType(classToType(entry.getKey())).setSource(mapping)
-						.execute().get();
+				adminClient.preparePutMapping(index).setType(classToType(entry.getKey())).setSource(mapping).execute()
+						.get();
 			} catch (Exception e) {
 				logger.error(e.getMessage(), e);
 			}
 		}
 	}
 
+	private String newVersionedIndexName() {
+		return getIndexName() + "_" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+	}
+
+	@Override
+	public String getRebuildingIndexName() {
+		return rebuildingIndexName;
+	}
+
+	@Scheduled(initialDelayString = "${indexManager.checkRebuilding.initialDelay:10000}", fixedDelayString = "${indexManager.checkRebuilding.fixedDelay:10000}")
+	public void checkRebuilding() {
+		// lock holder tracks it by itself, others only get a checkpoint while the
+		// checkpoint index exists
+		if (rebuilding)
+			return;
+		// let other nodes write to the index being rebuilt too
+		Map<String, Object> current = loadCheckpoint(CHECKPOINT_CURRENT);
+		rebuildingIndexName = current != null ? (String) current.get("index") : null;
+	}
+
 	@Override
 	@Trigger
 	public void rebuild() {
 		String lockName = "indexManager.rebuild()";
 		if (lockService.tryLock(lockName)) {
+			rebuilding = true;
 			try {
 				IndicesAdminClient adminClient = client.admin().indices();
-				try {
-					IndicesExistsResponse ies = adminClient.exists(new IndicesExistsRequest(getIndexName())).get();
-					if (ies.isExists())
-						adminClient.delete(new DeleteIndexRequest(getIndexName())).get();
-				} catch (Exception e) {
-					logger.error(e.getMessage(), e);
+				Map<String, Object> current = loadCheckpoint(CHECKPOINT_CURRENT);
+				String target = current != null ? (String) current.get("index") : null;
+				if (target != null && adminClient.prepareExists(target).get().isExists()) {
+					logger.info("resume rebuilding {}", target);
+				} else {
+					target = newVersionedIndexName();
+					adminClient.create(new CreateIndexRequest(target)).get();
+					putMappings(target);
+					Map<String, Object> checkpoint = new HashMap<>();
+					checkpoint.put("index", target);
+					saveCheckpoint(CHECKPOINT_CURRENT, checkpoint);
+					// wait until other nodes write to both indices before taking snapshots
+					Thread.sleep(2 * checkRebuildingInterval);
 				}
-				initialize();
+				rebuildingIndexName = target;
+				Map<String, Object> settings = new HashMap<>();
+				settings.put("index.refresh_interval", "-1");
+				// keep tombstones of concurrent deletes until partitions are done
+				settings.put("index.gc_deletes", rebuildGcDeletes);
+				adminClient.prepareUpdateSettings(target).setSettings(settings).get();
+				boolean completed = true;
 				for (Class c : schemaMapping.keySet())
-					indexAll(classToType(c));
+					completed &= indexAll(classToType(c), target, true);
+				settings.put("index.refresh_interval", "1s");
+				settings.put("index.gc_deletes", "60s");
+				adminClient.prepareUpdateSettings(target).setSettings(settings).get();
+				if (!completed) {
+					logger.error("rebuild {} is not completed, it will resume next time", target);
+					return;
+				}
+				swapAlias(target);
+				adminClient.delete(new DeleteIndexRequest(getCheckpointIndexName())).get();
+				rebuildingIndexName = null;
 				logger.info("rebuild completed");
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
 			} finally {
+				rebuilding = false;
 				lockService.unlock(lockName);
 			}
 		}
 	}
 
+	private void swapAlias(String target) throws Exception {
+		IndicesAdminClient adminClient = client.admin().indices();
+		List<String> oldIndices = new ArrayList<>();
+		if (adminClient.prepareAliasesExist(getIndexName()).get().isExists()) {
+			Iterator<String> it = adminClient.prepareGetAliases(getIndexName()).get().getAliases().keysIt();
+			while (it.hasNext())
+				oldIndices.add(it.next());
+		} else if (adminClient.prepareExists(getIndexName()).get().isExists()) {
+			// alias can not be added while a concrete index occupies the name
+			logger.warn("delete legacy index {} to switch to {}", getIndexName(), target);
+			adminClient.delete(new DeleteIndexRequest(getIndexName())).get();
+		}
+		// remove and add in one request so searches never see a missing alias
+		IndicesAliasesRequestBuilder builder = adminClient.prepareAliases();
+		for (String index : oldIndices)
+			if (!index.equals(target))
+				builder.removeAlias(index, getIndexName());
+		builder.addAlias(target, getIndexName());
+		builder.execute().get();
+		for (String index : oldIndices)
+			if (!index.equals(target))
+				adminClient.delete(new DeleteIndexRequest(index)).get();
+	}
+
 	@Override
 	public void indexAll(String type) {
+		indexAll(type, getIndexName(), false);
+	}
+
+	private boolean indexAll(String type, String index, boolean resumable) {
 		Class clz = typeToClass(type);
 		entityManager.setEntityClass(clz);
-		final AtomicLong indexed = new AtomicLong();
-		entityManager.iterate(20, (entityArray, session) -> {
+		List<Serializable> boundaries;
+		Map<String, Object> typeCheckpoint = resumable ? loadCheckpoint(type) : null;
+		if (typeCheckpoint != null) {
+			boundaries = fromJson((String) typeCheckpoint.get("boundaries"),
+					ResolvableType.forClassWithGenerics(List.class, getIdClass(clz)).getType());
+		} else {
+			boundaries = rebuildConcurrency > 1 ? entityManager.splitIdRange(rebuildConcurrency)
+					: new ArrayList<>();
+			if (resumable) {
+				typeCheckpoint = new HashMap<>();
+				typeCheckpoint.put("boundaries", JsonUtils.toJson(boundaries));
+				saveCheckpoint(type, typeCheckpoint);
+			}
+		}
+		AtomicLong indexed = new AtomicLong();
+		int partitions = boundaries.size() + 1;
+		ExecutorService executorService = Executors.newFixedThreadPool(partitions,
+				new NameableThreadFactory("indexAll", type));
+		List<Future<Boolean>> futures = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			Serializable from = i > 0 ? boundaries.get(i - 1) : null;
+			Serializable to = i < boundaries.size() ? boundaries.get(i) : null;
+			String checkpointId = resumable ? type + "#" + i : null;
+			futures.add(executorService
+					.submit(() -> indexPartition(clz, index, from, to, checkpointId, indexed)));
+		}
+		boolean completed = true;
+		try {
+			for (Future<Boolean> future : futures) {
+				try {
+					completed &= future.get();
+				} catch (ExecutionException e) {
+					logger.error(e.getCause().getMessage(), e.getCause());
+					completed = false;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completed = false;
+		} finally {
+			executorService.shutdownNow();
+		}
+		logger.info("indexed {} for {}", indexed.get(), type);
+		return completed;
+	}
+
+	private boolean indexPartition(Class clz, String index, Serializable from, Serializable to, String checkpointId,
+			AtomicLong indexed) {
+		Serializable lastId = null;
+		if (checkpointId != null) {
+			Map<String, Object> checkpoint = loadCheckpoint(checkpointId);
+			if (checkpoint != null) {
+				if (Boolean.TRUE.equals(checkpoint.get("done")))
+					return true;
+				lastId = fromJson((String) checkpoint.get("lastId"), getIdClass(clz));
+			}
+		}
+		DetachedCriteria dc = DetachedCriteria.forClass(clz);
+		if (lastId != null)
+			dc.add(Restrictions.gt("id", lastId));
+		else if (from != null)
+			dc.add(Restrictions.ge("id", from));
+		if (to != null)
+			dc.add(Restrictions.lt("id", to));
+		dc.addOrder(Order.asc("id"));
+		AtomicBoolean failed = new AtomicBoolean();
+		// concurrent writes after the scroll snapshot carry greater versions and win
+		long version = System.currentTimeMillis();
+		entityManager.setEntityClass(clz);
+		// propagate scroll and callback failures, partition must not be marked done
+		entityManager.iterate(rebuildBatchSize, (entityArray, session) -> {
+			if (failed.get())
+				return;
 			BulkRequestBuilder bulkRequest = client.prepareBulk();
-			indexed.addAndGet(entityArray.length);
 			for (Object obj : entityArray) {
 				Persistable p = (Persistable) obj;
-				bulkRequest
-						.add(client.prepareIndex(getIndexName(), classToType(p.getClass()), String.valueOf(p.getId()))
-								.setSource(entityToDocument(p)));
+				bulkRequest.add(client.prepareIndex(index, classToType(p.getClass()), String.valueOf(p.getId()))
+						.setSource(entityToDocument(p)).setVersion(version).setVersionType(VersionType.EXTERNAL));
 			}
-			try {
-				if (bulkRequest.numberOfActions() > 0) {
-					ListenableActionFuture<BulkResponse> br = bulkRequest.execute();
-					br.addListener(bulkResponseActionListener);
+			if (bulkRequest.numberOfActions() == 0)
+				return;
+			// synchronous per worker, so in-flight bulks never exceed concurrency
+			BulkResponse br = null;
+			for (int attempt = 0; attempt < 3; attempt++) {
+				try {
+					br = bulkRequest.get();
+					if (!hasFailures(br))
+						break;
+					logger.warn(br.buildFailureMessage());
+				} catch (Exception e) {
+					logger.warn(e.getMessage(), e);
+				}
+				br = null;
+				try {
+					Thread.sleep(1000L << attempt);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
 			}
-		});
-		logger.info("indexed {} for {}", indexed.get(), type);
+			if (br == null) {
+				failed.set(true);
+				return;
+			}
+			indexed.addAndGet(entityArray.length);
+			if (checkpointId != null) {
+				Map<String, Object> checkpoint = new HashMap<>();
+				checkpoint.put("lastId",
+						JsonUtils.toJson(((Persistable) entityArray[entityArray.length - 1]).getId()));
+				saveCheckpoint(checkpointId, checkpoint);
+			}
+		}, dc, false, 1);
+		if (failed.get())
+			return false;
+		if (checkpointId != null) {
+			Map<String, Object> checkpoint = new HashMap<>();
+			checkpoint.put("done", true);
+			saveCheckpoint(checkpointId, checkpoint);
+		}
+		return true;
+	}
+
+	private static boolean hasFailures(BulkResponse br) {
+		if (!br.hasFailures())
+			return false;
+		for (BulkItemResponse item : br.getItems())
+			// conflict means the document is already superseded by a concurrent write
+			if (item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT)
+				return true;
+		return false;
+	}
+
+	private static Class<?> getIdClass(Class clz) {
+		Class<?> idClass = ResolvableType.forClass(clz).as(Persistable.class).resolveGeneric(0);
+		return idClass != null ? idClass : Object.class;
 	}
 
-	private ActionListener<BulkResponse> bulkResponseActionListener = new ActionListener<BulkResponse>() {
-		@Override
-		public void onResponse(BulkResponse br) {
-			if (br.hasFailures())
-				logger.error(br.buildFailureMessage());
+	private static <T> T fromJson(String json, Type type) {
+		try {
+			return JsonUtils.fromJson(json, type);
+		} catch (Exception e) {
+			throw new IllegalStateException("Invalid checkpoint: " + json, e);
 		}
+	}
 
-		@Override
-		public void onFailure(Throwable e) {
-			logger.error(e.getMessage(), e);
+	private String getCheckpointIndexName() {
+		return getIndexName() + "_rebuild";
+	}
+
+	private Map<String, Object> loadCheckpoint(String id) {
+		try {
+			if (!client.admin().indices().prepareExists(getCheckpointIndexName()).get().isExists())
+				return null;
+			GetResponse response = client.prepareGet(getCheckpointIndexName(), CHECKPOINT_TYPE, id).get();
+			return response.isExists() ? response.getSourceAsMap() : null;
+		} catch (Exception e) {
+			logger.warn(e.getMessage(), e);
+			return null;
 		}
-	};
+	}
+
+	private void saveCheckpoint(String id, Map<String, Object> checkpoint) {
+		client.prepareIndex(getCheckpointIndexName(), CHECKPOINT_TYPE, id).setSource(checkpoint).get();
+	}
 
 }
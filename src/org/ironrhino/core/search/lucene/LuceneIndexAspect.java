@@ -0,0 +1,62 @@
+package org.ironrhino.core.search.lucene;
+
+import java.util.List;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.ironrhino.core.aop.AopContext;
+import org.ironrhino.core.model.Persistable;
+import org.ironrhino.core.search.elasticsearch.annotations.Searchable;
+import org.ironrhino.core.spring.configuration.ApplicationContextPropertiesConditional;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@ApplicationContextPropertiesConditional(key = "search.engine", value = "lucene")
+@SuppressWarnings("rawtypes")
+public class LuceneIndexAspect implements Ordered {
+
+	@Autowired
+	private LuceneIndexManager luceneIndexManager;
+
+	private int order;
+
+	public LuceneIndexAspect() {
+		order = 1;
+	}
+
+	@AfterReturning(pointcut = "execution(java.util.List org.ironrhino.core.service.BaseManager.delete(*)) ", returning = "list")
+	public void deleteBatch(List list) throws Throwable {
+		if (!AopContext.isBypass(this.getClass()) && list != null)
+			for (Object entity : list) {
+				Searchable searchable = ReflectionUtils.getActualClass(entity).getAnnotation(Searchable.class);
+				if (searchable != null)
+					luceneIndexManager.delete((Persistable) entity);
+			}
+	}
+
+	@AfterReturning("execution(* org.ironrhino.core.service.BaseManager.delete(*)) and args(entity) and @args(searchable)")
+	public void delete(Persistable entity, Searchable searchable) throws Throwable {
+		if (!AopContext.isBypass(this.getClass()))
+			luceneIndexManager.delete(entity);
+	}
+
+	@AfterReturning("execution(* org.ironrhino.core.service.BaseManager.save(*)) and args(entity) and @args(searchable)")
+	public void save(Persistable entity, Searchable searchable) throws Throwable {
+		if (!AopContext.isBypass(this.getClass()))
+			luceneIndexManager.index(entity);
+	}
+
+	@Override
+	public int getOrder() {
+		return order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+}
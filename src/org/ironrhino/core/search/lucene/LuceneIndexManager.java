@@ -0,0 +1,530 @@
+package org.ironrhino.core.search.lucene;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TrackingIndexWriter;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.sandbox.queries.SortedSetSortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.ironrhino.core.metadata.Trigger;
+import org.ironrhino.core.model.Persistable;
+import org.ironrhino.core.search.elasticsearch.annotations.Index;
+import org.ironrhino.core.search.elasticsearch.annotations.Searchable;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableComponent;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableId;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableProperty;
+import org.ironrhino.core.service.EntityManager;
+import org.ironrhino.core.spring.configuration.ApplicationContextPropertiesConditional;
+import org.ironrhino.core.util.AnnotationUtils;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.ClassScanner;
+import org.ironrhino.core.util.DateUtils;
+import org.ironrhino.core.util.JsonUtils;
+import org.ironrhino.core.util.NameableThreadFactory;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.chenlb.mmseg4j.analysis.MaxWordAnalyzer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+
+@Component
+@ApplicationContextPropertiesConditional(key = "search.engine", value = "lucene")
+@SuppressWarnings(value = { "unchecked", "rawtypes" })
+public class LuceneIndexManager {
+
+	public static final String FIELD_UID = "_uid";
+
+	public static final String FIELD_TYPE = "_type";
+
+	public static final String FIELD_ID = "_id";
+
+	public static final String FIELD_SOURCE = "_source";
+
+	public static final String FIELD_ALL = "_all";
+
+	public static final String FIELD_GENERATION = "_generation";
+
+	@Autowired
+	private Logger logger;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Value("${luceneIndexManager.directory:}")
+	private String directoryPath;
+
+	@Value("${luceneIndexManager.commitInterval:10000}")
+	private long commitInterval = 10000;
+
+	@Value("${luceneIndexManager.maxStaleSeconds:1.0}")
+	private double maxStaleSeconds = 1.0;
+
+	private Map<String, Class> typeClassMapping;
+
+	private Map<Class, Map<String, SearchableProperty>> propertyMapping;
+
+	private Map<String, FieldKind> fieldKinds;
+
+	private Analyzer analyzer;
+
+	private ObjectMapper objectMapper;
+
+	private Directory directory;
+
+	private IndexWriter indexWriter;
+
+	private TrackingIndexWriter trackingIndexWriter;
+
+	private SearcherManager searcherManager;
+
+	private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+	private ScheduledExecutorService commitExecutorService;
+
+	private volatile long generation;
+
+	@PostConstruct
+	public void init() throws IOException {
+		objectMapper = JsonUtils.createNewObjectMapper();
+		objectMapper.setDateFormat(new SimpleDateFormat(DateUtils.DATETIME_ISO));
+		objectMapper.setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
+
+			private static final long serialVersionUID = 2546213786347455627L;
+
+			@Override
+			protected boolean _isIgnorable(Annotated a) {
+				if (a.getAnnotation(SearchableId.class) != null || a.getAnnotation(SearchableProperty.class) != null
+						|| a.getAnnotation(SearchableComponent.class) != null)
+					return false;
+				return super._isIgnorable(a);
+			}
+
+		});
+		Collection<Class<?>> set = ClassScanner.scanAnnotated(ClassScanner.getAppPackages(), Searchable.class);
+		typeClassMapping = new HashMap<>();
+		propertyMapping = new HashMap<>();
+		fieldKinds = new HashMap<>();
+		Map<String, Analyzer> analyzers = new HashMap<>();
+		analyzers.put(FIELD_UID, new KeywordAnalyzer());
+		analyzers.put(FIELD_TYPE, new KeywordAnalyzer());
+		analyzers.put(FIELD_ID, new KeywordAnalyzer());
+		for (Class c : set) {
+			Searchable searchable = (Searchable) c.getAnnotation(Searchable.class);
+			if (!searchable.root() || c.getSimpleName().contains("$"))
+				continue;
+			typeClassMapping.put(classToType(c), c);
+			Map<String, SearchableProperty> properties = AnnotationUtils.getAnnotatedPropertyNameAndAnnotations(c,
+					SearchableProperty.class);
+			propertyMapping.put(c, properties);
+			for (Map.Entry<String, SearchableProperty> entry : properties.entrySet()) {
+				FieldKind kind = getFieldKind(c, entry.getKey(), entry.getValue());
+				fieldKinds.putIfAbsent(entry.getKey(), kind);
+				if (kind == FieldKind.KEYWORD)
+					analyzers.put(entry.getKey(), new KeywordAnalyzer());
+			}
+		}
+		analyzer = new PerFieldAnalyzerWrapper(new MaxWordAnalyzer(), analyzers);
+		if (StringUtils.isBlank(directoryPath))
+			directoryPath = AppInfo.getAppHome() + File.separator + "lucene";
+		directory = FSDirectory.open(new File(directoryPath));
+		IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_4_10_4, analyzer);
+		config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+		indexWriter = new IndexWriter(directory, config);
+		trackingIndexWriter = new TrackingIndexWriter(indexWriter);
+		searcherManager = new SearcherManager(indexWriter, true, null);
+		reopenThread = new ControlledRealTimeReopenThread<>(trackingIndexWriter, searcherManager, maxStaleSeconds,
+				0.025);
+		reopenThread.setName("lucene-nrt-reopen");
+		reopenThread.setDaemon(true);
+		reopenThread.start();
+		commitExecutorService = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("lucene-commit"));
+		commitExecutorService.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval,
+				TimeUnit.MILLISECONDS);
+		if (indexWriter.numDocs() == 0 && !typeClassMapping.isEmpty()) {
+			Thread thread = new NameableThreadFactory("lucene-rebuild").newThread(this::rebuild);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() throws IOException {
+		commitExecutorService.shutdown();
+		reopenThread.close();
+		searcherManager.close();
+		indexWriter.close();
+		directory.close();
+	}
+
+	public void commit() {
+		try {
+			if (indexWriter.hasUncommittedChanges())
+				indexWriter.commit();
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	public Analyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	public IndexSearcher acquire() throws IOException {
+		return searcherManager.acquire();
+	}
+
+	public void release(IndexSearcher searcher) throws IOException {
+		searcherManager.release(searcher);
+	}
+
+	public void index(Persistable entity) throws IOException {
+		Document doc = entityToDocument(entity);
+		trackingIndexWriter.updateDocument(new Term(FIELD_UID, doc.get(FIELD_UID)), doc);
+	}
+
+	public void delete(Persistable entity) throws IOException {
+		trackingIndexWriter.deleteDocuments(new Term(FIELD_UID,
+				classToType(ReflectionUtils.getActualClass(entity)) + '#' + String.valueOf(entity.getId())));
+	}
+
+	@Trigger
+	public synchronized void rebuild() {
+		try {
+			// update documents in place so searches are served during rebuild,
+			// then remove documents not touched by this generation
+			long current = System.currentTimeMillis();
+			generation = current;
+			boolean completed = true;
+			for (String type : typeClassMapping.keySet())
+				completed &= indexAll(type);
+			if (!completed) {
+				// keep documents of previous generation, next rebuild will purge them
+				indexWriter.commit();
+				logger.error("rebuild is not completed");
+				return;
+			}
+			BooleanQuery stale = new BooleanQuery();
+			stale.add(new MatchAllDocsQuery(), Occur.MUST);
+			stale.add(new TermQuery(new Term(FIELD_GENERATION, String.valueOf(current))), Occur.MUST_NOT);
+			trackingIndexWriter.deleteDocuments(stale);
+			indexWriter.commit();
+			logger.info("rebuild completed");
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	public boolean indexAll(String type) {
+		Class clz = typeClassMapping.get(type);
+		if (clz == null)
+			throw new IllegalArgumentException("type '" + type + "' not found");
+		entityManager.setEntityClass(clz);
+		AtomicLong indexed = new AtomicLong();
+		try {
+			entityManager.iterate(100, (entityArray, session) -> {
+				for (Object obj : entityArray) {
+					try {
+						index((Persistable) obj);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				indexed.addAndGet(entityArray.length);
+			}, null, false, 1);
+		} catch (RuntimeException e) {
+			logger.error("indexed " + indexed.get() + " for " + type + " before failure: " + e.getMessage(), e);
+			return false;
+		}
+		logger.info("indexed {} for {}", indexed.get(), type);
+		return true;
+	}
+
+	public Query parse(String query, String[] types) throws ParseException {
+		Query q;
+		if (StringUtils.isBlank(query)) {
+			q = new MatchAllDocsQuery();
+		} else {
+			// QueryParser is not thread-safe
+			QueryParser parser = new QueryParser(FIELD_ALL, analyzer) {
+
+				@Override
+				protected Query getRangeQuery(String field, String part1, String part2, boolean startInclusive,
+						boolean endInclusive) throws ParseException {
+					FieldKind kind = fieldKinds.get(field);
+					if (kind == FieldKind.LONG)
+						return NumericRangeQuery.newLongRange(field, parseLong(part1), parseLong(part2),
+								startInclusive, endInclusive);
+					if (kind == FieldKind.DOUBLE)
+						return NumericRangeQuery.newDoubleRange(field, parseDouble(part1), parseDouble(part2),
+								startInclusive, endInclusive);
+					return super.getRangeQuery(field, part1, part2, startInclusive, endInclusive);
+				}
+
+				@Override
+				protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+					FieldKind kind = fieldKinds.get(field);
+					if (kind == FieldKind.LONG) {
+						Long value = parseLong(queryText);
+						return NumericRangeQuery.newLongRange(field, value, value, true, true);
+					}
+					if (kind == FieldKind.DOUBLE) {
+						Double value = parseDouble(queryText);
+						return NumericRangeQuery.newDoubleRange(field, value, value, true, true);
+					}
+					return super.getFieldQuery(field, queryText, quoted);
+				}
+
+			};
+			parser.setDefaultOperator(QueryParser.Operator.AND);
+			parser.setAllowLeadingWildcard(true);
+			parser.setLowercaseExpandedTerms(false);
+			q = parser.parse(query);
+		}
+		if (types == null || types.length == 0)
+			return q;
+		BooleanQuery bq = new BooleanQuery();
+		bq.add(q, Occur.MUST);
+		if (types.length == 1) {
+			bq.add(new TermQuery(new Term(FIELD_TYPE, types[0])), Occur.MUST);
+		} else {
+			BooleanQuery typeQuery = new BooleanQuery();
+			for (String type : types)
+				typeQuery.add(new TermQuery(new Term(FIELD_TYPE, type)), Occur.SHOULD);
+			bq.add(typeQuery, Occur.MUST);
+		}
+		return bq;
+	}
+
+	public Sort toSort(Map<String, Boolean> sorts) {
+		if (sorts == null || sorts.isEmpty())
+			return null;
+		SortField[] fields = new SortField[sorts.size() + 1];
+		int i = 0;
+		for (Map.Entry<String, Boolean> entry : sorts.entrySet()) {
+			String name = entry.getKey();
+			boolean desc = entry.getValue();
+			FieldKind kind = fieldKinds.get(name);
+			if (kind == FieldKind.LONG)
+				fields[i++] = new SortField(name, SortField.Type.LONG, desc);
+			else if (kind == FieldKind.DOUBLE)
+				fields[i++] = new SortField(name, SortField.Type.DOUBLE, desc);
+			else if (kind == FieldKind.KEYWORD)
+				fields[i++] = new SortedSetSortField(name, desc);
+			else
+				logger.warn("field '{}' is not sortable", name);
+		}
+		fields[i++] = SortField.FIELD_SCORE;
+		if (i < fields.length) {
+			SortField[] copy = new SortField[i];
+			System.arraycopy(fields, 0, copy, 0, i);
+			fields = copy;
+		}
+		return new Sort(fields);
+	}
+
+	public Object documentToEntity(Document doc) throws IOException {
+		return objectMapper.readValue(doc.get(FIELD_SOURCE), typeClassMapping.get(doc.get(FIELD_TYPE)));
+	}
+
+	private Document entityToDocument(Persistable entity) throws IOException {
+		Class clazz = ReflectionUtils.getActualClass(entity);
+		String type = classToType(clazz);
+		String id = String.valueOf(entity.getId());
+		Document doc = new Document();
+		doc.add(new StringField(FIELD_UID, type + '#' + id, Field.Store.YES));
+		doc.add(new StringField(FIELD_TYPE, type, Field.Store.YES));
+		doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+		doc.add(new StringField(FIELD_GENERATION, String.valueOf(generation), Field.Store.NO));
+		Map<String, Object> source = AnnotationUtils.getAnnotatedPropertyNameAndValues(entity, SearchableId.class,
+				SearchableProperty.class, SearchableComponent.class);
+		Iterator<Map.Entry<String, Object>> it = source.entrySet().iterator();
+		while (it.hasNext()) {
+			Object value = it.next().getValue();
+			if (value == null || value instanceof String && StringUtils.isBlank((String) value)
+					|| value instanceof Collection && ((Collection) value).isEmpty()
+					|| value.getClass().isArray() && ((Object[]) value).length == 0)
+				it.remove();
+		}
+		doc.add(new StoredField(FIELD_SOURCE, objectMapper.writeValueAsString(source)));
+		StringBuilder all = new StringBuilder();
+		Map<String, SearchableProperty> properties = propertyMapping.get(clazz);
+		if (properties != null) {
+			BeanWrapperImpl bw = new BeanWrapperImpl(entity);
+			for (Map.Entry<String, SearchableProperty> entry : properties.entrySet()) {
+				String name = entry.getKey();
+				Object value = bw.getPropertyValue(name);
+				if (value instanceof Collection) {
+					for (Object element : (Collection) value)
+						addField(doc, name, entry.getValue(), element, true, all);
+				} else if (value instanceof Object[]) {
+					for (Object element : (Object[]) value)
+						addField(doc, name, entry.getValue(), element, true, all);
+				} else {
+					addField(doc, name, entry.getValue(), value, false, all);
+				}
+			}
+		}
+		if (all.length() > 0)
+			doc.add(new TextField(FIELD_ALL, all.toString(), Field.Store.NO));
+		return doc;
+	}
+
+	private void addField(Document doc, String name, SearchableProperty sp, Object value, boolean multiValued,
+			StringBuilder all) {
+		if (value == null || sp.index() == Index.NO)
+			return;
+		FieldKind kind = fieldKinds.get(name);
+		if (kind == FieldKind.LONG) {
+			long l = value instanceof Date ? ((Date) value).getTime() : ((Number) value).longValue();
+			doc.add(new LongField(name, l, Field.Store.NO));
+			if (!multiValued)
+				doc.add(new NumericDocValuesField(name, l));
+			return;
+		}
+		if (kind == FieldKind.DOUBLE) {
+			double d = ((Number) value).doubleValue();
+			doc.add(new DoubleField(name, d, Field.Store.NO));
+			if (!multiValued)
+				doc.add(new DoubleDocValuesField(name, d));
+			return;
+		}
+		String text = value instanceof Enum ? ((Enum) value).name() : value.toString();
+		if (text.isEmpty())
+			return;
+		if (sp.include_in_all())
+			all.append(text).append('\n');
+		if (kind == FieldKind.KEYWORD) {
+			doc.add(new StringField(name, text, Field.Store.NO));
+			doc.add(new SortedSetDocValuesField(name, new BytesRef(text)));
+		} else {
+			Field field = new TextField(name, text, Field.Store.NO);
+			if (sp.boost() != 1.0f)
+				field.setBoost(sp.boost());
+			doc.add(field);
+		}
+	}
+
+	private static FieldKind getFieldKind(Class clazz, String name, SearchableProperty sp) {
+		PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(clazz, name);
+		Class type = pd != null ? pd.getPropertyType() : String.class;
+		if (type.isArray()) {
+			type = type.getComponentType();
+		} else if (Collection.class.isAssignableFrom(type)) {
+			type = String.class;
+			Method m = pd.getReadMethod();
+			if (m != null) {
+				Type t = m.getGenericReturnType();
+				if (t instanceof ParameterizedType) {
+					Type arg = ((ParameterizedType) t).getActualTypeArguments()[0];
+					if (arg instanceof Class)
+						type = (Class) arg;
+				}
+			}
+		}
+		if (Date.class.isAssignableFrom(type) || type == long.class || type == int.class || type == short.class
+				|| type == byte.class || type == Long.class || type == Integer.class || type == Short.class
+				|| type == Byte.class)
+			return FieldKind.LONG;
+		if (type == double.class || type == float.class || type == Double.class || type == Float.class
+				|| type == BigDecimal.class)
+			return FieldKind.DOUBLE;
+		if (sp.index() == Index.NOT_ANALYZED || type == boolean.class || type == Boolean.class || type.isEnum())
+			return FieldKind.KEYWORD;
+		return FieldKind.TEXT;
+	}
+
+	private static Long parseLong(String value) throws ParseException {
+		if (value == null || "*".equals(value))
+			return null;
+		try {
+			return Long.valueOf(value);
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parse(value);
+			if (date == null)
+				throw new ParseException("invalid number or date: " + value);
+			return date.getTime();
+		}
+	}
+
+	private static Double parseDouble(String value) throws ParseException {
+		if (value == null || "*".equals(value))
+			return null;
+		try {
+			return Double.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new ParseException("invalid number: " + value);
+		}
+	}
+
+	public static String classToType(Class clazz) {
+		String type = StringUtils.uncapitalize(clazz.getSimpleName());
+		Searchable s = (Searchable) clazz.getAnnotation(Searchable.class);
+		if (s != null && StringUtils.isNotBlank(s.type()))
+			type = s.type();
+		return type;
+	}
+
+	private static enum FieldKind {
+		TEXT, KEYWORD, LONG, DOUBLE;
+	}
+
+}
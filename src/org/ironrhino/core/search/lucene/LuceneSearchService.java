@@ -0,0 +1,198 @@
+package org.ironrhino.core.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.search.SearchCriteria;
+import org.ironrhino.core.search.SearchService;
+import org.ironrhino.core.spring.configuration.ApplicationContextPropertiesConditional;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+@Primary
+@Component
+@ApplicationContextPropertiesConditional(key = "search.engine", value = "lucene")
+@SuppressWarnings(value = { "unchecked", "rawtypes" })
+public class LuceneSearchService<T> implements SearchService<T> {
+
+	@Autowired
+	private Logger logger;
+
+	@Autowired
+	private LuceneIndexManager luceneIndexManager;
+
+	@Override
+	public ResultPage<T> search(ResultPage<T> resultPage) {
+		return search(resultPage, null);
+	}
+
+	@Override
+	public ResultPage<T> search(ResultPage<T> resultPage, Mapper<T> mapper) {
+		SearchCriteria criteria = resultPage.getCriteria();
+		if (criteria == null)
+			return resultPage;
+		int start = resultPage.isPaginating() ? resultPage.getStart() : 0;
+		int size = resultPage.isPaginating() ? resultPage.getPageSize() : ResultPage.DEFAULT_MAX_PAGESIZE;
+		long time = System.currentTimeMillis();
+		try {
+			IndexSearcher searcher = luceneIndexManager.acquire();
+			try {
+				TopDocs topDocs = doSearch(searcher, criteria, start + size);
+				resultPage.setTotalResults(topDocs.totalHits);
+				resultPage.setResult(toList(searcher, topDocs.scoreDocs, start, mapper));
+			} finally {
+				luceneIndexManager.release(searcher);
+			}
+			resultPage.setTookInMillis(System.currentTimeMillis() - time);
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+		return resultPage;
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria) {
+		return search(searchCriteria, null);
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria, Mapper<T> mapper) {
+		return search(searchCriteria, mapper, -1);
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria, Mapper<T> mapper, int limit) {
+		if (searchCriteria == null)
+			return null;
+		if (limit <= 0 || limit > ResultPage.DEFAULT_MAX_PAGESIZE)
+			limit = ResultPage.DEFAULT_MAX_PAGESIZE;
+		try {
+			IndexSearcher searcher = luceneIndexManager.acquire();
+			try {
+				return toList(searcher, doSearch(searcher, searchCriteria, limit).scoreDocs, 0, mapper);
+			} finally {
+				luceneIndexManager.release(searcher);
+			}
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+			return null;
+		}
+	}
+
+	@Override
+	public Map<String, Integer> countTermsByField(SearchCriteria searchCriteria, String field) {
+		if (searchCriteria == null)
+			return null;
+		try {
+			Query query = luceneIndexManager.parse(searchCriteria.getQuery(), searchCriteria.getTypes());
+			IndexSearcher searcher = luceneIndexManager.acquire();
+			try {
+				TermCountCollector collector = new TermCountCollector(field);
+				searcher.search(query, collector);
+				collector.flush();
+				List<Map.Entry<String, Integer>> entries = new ArrayList<>(collector.counts.entrySet());
+				entries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+				Map<String, Integer> result = new LinkedHashMap<>();
+				for (Map.Entry<String, Integer> entry : entries)
+					result.put(entry.getKey(), entry.getValue());
+				return result;
+			} finally {
+				luceneIndexManager.release(searcher);
+			}
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+		return Collections.emptyMap();
+	}
+
+	private TopDocs doSearch(IndexSearcher searcher, SearchCriteria criteria, int n) throws Exception {
+		Query query = luceneIndexManager.parse(criteria.getQuery(), criteria.getTypes());
+		Sort sort = luceneIndexManager.toSort(criteria.getSorts());
+		n = Math.max(n, 1);
+		return sort != null ? searcher.search(query, n, sort) : searcher.search(query, n);
+	}
+
+	private List<T> toList(IndexSearcher searcher, ScoreDoc[] scoreDocs, int start, Mapper<T> mapper)
+			throws IOException {
+		List list = new ArrayList(Math.max(0, scoreDocs.length - start));
+		for (int i = start; i < scoreDocs.length; i++) {
+			T data = (T) luceneIndexManager.documentToEntity(searcher.doc(scoreDocs[i].doc));
+			data = mapper == null ? data : mapper.map(data);
+			if (data != null)
+				list.add(data);
+		}
+		return list;
+	}
+
+	private static class TermCountCollector extends Collector {
+
+		private final String field;
+
+		private final Map<String, Integer> counts = new HashMap<>();
+
+		private SortedSetDocValues values;
+
+		private int[] ordCounts;
+
+		TermCountCollector(String field) {
+			this.field = field;
+		}
+
+		@Override
+		public void setScorer(Scorer scorer) {
+		}
+
+		@Override
+		public void collect(int doc) {
+			values.setDocument(doc);
+			long ord;
+			while ((ord = values.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS)
+				ordCounts[(int) ord]++;
+		}
+
+		@Override
+		public void setNextReader(AtomicReaderContext context) throws IOException {
+			flush();
+			values = DocValues.getSortedSet(context.reader(), field);
+			ordCounts = new int[(int) values.getValueCount()];
+		}
+
+		@Override
+		public boolean acceptsDocsOutOfOrder() {
+			return true;
+		}
+
+		private void flush() {
+			if (values == null)
+				return;
+			for (int ord = 0; ord < ordCounts.length; ord++) {
+				if (ordCounts[ord] == 0)
+					continue;
+				BytesRef term = values.lookupOrd(ord);
+				counts.merge(term.utf8ToString(), ordCounts[ord], Integer::sum);
+			}
+			values = null;
+		}
+
+	}
+
+}
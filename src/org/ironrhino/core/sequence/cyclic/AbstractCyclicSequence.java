@@ -1,6 +1,7 @@
 package org.ironrhino.core.sequence.cyclic;
 
 import java.util.Date;
+import java.util.function.IntFunction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.sequence.CyclicSequence;
@@ -22,6 +23,10 @@ public abstract class AbstractCyclicSequence implements CyclicSequence, Initiali
 
 	private int paddingLength = 4;
 
+	private int cacheSize = 1;
+
+	private ReservedRange reservedRange;
+
 	@Override
 	public CycleType getCycleType() {
 		return cycleType;
@@ -47,6 +52,15 @@ public abstract class AbstractCyclicSequence implements CyclicSequence, Initiali
 		this.paddingLength = paddingLength;
 	}
 
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize > 0)
+			this.cacheSize = cacheSize;
+	}
+
 	@Override
 	public int nextIntValue() {
 		String s = nextStringValue();
@@ -62,6 +76,22 @@ public abstract class AbstractCyclicSequence implements CyclicSequence, Initiali
 		return getCycleType().format(date) + NumberUtils.format(nextId, paddingLength);
 	}
 
+	protected String getStringValue(String cycle, long nextId) {
+		return cycle + StringUtils.leftPad(String.valueOf(nextId), paddingLength, '0');
+	}
+
+	/**
+	 * @param reserver
+	 *            reserve ids atomically from the shared counter, restart it if
+	 *            the cycle is over
+	 */
+	protected synchronized String nextReservedStringValue(IntFunction<ReservedRange> reserver) {
+		ReservedRange range = reservedRange;
+		if (range == null || !range.hasNext())
+			reservedRange = range = reserver.apply(cacheSize);
+		return getStringValue(range.cycle, range.next++);
+	}
+
 	@Override
 	public void setBeanName(String beanName) {
 		if (StringUtils.isNotBlank(beanName)) {
@@ -75,4 +105,48 @@ public abstract class AbstractCyclicSequence implements CyclicSequence, Initiali
 			this.beanName = beanName;
 		}
 	}
+
+	protected static class ReservedRange {
+
+		private final String cycle;
+
+		private final long last;
+
+		private final long expiry;
+
+		private long next;
+
+		/**
+		 * @param cycle
+		 *            formatted cycle of reserved ids
+		 * @param last
+		 *            last reserved id
+		 * @param size
+		 *            number of reserved ids
+		 * @param timestamp
+		 *            time of the counter when reserving
+		 */
+		public ReservedRange(String cycle, long last, int size, CycleType cycleType, Date timestamp) {
+			this.cycle = cycle;
+			this.last = last;
+			this.next = last - size + 1;
+			// ids must not be handed out after the cycle ends
+			this.expiry = System.currentTimeMillis() + cycleType.getCycleEnd(timestamp).getTime()
+					- timestamp.getTime();
+		}
+
+		public String getCycle() {
+			return cycle;
+		}
+
+		public long getLast() {
+			return last;
+		}
+
+		boolean hasNext() {
+			return next <= last && System.currentTimeMillis() <= expiry;
+		}
+
+	}
+
 }
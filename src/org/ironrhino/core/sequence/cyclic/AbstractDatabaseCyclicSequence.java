@@ -6,25 +6,12 @@ import org.ironrhino.core.coordination.LockService;
 
 public abstract class AbstractDatabaseCyclicSequence extends AbstractCyclicSequence {
 
-	static final long CRITICAL_THRESHOLD_TIME = 500;
-
 	private DataSource dataSource;
 
 	private String tableName = DEFAULT_TABLE_NAME;
 
-	private int cacheSize = 1;
-
 	private LockService lockService;
 
-	public int getCacheSize() {
-		return cacheSize;
-	}
-
-	public void setCacheSize(int cacheSize) {
-		if (cacheSize > 0)
-			this.cacheSize = cacheSize;
-	}
-
 	public DataSource getDataSource() {
 		return dataSource;
 	}
@@ -2,10 +2,12 @@ package org.ironrhino.core.sequence.cyclic;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.Date;
 
 import org.springframework.dao.DataAccessException;
@@ -17,6 +19,8 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 
 	protected String queryTimestampStatement;
 
+	protected String restartStatement;
+
 	protected String getTimestampColumnType() {
 		return "TIMESTAMP";
 	}
@@ -25,9 +29,14 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 		return "CURRENT_TIMESTAMP";
 	}
 
+	protected String getBaseColumnType() {
+		return "BIGINT";
+	}
+
 	protected String getCreateTableStatement() {
 		return new StringBuilder("CREATE TABLE ").append(getTableName()).append(" (").append(getSequenceName())
-				.append("_TIMESTAMP ").append(getTimestampColumnType()).append(")").toString();
+				.append("_TIMESTAMP ").append(getTimestampColumnType()).append(",").append(getSequenceName())
+				.append("_BASE ").append(getBaseColumnType()).append(")").toString();
 	}
 
 	protected String getAddColumnStatement() {
@@ -36,9 +45,14 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 				.append(getCurrentTimestamp()).toString();
 	}
 
+	protected String getAddBaseColumnStatement() {
+		return new StringBuilder("ALTER TABLE ").append(getTableName()).append(" ADD ").append(getSequenceName())
+				.append("_BASE ").append(getBaseColumnType()).append(" DEFAULT 0").toString();
+	}
+
 	protected String getInsertStatement() {
 		return new StringBuilder("INSERT INTO ").append(getTableName()).append(" VALUES(").append(getCurrentTimestamp())
-				.append(")").toString();
+				.append(",0)").toString();
 	}
 
 	protected abstract String getQuerySequenceStatement();
@@ -50,16 +64,16 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 		return sb.toString();
 	}
 
-	protected String getRestartSequenceStatement() {
-		return new StringBuilder("ALTER SEQUENCE ").append(getActualSequenceName()).append(" RESTART WITH 1")
-				.toString();
-	}
-
 	@Override
 	public void afterPropertiesSet() {
 		querySequenceStatement = getQuerySequenceStatement();
 		queryTimestampStatement = new StringBuilder("SELECT  ").append(getCurrentTimestamp()).append(",")
-				.append(getSequenceName()).append("_TIMESTAMP").append(" FROM ").append(getTableName()).toString();
+				.append(getSequenceName()).append("_TIMESTAMP,").append(getSequenceName()).append("_BASE FROM ")
+				.append(getTableName()).toString();
+		restartStatement = new StringBuilder("UPDATE ").append(getTableName()).append(" SET ")
+				.append(getSequenceName()).append("_TIMESTAMP = ").append(getCurrentTimestamp()).append(",")
+				.append(getSequenceName()).append("_BASE = ? WHERE ").append(getSequenceName())
+				.append("_TIMESTAMP < ?").toString();
 		Connection con = null;
 		Statement stmt = null;
 		try {
@@ -79,18 +93,23 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 			if (tableExists) {
 				rs = stmt.executeQuery("SELECT * FROM " + getTableName());
 				boolean columnExists = false;
+				boolean baseColumnExists = false;
 				ResultSetMetaData metadata = rs.getMetaData();
 				for (int i = 0; i < metadata.getColumnCount(); i++) {
-					if ((columnName + "_TIMESTAMP").equalsIgnoreCase(metadata.getColumnName(i + 1))) {
+					if ((columnName + "_TIMESTAMP").equalsIgnoreCase(metadata.getColumnName(i + 1)))
 						columnExists = true;
-						break;
-					}
+					else if ((columnName + "_BASE").equalsIgnoreCase(metadata.getColumnName(i + 1)))
+						baseColumnExists = true;
 				}
 				rs.close();
 				if (!columnExists) {
 					stmt.execute(getAddColumnStatement());
 					stmt.execute(getCreateSequenceStatement());
 				}
+				if (!baseColumnExists) {
+					stmt.execute(getAddBaseColumnStatement());
+					stmt.execute("UPDATE " + getTableName() + " SET " + columnName + "_BASE = 0");
+				}
 			} else {
 				stmt.execute(getCreateTableStatement());
 				stmt.execute(getInsertStatement());
@@ -114,119 +133,72 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 		}
 	}
 
+	/**
+	 * The sequence is never restarted, id is the difference between the
+	 * sequence value and the base recorded at the start of current cycle.
+	 */
 	@Override
 	public String nextStringValue() throws DataAccessException {
-		return nextStringValue(3);
-	}
-
-	protected String nextStringValue(int maxAttempts) throws DataAccessException {
-		if (maxAttempts < 1)
-			throw new IllegalArgumentException("max attempts reached");
 		Connection con = null;
 		Statement stmt = null;
 		try {
 			con = getDataSource().getConnection();
 			con.setAutoCommit(true);
 			stmt = con.createStatement();
-			Result result = queryTimestampWithSequence(con, stmt);
-			if (getCycleType().isSameCycle(result.lastTimestamp, result.currentTimestamp)) {
-				if (result.isCriticalPoint(getCycleType())) {
-					// timestamp updated but sequence not restarted
-					if (stmt != null)
-						try {
-							stmt.close();
-							stmt = null;
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
-					try {
-						con.close();
-						con = null;
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
-					try {
-						Thread.sleep(500);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-					return nextStringValue(--maxAttempts);
+			// values cached by other sessions may be drawn lower than base
+			int maxAttempts = getCacheSize() + 20;
+			for (int i = 0; i < maxAttempts; i++) {
+				Result result = queryTimestampWithSequence(con, stmt);
+				String cycle = getCycleType().format(result.currentTimestamp);
+				if (getCycleType().isSameCycle(result.lastTimestamp, result.currentTimestamp)) {
+					if (result.nextId > result.base)
+						return getStringValue(cycle, result.nextId - result.base);
+					// drawn before current cycle started
+					continue;
 				}
-				return getStringValue(result.currentTimestamp, getPaddingLength(), result.nextId);
-			} else {
-				if (getLockService().tryLock(getLockName())) {
-					try {
-						result = queryTimestampWithSequence(con, stmt);
-						if (!getCycleType().isSameCycle(result.lastTimestamp, result.currentTimestamp)) {
-							stmt.executeUpdate("UPDATE " + getTableName() + " SET " + getSequenceName()
-									+ "_TIMESTAMP = " + getCurrentTimestamp());
-							restartSequence(con, stmt);
-							result = queryTimestampWithSequence(con, stmt);
-						}
-						return getStringValue(result.currentTimestamp, getPaddingLength(), result.nextId);
-					} finally {
-						getLockService().unlock(getLockName());
-					}
-				} else {
-					if (stmt != null)
-						try {
-							stmt.close();
-							stmt = null;
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
-					try {
-						con.close();
-						con = null;
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
-					try {
-						Thread.sleep(500);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-					return nextStringValue(--maxAttempts);
+				try (PreparedStatement ps = con.prepareStatement(restartStatement)) {
+					ps.setLong(1, result.nextId - 1);
+					ps.setTimestamp(2, new Timestamp(getCycleType().getCycleStart(result.currentTimestamp).getTime()));
+					if (ps.executeUpdate() > 0)
+						return getStringValue(cycle, 1);
 				}
+				// restarted by others, draw again
 			}
+			throw new IllegalStateException("max attempts reached");
 		} catch (SQLException ex) {
 			throw new DataAccessResourceFailureException("Could not obtain next value of sequence", ex);
 		} finally {
 			if (stmt != null)
 				try {
 					stmt.close();
-					stmt = null;
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
 			if (con != null)
 				try {
 					con.close();
-					con = null;
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
 		}
 	}
 
-	protected void restartSequence(Connection con, Statement stmt) throws SQLException {
-		stmt.execute(getRestartSequenceStatement());
-	}
-
 	private Result queryTimestampWithSequence(Connection con, Statement stmt) throws SQLException {
 		Result result = new Result();
 		ResultSet rs = null;
 		try {
 			rs = stmt.executeQuery(querySequenceStatement);
 			rs.next();
-			result.nextId = rs.getInt(1);
+			result.nextId = rs.getLong(1);
 			if (rs.getMetaData().getColumnCount() > 1) {
 				result.currentTimestamp = rs.getTimestamp(2);
 				result.lastTimestamp = rs.getTimestamp(3);
+				result.base = rs.getLong(4);
 			} else {
 				Result temp = queryTimestamp(con, stmt);
 				result.currentTimestamp = temp.currentTimestamp;
 				result.lastTimestamp = temp.lastTimestamp;
+				result.base = temp.base;
 			}
 			return result;
 		} catch (SQLException ex) {
@@ -248,6 +220,7 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 			rs.next();
 			result.currentTimestamp = rs.getTimestamp(1);
 			result.lastTimestamp = rs.getTimestamp(2);
+			result.base = rs.getLong(3);
 			return result;
 		} finally {
 			rs.close();
@@ -256,16 +229,10 @@ public abstract class AbstractSequenceCyclicSequence extends AbstractDatabaseCyc
 
 	private static class Result {
 
-		int nextId;
+		long nextId;
+		long base;
 		Date currentTimestamp;
 		Date lastTimestamp;
 
-		boolean isCriticalPoint(CycleType cycleType) {
-			return currentTimestamp.getTime()
-					- cycleType.getCycleStart(currentTimestamp).getTime() < CRITICAL_THRESHOLD_TIME && nextId > 100
-					|| cycleType.getCycleEnd(currentTimestamp).getTime()
-							- currentTimestamp.getTime() < CRITICAL_THRESHOLD_TIME && nextId < 5;
-		}
-
 	}
 }
@@ -14,8 +14,8 @@ public class DB2CyclicSequence extends AbstractSequenceCyclicSequence {
 	@Override
 	protected String getQuerySequenceStatement() {
 		return new StringBuilder("SELECT NEXTVAL FOR ").append(getActualSequenceName()).append(",")
-				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP FROM ")
-				.append(getTableName()).toString();
+				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP,")
+				.append(getSequenceName()).append("_BASE FROM ").append(getTableName()).toString();
 	}
 
 	@Override
@@ -1,9 +1,5 @@
 package org.ironrhino.core.sequence.cyclic;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.Statement;
-
 public class DerbyCyclicSequence extends AbstractSequenceCyclicSequence {
 
 	@Override
@@ -15,14 +11,8 @@ public class DerbyCyclicSequence extends AbstractSequenceCyclicSequence {
 	@Override
 	protected String getQuerySequenceStatement() {
 		return new StringBuilder("SELECT NEXT VALUE FOR ").append(getActualSequenceName()).append(",")
-				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP FROM ")
-				.append(getTableName()).toString();
-	}
-
-	@Override
-	protected void restartSequence(Connection con, Statement stmt) throws SQLException {
-		stmt.execute("DROP SEQUENCE " + getActualSequenceName());
-		stmt.execute(getCreateSequenceStatement());
+				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP,")
+				.append(getSequenceName()).append("_BASE FROM ").append(getTableName()).toString();
 	}
 
 }
@@ -72,137 +72,77 @@ public class MySQLCyclicSequence extends AbstractDatabaseCyclicSequence {
 
 	@Override
 	public String nextStringValue() throws DataAccessException {
-		return nextStringValue(3);
+		if (getCacheSize() > 1)
+			return nextReservedStringValue(this::reserveRange);
+		ReservedRange range = reserveRange(1);
+		return getStringValue(range.getCycle(), range.getLast());
 	}
 
-	protected String nextStringValue(int maxAttempts) throws DataAccessException {
-		if (maxAttempts < 1)
-			throw new IllegalArgumentException("max attempts reached");
+	private ReservedRange reserveRange(int size) throws DataAccessException {
+		String columnName = getSequenceName();
+		String format = getDateFormat();
+		String lastTimestamp = "IF(IFNULL(" + columnName + "_TIMESTAMP,0) > 10000000000," + columnName
+				+ "_TIMESTAMP DIV 1000,IFNULL(" + columnName + "_TIMESTAMP,0))";
+		// restart and increment are decided in one statement under the row lock
+		String sql = "UPDATE `" + getTableName() + "` SET " + columnName + " = LAST_INSERT_ID(IF(FROM_UNIXTIME("
+				+ lastTimestamp + ",'" + format + "') >= FROM_UNIXTIME(UNIX_TIMESTAMP(),'" + format + "'),"
+				+ columnName + " + " + size + "," + size + "))," + columnName + "_TIMESTAMP = GREATEST("
+				+ lastTimestamp + ",UNIX_TIMESTAMP())";
 		Connection con = null;
 		Statement stmt = null;
 		try {
 			con = getDataSource().getConnection();
-			con.setAutoCommit(true);
+			// hold the row lock until the cycle of the reserved ids is read
+			con.setAutoCommit(false);
 			stmt = con.createStatement();
-			String columnName = getSequenceName();
-			if (isSameCycle(con, stmt)) {
-				stmt.executeUpdate("UPDATE `" + getTableName() + "` SET " + columnName + " = LAST_INSERT_ID("
-						+ columnName + " + 1)," + columnName + "_TIMESTAMP = UNIX_TIMESTAMP()");
-
-			} else {
-				if (getLockService().tryLock(getLockName())) {
-					try {
-						if (isSameCycle(con, stmt)) {
-							stmt.executeUpdate(
-									"UPDATE `" + getTableName() + "` SET " + columnName + " = LAST_INSERT_ID("
-											+ columnName + " + 1)," + columnName + "_TIMESTAMP = UNIX_TIMESTAMP()");
-						} else {
-							stmt.executeUpdate("UPDATE `" + getTableName() + "` SET " + columnName
-									+ " = LAST_INSERT_ID(1)," + columnName + "_TIMESTAMP = UNIX_TIMESTAMP()");
-						}
-					} finally {
-						getLockService().unlock(getLockName());
-					}
-				} else {
-					if (stmt != null)
-						try {
-							stmt.close();
-							stmt = null;
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
-					try {
-						con.close();
-						con = null;
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
-					try {
-						Thread.sleep(500);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-					return nextStringValue(--maxAttempts);
-				}
-			}
-			int next;
-			Date currentTimestamp;
+			stmt.executeUpdate(sql);
 			ResultSet rs = null;
 			try {
-				rs = stmt.executeQuery("SELECT LAST_INSERT_ID(),UNIX_TIMESTAMP() FROM `" + getTableName() + "`");
-				if (!rs.next()) {
+				rs = stmt.executeQuery("SELECT LAST_INSERT_ID(),FROM_UNIXTIME(" + columnName + "_TIMESTAMP,'"
+						+ format + "')," + columnName + "_TIMESTAMP FROM `" + getTableName() + "`");
+				if (!rs.next())
 					throw new DataAccessResourceFailureException("LAST_INSERT_ID() failed after executing an update");
-				}
-				next = rs.getInt(1);
-				Long current = rs.getLong(2);
-				if (current < 10000000000L) // no mills
-					current *= 1000;
-				currentTimestamp = new Date(current);
+				ReservedRange range = new ReservedRange(rs.getString(2), rs.getLong(1), size, getCycleType(),
+						new Date(rs.getLong(3) * 1000));
+				con.commit();
+				return range;
 			} finally {
 				if (rs != null)
 					rs.close();
 			}
-			Date cycleStart = getCycleType().getCycleStart(currentTimestamp);
-			Date cycleEnd = getCycleType().getCycleEnd(currentTimestamp);
-			if (currentTimestamp.getTime() - cycleStart.getTime() < CRITICAL_THRESHOLD_TIME && next > 100
-					|| cycleEnd.getTime() - currentTimestamp.getTime() < CRITICAL_THRESHOLD_TIME && next < 5) {
-				// timestamp updated but sequence not restarted
+		} catch (SQLException ex) {
+			if (con != null)
 				try {
-					stmt.close();
-					stmt = null;
+					con.rollback();
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
+			throw new DataAccessResourceFailureException("Could not obtain last_insert_id()", ex);
+		} finally {
+			if (con != null)
 				try {
-					con.close();
-					con = null;
+					con.setAutoCommit(true);
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				return nextStringValue(--maxAttempts);
-
-			}
-			return getStringValue(currentTimestamp, getPaddingLength(), next);
-		} catch (SQLException ex) {
-			throw new DataAccessResourceFailureException("Could not obtain last_insert_id()", ex);
-		} finally {
 			if (stmt != null)
 				try {
 					stmt.close();
-					stmt = null;
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
 			if (con != null)
 				try {
 					con.close();
-					con = null;
 				} catch (SQLException e) {
 					e.printStackTrace();
 				}
 		}
-
 	}
 
-	protected boolean isSameCycle(Connection con, Statement stmt) throws SQLException {
-		ResultSet rs = null;
-		try {
-			rs = stmt.executeQuery(
-					"SELECT  " + getSequenceName() + "_TIMESTAMP,UNIX_TIMESTAMP() FROM `" + getTableName() + "`");
-			rs.next();
-			Long last = rs.getLong(1);
-			if (last < 10000000000L) // no mills
-				last *= 1000;
-			return getCycleType().isSameCycle(new Date(last), new Date(rs.getLong(2) * 1000));
-		} finally {
-			if (rs != null)
-				rs.close();
-		}
+	private String getDateFormat() {
+		return getCycleType().getPattern().replace("yyyy", "%Y").replace("MM", "%m").replace("dd", "%d")
+				.replace("HH", "%H").replace("mm", "%i");
 	}
 
 }
@@ -5,8 +5,8 @@ public class PostgreSQLCyclicSequence extends AbstractSequenceCyclicSequence {
 	@Override
 	protected String getQuerySequenceStatement() {
 		return new StringBuilder("SELECT NEXTVAL('").append(getActualSequenceName()).append("')").append(",")
-				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP FROM ")
-				.append(getTableName()).toString();
+				.append(getCurrentTimestamp()).append(",").append(getSequenceName()).append("_TIMESTAMP,")
+				.append(getSequenceName()).append("_BASE FROM ").append(getTableName()).toString();
 	}
 
 }
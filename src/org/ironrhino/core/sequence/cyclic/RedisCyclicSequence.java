@@ -1,24 +1,31 @@
 package org.ironrhino.core.sequence.cyclic;
 
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 
-import org.ironrhino.core.util.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.core.BoundValueOperations;
-import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.util.Assert;
 
 public class RedisCyclicSequence extends AbstractCyclicSequence {
 
 	public static final String KEY_SEQUENCE = "seq:";
 
+	private static final long TIME_SYNC_INTERVAL = 60000;
+
+	// value is cycle followed by padded number, a stale cycle restarts from
+	// ARGV[3], a newer one wins over ARGV[1] if clocks are skewed
+	private static final RedisScript<String> SCRIPT = new DefaultRedisScript<>(
+			"local v = redis.call('get', KEYS[1]) local cycle = ARGV[1] local n = tonumber(ARGV[3]) "
+					+ "if v and string.len(v) > string.len(cycle) then local c = string.sub(v, 1, string.len(cycle)) "
+					+ "if c >= cycle then cycle = c n = tonumber(string.sub(v, string.len(cycle) + 1)) + n end end "
+					+ "v = cycle .. string.format('%0' .. ARGV[2] .. 'd', n) redis.call('set', KEYS[1], v) return v",
+			String.class);
+
 	@Autowired(required = false)
 	@Qualifier("sequenceStringRedisTemplate")
 	private RedisTemplate<String, String> sequenceStringRedisTemplate;
@@ -27,7 +34,11 @@ public class RedisCyclicSequence extends AbstractCyclicSequence {
 	@Qualifier("stringRedisTemplate")
 	private RedisTemplate<String, String> stringRedisTemplate;
 
-	private BoundValueOperations<String, String> boundValueOperations;
+	private String key;
+
+	private volatile long timeOffset;
+
+	private volatile long timeSynchronized;
 
 	@Override
 	public void afterPropertiesSet() {
@@ -37,72 +48,37 @@ public class RedisCyclicSequence extends AbstractCyclicSequence {
 		Assert.isTrue(getPaddingLength() <= maxlength, "paddingLength should not large than " + maxlength);
 		if (sequenceStringRedisTemplate != null)
 			stringRedisTemplate = sequenceStringRedisTemplate;
-		boundValueOperations = stringRedisTemplate.boundValueOps(KEY_SEQUENCE + getSequenceName());
-		boundValueOperations.setIfAbsent(getStringValue(now(), getPaddingLength(), 0));
+		key = KEY_SEQUENCE + getSequenceName();
+		stringRedisTemplate.opsForValue().setIfAbsent(key, getStringValue(now(), getPaddingLength(), 0));
 	}
 
 	@Override
 	public String nextStringValue() {
-		List<Object> results = stringRedisTemplate.executePipelined((RedisConnection connection) -> {
-			connection.incr(boundValueOperations.getKey().getBytes());
-			connection.time();
-			return null;
-		});
-		long value = (Long) results.get(0);
-		Date now = new Date((Long) results.get(1));
-		final String stringValue = String.valueOf(value);
-		if (stringValue.length() == getPaddingLength() + getCycleType().getPattern().length()) {
-			Calendar cal = Calendar.getInstance();
-			CycleType cycleType = getCycleType();
-			if (cycleType.ordinal() <= CycleType.MINUTE.ordinal())
-				cal.set(Calendar.MINUTE, Integer.valueOf(stringValue.substring(10, 12)));
-			if (cycleType.ordinal() <= CycleType.HOUR.ordinal())
-				cal.set(Calendar.HOUR_OF_DAY, Integer.valueOf(stringValue.substring(8, 10)));
-			if (cycleType.ordinal() <= CycleType.DAY.ordinal())
-				cal.set(Calendar.DAY_OF_MONTH, Integer.valueOf(stringValue.substring(6, 8)));
-			if (cycleType.ordinal() <= CycleType.MONTH.ordinal())
-				cal.set(Calendar.MONTH, Integer.valueOf(stringValue.substring(4, 6)) - 1);
-			if (cycleType.ordinal() <= CycleType.YEAR.ordinal())
-				cal.set(Calendar.YEAR, Integer.valueOf(stringValue.substring(0, 4)));
-			Date d = cal.getTime();
-			if (getCycleType().isSameCycle(d, now))
-				return stringValue;
-			else if (d.after(now)) {
-				// overflow
-				long next = value
-						- Long.valueOf(DateUtils.formatDate8(now)) * ((long) Math.pow(10, getPaddingLength()));
-				return DateUtils.format(now, cycleType.getPattern()) + next;
-			}
-		}
-		final String restart = getStringValue(now, getPaddingLength(), 1);
-		boolean success = stringRedisTemplate.execute(new SessionCallback<Boolean>() {
-			@Override
-			@SuppressWarnings({ "unchecked", "rawtypes" })
-			public Boolean execute(RedisOperations operations) {
-				operations.watch(Collections.singleton(boundValueOperations.getKey()));
-				if (stringValue.equals(boundValueOperations.get())) {
-					operations.multi();
-					boundValueOperations.set(restart);
-					return operations.exec() != null;
-				} else {
-					return false;
-				}
-			}
-		});
-		if (success)
-			return restart;
-		try {
-			Thread.sleep(100);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		return nextStringValue();
+		if (getCacheSize() > 1)
+			return nextReservedStringValue(this::reserveRange);
+		ReservedRange range = reserveRange(1);
+		return getStringValue(range.getCycle(), range.getLast());
+	}
+
+	private ReservedRange reserveRange(int size) {
+		Date now = now();
+		String cycle = getCycleType().format(now);
+		String value = stringRedisTemplate.execute(SCRIPT, Collections.singletonList(key), cycle,
+				String.valueOf(getPaddingLength()), String.valueOf(size));
+		return new ReservedRange(value.substring(0, cycle.length()), Long.valueOf(value.substring(cycle.length())),
+				size, getCycleType(), now);
 	}
 
+	// redis server time without a round trip per id
 	protected Date now() {
-		Calendar cal = Calendar.getInstance();
-		cal.setTimeInMillis(stringRedisTemplate.execute((RedisConnection connection) -> connection.time()));
-		return cal.getTime();
+		long current = System.currentTimeMillis();
+		if (current - timeSynchronized > TIME_SYNC_INTERVAL) {
+			long time = stringRedisTemplate.execute((RedisConnection connection) -> connection.time());
+			current = System.currentTimeMillis();
+			timeOffset = time - current;
+			timeSynchronized = current;
+		}
+		return new Date(current + timeOffset);
 	}
 
 }
\ No newline at end of file
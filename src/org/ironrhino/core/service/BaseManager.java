@@ -2,6 +2,7 @@ package org.ironrhino.core.service;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.hibernate.LockOptions;
 import org.hibernate.Session;
@@ -74,6 +75,17 @@ public interface BaseManager<T extends Persistable<?>> {
 
 	public void iterate(int fetchSize, IterateCallback callback, DetachedCriteria dc, boolean commitPerFetch);
 
+	public void iterate(int fetchSize, IterateCallback callback, DetachedCriteria dc, boolean commitPerFetch,
+			int concurrency);
+
+	public List<Serializable> splitIdRange(int partitions);
+
+	public Stream<T> stream(int fetchSize);
+
+	public Stream<T> stream(int fetchSize, DetachedCriteria dc);
+
+	public Stream<T> stream(int fetchSize, DetachedCriteria dc, boolean stateless);
+
 	@FunctionalInterface
 	public static interface IterateCallback {
 		public void process(Object[] entityArray, Session session);
@@ -8,9 +8,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.PostPersist;
 import javax.persistence.PostRemove;
@@ -19,6 +30,7 @@ import javax.persistence.PrePersist;
 import javax.persistence.PreRemove;
 import javax.persistence.PreUpdate;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
@@ -31,14 +43,19 @@ import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.hibernate.annotations.Immutable;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.CriteriaImpl;
 import org.hibernate.internal.CriteriaImpl.OrderEntry;
 import org.hibernate.transform.ResultTransformer;
@@ -51,7 +68,7 @@ import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.struts.EntityClassHelper;
 import org.ironrhino.core.util.AnnotationUtils;
 import org.ironrhino.core.util.AuthzUtils;
-import org.ironrhino.core.util.BeanUtils;
+import org.ironrhino.core.util.NameableThreadFactory;
 import org.ironrhino.core.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +91,8 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 	@Autowired
 	private DeleteChecker deleteChecker;
 
+	private volatile Boolean nullsSortedHigh;
+
 	private static final MethodHandle CRITERIA_IMPL_GETTER;
 
 	static {
@@ -419,6 +438,11 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		DetachedCriteria detachedCriteria = resultPage.getCriteria();
 		if (detachedCriteria == null)
 			detachedCriteria = detachedCriteria();
+		if (resultPage.isKeyset()) {
+			List<Order> orders = getKeysetOrders(detachedCriteria);
+			if (orders != null)
+				return findByKeyset(resultPage, detachedCriteria, orders);
+		}
 		long totalResults = -1;
 		if (resultPage.isCounting()) {
 			totalResults = countByCriteria(detachedCriteria);
@@ -453,6 +477,104 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		return resultPage;
 	}
 
+	private List<Order> getKeysetOrders(DetachedCriteria dc) {
+		CriteriaImpl impl;
+		try {
+			impl = (CriteriaImpl) CRITERIA_IMPL_GETTER.invokeExact(dc);
+		} catch (Throwable e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		List<Order> orders = new ArrayList<>();
+		boolean orderById = false;
+		Iterator<OrderEntry> it = impl.iterateOrderings();
+		while (it.hasNext()) {
+			Order order = it.next().getOrder();
+			String propertyName = order.getPropertyName();
+			if (propertyName.indexOf('.') > 0) {
+				logger.warn("keyset pagination is not applicable for order by {}, fallback to offset", propertyName);
+				return null;
+			}
+			if (propertyName.equals("id"))
+				orderById = true;
+			orders.add(order);
+		}
+		if (!orderById) {
+			// id is the tie-breaker to make the seek key unique
+			Order order = Order.asc("id");
+			dc.addOrder(order);
+			orders.add(order);
+		}
+		return orders;
+	}
+
+	private ResultPage<T> findByKeyset(ResultPage<T> resultPage, DetachedCriteria dc, List<Order> orders) {
+		if (resultPage.isCounting())
+			resultPage.setTotalResults(countByCriteria(dc));
+		long time = System.currentTimeMillis();
+		BeanWrapperImpl bw = new BeanWrapperImpl(getEntityClass());
+		if (resultPage.getCursor() != null) {
+			Object[] values = ResultPage.decodeCursor(resultPage.getCursor());
+			if (values.length != orders.size())
+				throw new IllegalArgumentException("invalid cursor: " + resultPage.getCursor());
+			for (int i = 0; i < values.length; i++) {
+				String propertyName = orders.get(i).getPropertyName();
+				values[i] = bw.convertIfNecessary(values[i], bw.getPropertyType(propertyName));
+			}
+			boolean nullsSortedHigh = isNullsSortedHigh();
+			Disjunction disjunction = Restrictions.disjunction();
+			int terms = 0;
+			for (int i = 0; i < values.length; i++) {
+				Order order = orders.get(i);
+				String propertyName = order.getPropertyName();
+				boolean descending = !order.isAscending();
+				Criterion term;
+				if (values[i] == null) {
+					// nothing sorts after null unless nulls precede others
+					if (descending != nullsSortedHigh)
+						continue;
+					term = Restrictions.isNotNull(propertyName);
+				} else {
+					term = descending ? Restrictions.lt(propertyName, values[i])
+							: Restrictions.gt(propertyName, values[i]);
+					if (descending != nullsSortedHigh)
+						term = Restrictions.or(term, Restrictions.isNull(propertyName));
+				}
+				Conjunction conjunction = Restrictions.conjunction();
+				for (int j = 0; j < i; j++) {
+					String name = orders.get(j).getPropertyName();
+					conjunction.add(values[j] == null ? Restrictions.isNull(name) : Restrictions.eq(name, values[j]));
+				}
+				conjunction.add(term);
+				disjunction.add(conjunction);
+				terms++;
+			}
+			dc.add(terms > 0 ? disjunction : Restrictions.sqlRestriction("1=0"));
+		}
+		int pageSize = resultPage.getPageSize();
+		List<T> list = findBetweenListByCriteria(dc, 0, pageSize + 1);
+		String nextCursor = null;
+		if (list.size() > pageSize) {
+			list = new ArrayList<>(list.subList(0, pageSize));
+			BeanWrapperImpl last = new BeanWrapperImpl(list.get(pageSize - 1));
+			Object[] values = new Object[orders.size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = last.getPropertyValue(orders.get(i).getPropertyName());
+			nextCursor = ResultPage.encodeCursor(values);
+		}
+		resultPage.setNextCursor(nextCursor);
+		resultPage.setResult(list);
+		resultPage.setTookInMillis(System.currentTimeMillis() - time);
+		return resultPage;
+	}
+
+	private boolean isNullsSortedHigh() {
+		Boolean b = nullsSortedHigh;
+		if (b == null)
+			nullsSortedHigh = b = sessionFactory.getCurrentSession()
+					.doReturningWork(con -> con.getMetaData().nullsAreSortedHigh());
+		return b;
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public long countAll() {
@@ -593,7 +715,28 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 			TE root = (TE) getEntityClass().newInstance();
 			root.setId(0L);
 			root.setName("");
-			assemble(root, (List<TE>) findAll(Order.asc("level")));
+			root.setChildren(new ArrayList<>());
+			Map<Long, TE> nodes = new HashMap<>();
+			nodes.put(0L, root);
+			DetachedCriteria dc = detachedCriteria();
+			dc.addOrder(Order.asc("level"));
+			// stateless session returns detached entities, no need to copy
+			try (Stream<T> stream = stream(500, dc, true)) {
+				stream.forEach(entity -> {
+					TE te = (TE) entity;
+					// already order by level asc, parent is assembled before
+					TE parent = nodes.get(getParentId(te.getFullId()));
+					if (parent == null)
+						return;
+					te.setChildren(new ArrayList<>());
+					te.setParent(parent);
+					parent.getChildren().add(te);
+					nodes.put(te.getId(), te);
+				});
+			}
+			for (TE te : nodes.values())
+				if (te.getChildren().size() > 1)
+					Collections.sort((List<TE>) te.getChildren());
 			return root;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -601,47 +744,15 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		}
 	}
 
-	private <TE extends BaseTreeableEntity<TE>> void assemble(TE te, List<TE> list) throws Exception {
-		List<TE> children = new ArrayList<>();
-		Iterator<TE> it = list.iterator();
-		while (it.hasNext()) {
-			TE r = it.next();
-			// already order by level asc
-			if (r.getLevel() <= te.getLevel())
-				continue;
-			if (r.getLevel() - te.getLevel() > 1)
-				break;
-			boolean isChild = false;
-			if (te.getId() == null && StringUtils.isNotBlank(te.getFullId())) {
-				// workaround for javassist-3.16.x
-				String fullId = te.getFullId();
-				if (fullId.endsWith("."))
-					fullId = fullId.substring(0, fullId.length() - 1);
-				String id = fullId.substring(fullId.lastIndexOf('.') + 1);
-				te.setId(Long.valueOf(id));
-			}
-			String fullId = r.getFullId();
-			if (fullId.endsWith("."))
-				fullId = fullId.substring(0, fullId.length() - 1);
-			if (te.getId() == 0) {
-				if (fullId.indexOf('.') < 0)
-					isChild = true;
-			} else {
-				if (fullId.indexOf('.') > 0 && te.getFullId().equals(fullId.substring(0, fullId.lastIndexOf('.') + 1)))
-					isChild = true;
-			}
-			if (isChild) {
-				it.remove();
-				TE rr = (TE) te.getClass().newInstance();
-				BeanUtils.copyProperties(r, rr);
-				children.add(rr);
-				rr.setParent(te);
-			}
-		}
-		Collections.sort(children);
-		te.setChildren(children);
-		for (TE r : children)
-			assemble(r, list);
+	private static Long getParentId(String fullId) {
+		if (StringUtils.isBlank(fullId))
+			return null;
+		int end = fullId.endsWith(".") ? fullId.length() - 1 : fullId.length();
+		int index = fullId.lastIndexOf('.', end - 1);
+		if (index < 0)
+			return 0L;
+		int start = fullId.lastIndexOf('.', index - 1) + 1;
+		return Long.valueOf(fullId.substring(start, index));
 	}
 
 	@Override
@@ -693,12 +804,107 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 
 	@Override
 	public void iterate(int fetchSize, IterateCallback callback, DetachedCriteria dc, boolean commitPerFetch) {
+		doIterate(getEntityClass(), fetchSize, callback, dc, commitPerFetch, false);
+	}
+
+	@Override
+	public void iterate(int fetchSize, IterateCallback callback, DetachedCriteria dc, boolean commitPerFetch,
+			int concurrency) {
+		// entityClass maybe hold by ThreadLocal, capture it before fork
+		Class<T> clazz = getEntityClass();
+		if (concurrency < 2) {
+			doIterate(clazz, fetchSize, callback, dc, commitPerFetch, true);
+			return;
+		}
+		List<Serializable> boundaries = doSplitIdRange(clazz, concurrency);
+		ExecutorService executorService = Executors.newFixedThreadPool(boundaries.size() + 1,
+				new NameableThreadFactory("iterate", clazz.getSimpleName()));
+		try {
+			List<Future<?>> futures = new ArrayList<>(boundaries.size() + 1);
+			for (int i = 0; i <= boundaries.size(); i++) {
+				DetachedCriteria partition;
+				if (dc != null) {
+					partition = SerializationUtils.clone(dc);
+				} else {
+					partition = DetachedCriteria.forClass(clazz);
+					partition.addOrder(Order.asc("id"));
+				}
+				if (i > 0)
+					partition.add(Restrictions.ge("id", boundaries.get(i - 1)));
+				if (i < boundaries.size())
+					partition.add(Restrictions.lt("id", boundaries.get(i)));
+				futures.add(executorService
+						.submit(() -> doIterate(clazz, fetchSize, callback, partition, commitPerFetch, true)));
+			}
+			try {
+				for (Future<?> future : futures)
+					future.get();
+			} catch (ExecutionException e) {
+				for (Future<?> future : futures)
+					future.cancel(true);
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new RuntimeException(cause.getMessage(), cause);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while iterating " + clazz.getName(), e);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Override
+	public List<Serializable> splitIdRange(int partitions) {
+		return doSplitIdRange(getEntityClass(), partitions);
+	}
+
+	private List<Serializable> doSplitIdRange(Class<T> clazz, int partitions) {
+		Session hibernateSession = sessionFactory.openSession();
+		ScrollableResults cursor = null;
+		try {
+			Criteria c = hibernateSession.createCriteria(clazz);
+			c.setProjection(Projections.rowCount());
+			long count = (Long) c.uniqueResult();
+			List<Serializable> boundaries = new ArrayList<>(Math.max(partitions - 1, 0));
+			if (partitions < 2 || count < partitions)
+				return boundaries;
+			// pick every count/partitions-th id in a single pass over the ids
+			c = hibernateSession.createCriteria(clazz);
+			c.setProjection(Projections.id());
+			c.addOrder(Order.asc("id"));
+			c.setFetchSize(1000);
+			cursor = c.scroll(ScrollMode.FORWARD_ONLY);
+			long position = 0;
+			int i = 1;
+			long offset = count / partitions;
+			while (i < partitions && cursor.next()) {
+				if (position++ < offset)
+					continue;
+				Serializable id = (Serializable) cursor.get(0);
+				if (id != null && (boundaries.isEmpty() || !id.equals(boundaries.get(boundaries.size() - 1))))
+					boundaries.add(id);
+				offset = count * ++i / partitions;
+			}
+			return boundaries;
+		} finally {
+			if (cursor != null)
+				cursor.close();
+			hibernateSession.close();
+		}
+	}
+
+	private void doIterate(Class<T> clazz, int fetchSize, IterateCallback callback, DetachedCriteria dc,
+			boolean commitPerFetch, boolean propagate) {
 		Session hibernateSession = sessionFactory.openSession();
 		Criteria c;
 		if (dc != null) {
 			c = dc.getExecutableCriteria(hibernateSession);
 		} else {
-			c = hibernateSession.createCriteria(getEntityClass());
+			c = hibernateSession.createCriteria(clazz);
 			c.addOrder(Order.asc("id"));
 		}
 		hibernateSession.setCacheMode(CacheMode.IGNORE);
@@ -751,11 +957,155 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 					logger.warn("Failed to rollback Hibernate", e1);
 				}
 			}
+			if (propagate)
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e.getMessage(), e);
 		} finally {
 			hibernateSession.close();
 		}
 	}
 
+	@Override
+	public Stream<T> stream(int fetchSize) {
+		return stream(fetchSize, null);
+	}
+
+	@Override
+	public Stream<T> stream(int fetchSize, DetachedCriteria dc) {
+		return stream(fetchSize, dc, true);
+	}
+
+	@Override
+	public Stream<T> stream(int fetchSize, DetachedCriteria dc, boolean stateless) {
+		if (dc == null) {
+			dc = detachedCriteria();
+			dc.addOrder(Order.asc("id"));
+		}
+		CriteriaImpl impl;
+		try {
+			impl = (CriteriaImpl) CRITERIA_IMPL_GETTER.invokeExact(dc);
+		} catch (Throwable e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		ScrollableResultsIterator<T> iterator;
+		if (stateless) {
+			StatelessSession statelessSession = sessionFactory.openStatelessSession();
+			try {
+				Transaction transaction = statelessSession.beginTransaction();
+				impl.setSession((SessionImplementor) statelessSession);
+				impl.setFetchSize(fetchSize);
+				iterator = new ScrollableResultsIterator<>(impl.scroll(ScrollMode.FORWARD_ONLY), null, fetchSize,
+						transaction, statelessSession::close);
+			} catch (RuntimeException e) {
+				statelessSession.close();
+				throw e;
+			}
+		} else {
+			Session hibernateSession = sessionFactory.openSession();
+			try {
+				hibernateSession.setCacheMode(CacheMode.IGNORE);
+				hibernateSession.setDefaultReadOnly(true);
+				Transaction transaction = hibernateSession.beginTransaction();
+				Criteria c = dc.getExecutableCriteria(hibernateSession);
+				c.setFetchSize(fetchSize);
+				c.setReadOnly(true);
+				iterator = new ScrollableResultsIterator<>(c.scroll(ScrollMode.FORWARD_ONLY), hibernateSession,
+						fetchSize, transaction, hibernateSession::close);
+			} catch (RuntimeException e) {
+				hibernateSession.close();
+				throw e;
+			}
+		}
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+						false)
+				.onClose(iterator::close);
+	}
+
+	private static class ScrollableResultsIterator<T> implements Iterator<T> {
+
+		private final ScrollableResults cursor;
+		private final Session hibernateSession;
+		private final int fetchSize;
+		private final Transaction transaction;
+		private final Runnable closer;
+		private Object next;
+		private Object prev;
+		private int count;
+		private boolean closed;
+
+		ScrollableResultsIterator(ScrollableResults cursor, Session hibernateSession, int fetchSize,
+				Transaction transaction, Runnable closer) {
+			this.cursor = cursor;
+			this.hibernateSession = hibernateSession;
+			this.fetchSize = fetchSize > 0 ? fetchSize : 1;
+			this.transaction = transaction;
+			this.closer = closer;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !closed)
+				next = fetch();
+			return next != null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			T result = (T) next;
+			next = null;
+			return result;
+		}
+
+		private Object fetch() {
+			try {
+				if (hibernateSession != null && count > 0 && count % fetchSize == 0) {
+					// detach returned entities to keep memory bounded
+					hibernateSession.clear();
+					prev = null;
+				}
+				while (true) {
+					try {
+						if (!cursor.next()) {
+							close();
+							return null;
+						}
+					} catch (ObjectNotFoundException e) {
+						continue;
+					}
+					Object item = cursor.get(0);
+					if (item == null || item == prev)
+						continue;
+					prev = item;
+					count++;
+					return item;
+				}
+			} catch (RuntimeException e) {
+				try {
+					transaction.rollback();
+				} catch (Exception e1) {
+				}
+				closed = true;
+				closer.run();
+				throw e;
+			}
+		}
+
+		public void close() {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				cursor.close();
+				transaction.commit();
+			} finally {
+				closer.run();
+			}
+		}
+	}
+
 	private static class RowBuffer {
 		private Object[] buffer;
 		private int currentIndex;
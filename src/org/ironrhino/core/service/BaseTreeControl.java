@@ -3,6 +3,8 @@ package org.ironrhino.core.service;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ironrhino.core.event.EntityOperationEvent;
 import org.ironrhino.core.event.EntityOperationType;
@@ -16,6 +18,8 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 
 	private volatile T tree;
 
+	private volatile Map<Long, T> nodes;
+
 	private Class<T> entityClass;
 
 	@Autowired
@@ -31,7 +35,12 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 
 	public synchronized void buildTree() {
 		entityManager.setEntityClass(entityClass);
-		tree = entityManager.loadTree();
+		T root = entityManager.loadTree();
+		Map<Long, T> map = new ConcurrentHashMap<>();
+		for (T t : root.getDescendantsAndSelf())
+			map.put(t.getId(), t);
+		nodes = map;
+		tree = root;
 	}
 
 	public T getTree() {
@@ -43,6 +52,13 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 		return tree;
 	}
 
+	public T getTreeNode(Long id) {
+		if (id == null)
+			throw new IllegalArgumentException("id must not be null");
+		getTree();
+		return nodes.get(id);
+	}
+
 	public T getTree(String name) {
 		T subtree = null;
 		for (T t : tree.getChildren())
@@ -72,8 +88,10 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 			String parentId = fullId.substring(0, fullId.lastIndexOf('.'));
 			if (parentId.indexOf('.') > -1)
 				parentId = parentId.substring(parentId.lastIndexOf('.') + 1);
-			parent = tree.getDescendantOrSelfById(Long.valueOf(parentId));
+			parent = nodes.get(Long.valueOf(parentId));
 		}
+		if (parent == null)
+			return;
 		try {
 			T t = entityClass.newInstance();
 			t.setChildren(new ArrayList<>());
@@ -82,6 +100,7 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 			parent.getChildren().add(t);
 			if (parent.getChildren() instanceof List)
 				Collections.sort((List) parent.getChildren());
+			nodes.put(t.getId(), t);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -89,12 +108,12 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private synchronized void update(T treeNode) {
-		T t = tree.getDescendantOrSelfById(treeNode.getId());
+		T t = nodes.get(treeNode.getId());
 		if (t == null)
 			return;
-		boolean needsort = t.compareTo(treeNode) != 0 || !t.getFullId().equals(treeNode.getFullId());
-		if (!t.getFullId().equals(treeNode.getFullId())) {
-			t.getParent().getChildren().remove(t);
+		boolean moved = !t.getFullId().equals(treeNode.getFullId());
+		boolean needsort = t.compareTo(treeNode) != 0 || moved;
+		if (moved) {
 			String str = treeNode.getFullId();
 			if (str.endsWith("."))
 				str = str.substring(0, str.length() - 1);
@@ -109,12 +128,16 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 			if (newParentId == 0)
 				newParent = tree;
 			else
-				newParent = tree.getDescendantOrSelfById(newParentId);
+				newParent = nodes.get(newParentId);
+			if (newParent == null)
+				return;
+			t.getParent().getChildren().remove(t);
 			t.setParent(newParent);
 			newParent.getChildren().add(t);
-			resetChildren(t);
 		}
 		BeanUtils.copyProperties(treeNode, t, new String[] { "parent", "children" });
+		if (moved)
+			resetChildren(t);
 		if (needsort && t.getParent().getChildren() instanceof List)
 			Collections.sort((List) t.getParent().getChildren());
 	}
@@ -130,9 +153,12 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 	}
 
 	private synchronized void delete(T treeNode) {
-		T t = tree.getDescendantOrSelfById(treeNode.getId());
-		if (t != null)
+		T t = nodes.get(treeNode.getId());
+		if (t != null) {
 			t.getParent().getChildren().remove(t);
+			for (T descendant : t.getDescendantsAndSelf())
+				nodes.remove(descendant.getId());
+		}
 	}
 
 	@EventListener
@@ -1,9 +1,12 @@
 package org.ironrhino.core.servlet;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.DispatcherType;
@@ -24,6 +27,7 @@ import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.HttpClientUtils;
 import org.ironrhino.core.util.RequestUtils;
 import org.ironrhino.core.util.UserAgent;
+import org.ironrhino.core.util.WildcardMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -56,7 +60,12 @@ public class AccessFilter implements Filter {
 	@Value("${accessFilter.excludePatterns:}")
 	private String excludePatterns;
 
-	private List<String> excludePatternsList = Collections.emptyList();
+	@Value("${accessFilter.matchCacheSize:10000}")
+	private int matchCacheSize = 10000;
+
+	private volatile Matchers matchers;
+
+	private final Map<String, List<AccessHandler>> matchCache = new ConcurrentHashMap<>();
 
 	@Autowired(required = false)
 	private List<AccessHandler> handlers;
@@ -66,6 +75,7 @@ public class AccessFilter implements Filter {
 
 	public void setExcludePatterns(String excludePatterns) {
 		this.excludePatterns = excludePatterns;
+		this.matchers = null;
 	}
 
 	public void setPrint(boolean print) {
@@ -82,8 +92,28 @@ public class AccessFilter implements Filter {
 
 	@PostConstruct
 	public void _init() {
+		List<AccessHandler> list = handlers != null ? new ArrayList<>(handlers) : Collections.emptyList();
+		WildcardMatcher exclude = new WildcardMatcher();
 		if (StringUtils.isNotBlank(excludePatterns))
-			excludePatternsList = Arrays.asList(excludePatterns.split("\\s*,\\s*"));
+			for (String pattern : excludePatterns.split("\\s*,\\s*"))
+				exclude.add(pattern, 0);
+		WildcardMatcher handlerInclude = new WildcardMatcher();
+		WildcardMatcher handlerExclude = new WildcardMatcher();
+		for (int i = 0; i < list.size(); i++) {
+			AccessHandler handler = list.get(i);
+			String pattern = handler.getPattern();
+			if (StringUtils.isBlank(pattern))
+				handlerInclude.add("*", i);
+			else
+				for (String pa : pattern.split("\\s*,\\s*"))
+					handlerInclude.add(pa, i);
+			String excludePattern = handler.getExcludePattern();
+			if (StringUtils.isNotBlank(excludePattern))
+				for (String pa : excludePattern.split("\\s*,\\s*"))
+					handlerExclude.add(pa, i);
+		}
+		matchers = new Matchers(list, exclude, handlerInclude, handlerExclude);
+		matchCache.clear();
 	}
 
 	@Override
@@ -105,37 +135,16 @@ public class AccessFilter implements Filter {
 			String uri = request.getRequestURI();
 			uri = uri.substring(request.getContextPath().length());
 
-			for (String pattern : excludePatternsList) {
-				if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pattern)) {
-					chain.doFilter(req, resp);
-					return;
-				}
+			List<AccessHandler> matchedHandlers = getMatchedHandlers(uri);
+			if (matchedHandlers == null) {
+				chain.doFilter(req, resp);
+				return;
 			}
 
-			if (isRequestDispatcher && handlers != null)
-				loop: for (AccessHandler handler : handlers) {
-					String excludePattern = handler.getExcludePattern();
-					if (StringUtils.isNotBlank(excludePattern)) {
-						String[] arr = excludePattern.split("\\s*,\\s*");
-						for (String pa : arr)
-							if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa)) {
-								continue loop;
-							}
-					}
-					String pattern = handler.getPattern();
-					boolean matched = StringUtils.isBlank(pattern);
-					if (!matched) {
-						String[] arr = pattern.split("\\s*,\\s*");
-						for (String pa : arr)
-							if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa)) {
-								matched = true;
-								break;
-							}
-					}
-					if (matched) {
-						if (handler.handle(request, response)) {
-							return;
-						}
+			if (isRequestDispatcher)
+				for (AccessHandler handler : matchedHandlers) {
+					if (handler.handle(request, response)) {
+						return;
 					}
 				}
 
@@ -200,6 +209,43 @@ public class AccessFilter implements Filter {
 		}
 	}
 
+	/**
+	 * @return handlers applicable to uri in order, or null if uri is excluded
+	 */
+	protected List<AccessHandler> getMatchedHandlers(String uri) {
+		Matchers m = matchers;
+		if (m == null) {
+			_init();
+			m = matchers;
+		}
+		List<AccessHandler> result = matchCache.get(uri);
+		if (result != null)
+			return result != EXCLUDED ? result : null;
+		if (m.exclude.matches(uri)) {
+			result = EXCLUDED;
+		} else {
+			BitSet bs = m.handlerInclude.match(uri);
+			if (!bs.isEmpty())
+				bs.andNot(m.handlerExclude.match(uri));
+			if (bs.isEmpty()) {
+				result = Collections.emptyList();
+			} else {
+				result = new ArrayList<>(bs.cardinality());
+				for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1))
+					result.add(m.handlers.get(i));
+				result = Collections.unmodifiableList(result);
+			}
+		}
+		if (matchCacheSize > 0) {
+			// uris with path variables are unbounded, start over instead of
+			// tracking recency
+			if (matchCache.size() >= matchCacheSize)
+				matchCache.clear();
+			matchCache.put(uri, result);
+		}
+		return result != EXCLUDED ? result : null;
+	}
+
 	@Override
 	public void destroy() {
 		try {
@@ -209,4 +255,26 @@ public class AccessFilter implements Filter {
 		}
 	}
 
+	private static final List<AccessHandler> EXCLUDED = Collections.unmodifiableList(new ArrayList<>(0));
+
+	private static class Matchers {
+
+		private final List<AccessHandler> handlers;
+
+		private final WildcardMatcher exclude;
+
+		private final WildcardMatcher handlerInclude;
+
+		private final WildcardMatcher handlerExclude;
+
+		Matchers(List<AccessHandler> handlers, WildcardMatcher exclude, WildcardMatcher handlerInclude,
+				WildcardMatcher handlerExclude) {
+			this.handlers = handlers;
+			this.exclude = exclude;
+			this.handlerInclude = handlerInclude;
+			this.handlerExclude = handlerExclude;
+		}
+
+	}
+
 }
@@ -2,11 +2,20 @@ package org.ironrhino.core.servlet;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -15,10 +24,13 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
-import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
 
 public class OptimizeTrafficFilter implements Filter {
 
@@ -28,6 +40,29 @@ public class OptimizeTrafficFilter implements Filter {
 
 	private int cacheSeconds = 86400;
 
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	// larger responses are compressed and written on the fly without ETag
+	private int bufferSize = 64 * 1024;
+
+	private int compressedCacheSize = 256;
+
+	private final DeflaterPool gzipDeflaterPool = new DeflaterPool(true);
+
+	private final DeflaterPool deflateDeflaterPool = new DeflaterPool(false);
+
+	private final Map<String, byte[]> compressedCache = Collections
+			.synchronizedMap(new LinkedHashMap<String, byte[]>(64, 0.75f, true) {
+
+				private static final long serialVersionUID = 2683839572351920583L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+					return size() > compressedCacheSize;
+				}
+
+			});
+
 	public void setEtag(boolean etag) {
 		this.etag = etag;
 	}
@@ -40,26 +75,287 @@ public class OptimizeTrafficFilter implements Filter {
 		this.cacheSeconds = cacheSeconds;
 	}
 
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public void setCompressedCacheSize(int compressedCacheSize) {
+		this.compressedCacheSize = compressedCacheSize;
+	}
+
 	@Override
 	public void doFilter(ServletRequest rq, ServletResponse rs, FilterChain chain)
 			throws IOException, ServletException {
-		if (!etag && !compress)
+		if (!etag && !compress) {
 			chain.doFilter(rq, rs);
+			return;
+		}
 		HttpServletRequest request = (HttpServletRequest) rq;
 		HttpServletResponse response = (HttpServletResponse) rs;
-		LazyCommitResponseWrapper brw = new LazyCommitResponseWrapper(response);
-		chain.doFilter(request, brw);
-		byte[] bytes = brw.getContents();
-		if (bytes != null) {
-			boolean notmodified = false;
-			if (etag) {
-				String token = '"' + DigestUtils.md5Hex(bytes) + '"';
+		OptimizedResponseWrapper wrapper = new OptimizedResponseWrapper(request, response);
+		boolean completed = false;
+		try {
+			chain.doFilter(request, wrapper);
+			completed = true;
+		} finally {
+			if (completed)
+				wrapper.finish();
+			else
+				wrapper.abort();
+		}
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) {
+		if ("false".equals(filterConfig.getInitParameter("etag")))
+			etag = false;
+		if ("false".equals(filterConfig.getInitParameter("compress")))
+			compress = false;
+		if (filterConfig.getInitParameter("cacheSeconds") != null)
+			cacheSeconds = Integer.valueOf(filterConfig.getInitParameter("cacheSeconds"));
+		if (filterConfig.getInitParameter("compressionLevel") != null)
+			compressionLevel = Integer.valueOf(filterConfig.getInitParameter("compressionLevel"));
+		if (filterConfig.getInitParameter("bufferSize") != null)
+			bufferSize = Integer.valueOf(filterConfig.getInitParameter("bufferSize"));
+		if (filterConfig.getInitParameter("compressedCacheSize") != null)
+			compressedCacheSize = Integer.valueOf(filterConfig.getInitParameter("compressedCacheSize"));
+	}
+
+	@Override
+	public void destroy() {
+		compressedCache.clear();
+		gzipDeflaterPool.clear();
+		deflateDeflaterPool.clear();
+	}
+
+	private String getContentEncoding(HttpServletRequest request, String contentType) {
+		if (!compress || contentType == null || contentType.indexOf("text") < 0)
+			return null;
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding == null)
+			return null;
+		acceptEncoding = acceptEncoding.toLowerCase();
+		if (acceptEncoding.indexOf("gzip") >= 0)
+			return acceptEncoding.indexOf("x-gzip") >= 0 ? "x-gzip" : "gzip";
+		else if (acceptEncoding.indexOf("deflate") >= 0)
+			return "deflate"; // has problem with IE6
+		return null;
+	}
+
+	private CompressingOutputStream compressingStream(OutputStream out, String contentEncoding) throws IOException {
+		boolean gzip = !contentEncoding.equals("deflate");
+		DeflaterPool pool = gzip ? gzipDeflaterPool : deflateDeflaterPool;
+		Deflater deflater = pool.borrow(compressionLevel);
+		try {
+			return new CompressingOutputStream(out, pool, deflater, gzip);
+		} catch (IOException | RuntimeException e) {
+			pool.release(deflater);
+			throw e;
+		}
+	}
+
+	private byte[] compress(byte[] bytes, int length, String contentEncoding, String hash) throws IOException {
+		String key = hash != null && compressedCacheSize > 0 ? contentEncoding + ':' + hash : null;
+		if (key != null) {
+			byte[] compressed = compressedCache.get(key);
+			if (compressed != null)
+				return compressed;
+		}
+		ByteArrayOutputStream boas = new ByteArrayOutputStream(length / 2 + 64);
+		CompressingOutputStream cos = compressingStream(boas, contentEncoding);
+		try {
+			cos.write(bytes, 0, length);
+			cos.finish();
+		} finally {
+			// no-op once finished
+			cos.abort();
+		}
+		byte[] compressed = boas.toByteArray();
+		if (key != null)
+			compressedCache.put(key, compressed);
+		return compressed;
+	}
+
+	private void setCacheHeaders(HttpServletResponse response) {
+		response.addHeader("Cache-Control", "public");
+		response.addHeader("Cache-Control", "max-age=" + cacheSeconds);
+		Calendar cal = Calendar.getInstance();
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.SECOND, cacheSeconds);
+		response.setDateHeader("Expires", cal.getTime().getTime());
+	}
+
+	private class OptimizedResponseWrapper extends HttpServletResponseWrapper {
+
+		private final HttpServletRequest request;
+
+		private final Buffer buffer = new Buffer();
+
+		private final MessageDigest digest;
+
+		private OutputStream streaming;
+
+		private CompressingOutputStream compressing;
+
+		private ServletOutputStream exposedStream;
+
+		private PrintWriter exposedWriter;
+
+		public OptimizedResponseWrapper(HttpServletRequest request, HttpServletResponse response) {
+			super(response);
+			this.request = request;
+			MessageDigest md = null;
+			if (etag || compressedCacheSize > 0)
+				try {
+					md = MessageDigest.getInstance("MD5");
+				} catch (NoSuchAlgorithmException e) {
+					throw new IllegalStateException(e);
+				}
+			this.digest = md;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (exposedWriter != null)
+				throw new IllegalStateException("response.getOutputStream() called after response.getWriter()");
+			if (exposedStream == null)
+				exposedStream = new ServletOutputStream() {
+
+					@Override
+					public void write(int b) throws IOException {
+						write(new byte[] { (byte) b }, 0, 1);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						OptimizedResponseWrapper.this.write(b, off, len);
+					}
+
+					@Override
+					public void flush() throws IOException {
+						if (streaming != null)
+							streaming.flush();
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(WriteListener listener) {
+
+					}
+				};
+			return exposedStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (exposedWriter == null) {
+				if (exposedStream != null)
+					throw new IllegalStateException("response.getWriter() called after response.getOutputStream()");
+				String encoding = getCharacterEncoding();
+				if (StringUtils.isBlank(encoding))
+					encoding = "UTF-8";
+				getOutputStream();
+				exposedWriter = new PrintWriter(new OutputStreamWriter(exposedStream, encoding));
+			}
+			return exposedWriter;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			// computed after compression
+		}
+
+		@Override
+		public void setContentLengthLong(long len) {
+			// computed after compression
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (streaming == null)
+				return;
+			if (exposedWriter != null)
+				exposedWriter.flush();
+			streaming.flush();
+		}
+
+		@Override
+		public void resetBuffer() {
+			if (streaming != null) {
+				super.resetBuffer();
+				return;
+			}
+			buffer.reset();
+			if (digest != null)
+				digest.reset();
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			resetBuffer();
+		}
+
+		private void write(byte[] b, int off, int len) throws IOException {
+			if (streaming == null && bufferSize > 0 && buffer.size() + len > bufferSize)
+				startStreaming();
+			if (streaming != null) {
+				streaming.write(b, off, len);
+			} else {
+				buffer.write(b, off, len);
+				if (digest != null)
+					digest.update(b, off, len);
+			}
+		}
+
+		private void startStreaming() throws IOException {
+			HttpServletResponse response = (HttpServletResponse) getResponse();
+			String contentEncoding = getContentEncoding(request, getContentType());
+			setCacheHeaders(response);
+			OutputStream out = response.getOutputStream();
+			if (contentEncoding != null) {
+				response.setHeader("Content-Encoding", contentEncoding);
+				response.addHeader("Vary", "Accept-Encoding");
+				compressing = compressingStream(out, contentEncoding);
+				streaming = compressing;
+			} else {
+				streaming = out;
+			}
+			streaming.write(buffer.array(), 0, buffer.size());
+			buffer.reset();
+		}
+
+		public void finish() throws IOException {
+			if (exposedWriter != null)
+				exposedWriter.flush();
+			HttpServletResponse response = (HttpServletResponse) getResponse();
+			if (streaming != null) {
+				if (compressing != null)
+					compressing.finish();
+				streaming.flush();
+				return;
+			}
+			if (exposedStream == null)
+				return;
+			byte[] bytes = buffer.array();
+			int length = buffer.size();
+			String hash = digest != null ? Hex.encodeHexString(digest.digest()) : null;
+			if (etag && getStatus() == HttpServletResponse.SC_OK) {
+				String token = '"' + hash + '"';
 				response.setHeader("ETag", token);
 				String previousToken = request.getHeader("If-None-Match");
 				if (previousToken != null && previousToken.equals(token)) {
 					response.setHeader("Last-Modified", request.getHeader("If-Modified-Since"));
 					response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
-					notmodified = true;
+					return;
 				} else {
 					Calendar cal = Calendar.getInstance();
 					cal.set(Calendar.MILLISECOND, 0);
@@ -67,61 +363,162 @@ public class OptimizeTrafficFilter implements Filter {
 					response.setDateHeader("Last-Modified", lastModified.getTime());
 				}
 			}
-			if (!notmodified) {
-				if (compress && brw.getContentType() != null && brw.getContentType().indexOf("text") >= 0) {
-					String acceptEncoding = request.getHeader("Accept-Encoding");
-					if (acceptEncoding != null) {
-						acceptEncoding = acceptEncoding.toLowerCase();
-						if (acceptEncoding.indexOf("gzip") >= 0) {
-							ByteArrayOutputStream boas = new ByteArrayOutputStream(10 * 1024);
-							GZIPOutputStream gzos = new GZIPOutputStream(boas);
-							gzos.write(bytes);
-							gzos.flush();
-							gzos.close();
-							bytes = boas.toByteArray();
-							response.setHeader("Content-Encoding",
-									acceptEncoding.indexOf("x-gzip") >= 0 ? "x-gzip" : "gzip");
-						} else if (acceptEncoding.indexOf("deflate") >= 0) {
-							// has problem with IE6
-							ByteArrayOutputStream boas = new ByteArrayOutputStream(bytes.length / 2);
-							DeflaterOutputStream dfos = new DeflaterOutputStream(boas,
-									new Deflater(Deflater.BEST_COMPRESSION), bytes.length / 2);
-							dfos.write(bytes);
-							dfos.flush();
-							dfos.close();
-							bytes = boas.toByteArray();
-							response.setHeader("Content-Encoding", "deflate");
-						}
-					}
-				}
-
-				response.setContentLength(bytes.length);
-				response.addHeader("Cache-Control", "public");
-				response.addHeader("Cache-Control", "max-age=" + cacheSeconds);
-				Calendar cal = Calendar.getInstance();
-				cal.set(Calendar.MILLISECOND, 0);
-				cal.add(Calendar.SECOND, cacheSeconds);
-				response.setDateHeader("Expires", cal.getTime().getTime());
-				ServletOutputStream sos = response.getOutputStream();
-				sos.write(bytes);
-				sos.flush();
-				sos.close();
+			String contentEncoding = getContentEncoding(request, getContentType());
+			if (contentEncoding != null) {
+				bytes = compress(bytes, length, contentEncoding, hash);
+				length = bytes.length;
+				response.setHeader("Content-Encoding", contentEncoding);
+				response.addHeader("Vary", "Accept-Encoding");
 			}
+			response.setContentLength(length);
+			setCacheHeaders(response);
+			ServletOutputStream sos = response.getOutputStream();
+			sos.write(bytes, 0, length);
+			sos.flush();
+			sos.close();
 		}
+
+		// leave buffered content to error handling, only release pooled deflater
+		public void abort() {
+			if (compressing != null)
+				compressing.abort();
+		}
+
 	}
 
-	@Override
-	public void init(FilterConfig filterConfig) {
-		if ("false".equals(filterConfig.getInitParameter("etag")))
-			etag = false;
-		if ("false".equals(filterConfig.getInitParameter("compress")))
-			compress = false;
-		if (filterConfig.getInitParameter("cacheSeconds") != null)
-			cacheSeconds = Integer.valueOf(filterConfig.getInitParameter("cacheSeconds"));
+	private static class Buffer extends ByteArrayOutputStream {
+
+		Buffer() {
+			super(8 * 1024);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
 	}
 
-	@Override
-	public void destroy() {
+	private static class DeflaterPool {
+
+		private final boolean nowrap;
+
+		private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(
+				Runtime.getRuntime().availableProcessors() * 2);
+
+		DeflaterPool(boolean nowrap) {
+			this.nowrap = nowrap;
+		}
+
+		Deflater borrow(int level) {
+			Deflater deflater = deflaters.poll();
+			if (deflater == null)
+				return new Deflater(level, nowrap);
+			deflater.setLevel(level);
+			return deflater;
+		}
+
+		void release(Deflater deflater) {
+			deflater.reset();
+			if (!deflaters.offer(deflater))
+				deflater.end();
+		}
+
+		void clear() {
+			Deflater deflater;
+			while ((deflater = deflaters.poll()) != null)
+				deflater.end();
+		}
+
+	}
+
+	// gzip or zlib stream backed by pooled deflater
+	private static class CompressingOutputStream extends OutputStream {
+
+		private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+		private final OutputStream out;
+
+		private final DeflaterPool pool;
+
+		private final Deflater deflater;
+
+		private final CRC32 crc;
+
+		private final byte[] buf = new byte[8 * 1024];
+
+		private boolean finished;
+
+		CompressingOutputStream(OutputStream out, DeflaterPool pool, Deflater deflater, boolean gzip)
+				throws IOException {
+			this.out = out;
+			this.pool = pool;
+			this.deflater = deflater;
+			this.crc = gzip ? new CRC32() : null;
+			if (gzip)
+				out.write(GZIP_HEADER);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return;
+			if (crc != null)
+				crc.update(b, off, len);
+			deflater.setInput(b, off, len);
+			while (!deflater.needsInput())
+				deflate(Deflater.NO_FLUSH);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (!finished)
+				while (deflate(Deflater.SYNC_FLUSH) == buf.length)
+					;
+			out.flush();
+		}
+
+		public void finish() throws IOException {
+			if (finished)
+				return;
+			finished = true;
+			try {
+				deflater.finish();
+				while (!deflater.finished())
+					deflate(Deflater.NO_FLUSH);
+				if (crc != null) {
+					writeInt((int) crc.getValue());
+					writeInt((int) deflater.getBytesRead());
+				}
+			} finally {
+				pool.release(deflater);
+			}
+		}
+
+		public void abort() {
+			if (finished)
+				return;
+			finished = true;
+			pool.release(deflater);
+		}
+
+		private int deflate(int flush) throws IOException {
+			int n = deflater.deflate(buf, 0, buf.length, flush);
+			if (n > 0)
+				out.write(buf, 0, n);
+			return n;
+		}
+
+		private void writeInt(int i) throws IOException {
+			out.write(i & 0xff);
+			out.write((i >> 8) & 0xff);
+			out.write((i >> 16) & 0xff);
+			out.write((i >> 24) & 0xff);
+		}
 
 	}
 
@@ -1,6 +1,5 @@
 package org.ironrhino.core.session.impl;
 
-import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.util.HashMap;
 import java.util.Map;
@@ -42,7 +41,7 @@ public class CookieBasedHttpSessionStore implements HttpSessionStore {
 		String cookie = getCookie(session);
 		if (StringUtils.isNotBlank(cookie)) {
 			cookie = decrypt(cookie, session.getId());
-			String creationTime = NumberUtils.decimalToX(62, BigInteger.valueOf(session.getCreationTime()));
+			String creationTime = NumberUtils.decimalToX(62, session.getCreationTime());
 			if (cookie.startsWith("{") || cookie.startsWith(creationTime)) {
 				cookie = cookie.substring(creationTime.length());
 				sessionCompressorManager.uncompress(session, cookie);
@@ -58,7 +57,7 @@ public class CookieBasedHttpSessionStore implements HttpSessionStore {
 			return;
 		String sessionString = sessionCompressorManager.compress(session);
 		if (StringUtils.isNotBlank(sessionString)) {
-			String creationTime = NumberUtils.decimalToX(62, BigInteger.valueOf(session.getCreationTime()));
+			String creationTime = NumberUtils.decimalToX(62, session.getCreationTime());
 			String cookie = creationTime + sessionString;
 			saveCookie(session, encrypt(cookie, session.getId()));
 		} else
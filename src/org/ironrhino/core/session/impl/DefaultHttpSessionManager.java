@@ -1,17 +1,18 @@
 package org.ironrhino.core.session.impl;
 
-import java.math.BigInteger;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.session.HttpSessionManager;
 import org.ironrhino.core.session.HttpSessionStore;
 import org.ironrhino.core.session.WrappedHttpSession;
+import org.ironrhino.core.session.impl.SessionTrackerCodec.SessionTracker;
 import org.ironrhino.core.util.CodecUtils;
-import org.ironrhino.core.util.NumberUtils;
 import org.ironrhino.core.util.RequestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +28,13 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 
 	private static final String SESSION_KEY_REMOTE_ADDR = "_REMOTE_ADDR";
 
-	private static final String SESSION_TRACKER_SEPERATOR = "-";
+	// first match of Locale.getAvailableLocales() wins like before
+	private static final Map<String, Locale> AVAILABLE_LOCALES = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	static {
+		for (Locale locale : Locale.getAvailableLocales())
+			AVAILABLE_LOCALES.putIfAbsent(locale.toString(), locale);
+	}
 
 	protected Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -69,6 +76,25 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 	@Value("${globalCookie:false}")
 	private boolean globalCookie;
 
+	@Value("${httpSessionManager.sessionTrackerSecret:}")
+	private String sessionTrackerSecret;
+
+	// write legacy trackers until every node understands the current version
+	@Value("${httpSessionManager.legacySessionTracker:true}")
+	private boolean legacySessionTracker = true;
+
+	private SessionTrackerCodec sessionTrackerCodec = new SessionTrackerCodec(SALT);
+
+	@PostConstruct
+	public void init() {
+		if (StringUtils.isBlank(sessionTrackerSecret)) {
+			logger.warn("httpSessionManager.sessionTrackerSecret is not configured, session trackers can be forged");
+			sessionTrackerCodec = new SessionTrackerCodec(SALT);
+		} else {
+			sessionTrackerCodec = new SessionTrackerCodec(sessionTrackerSecret);
+		}
+	}
+
 	public String getDefaultLocaleName() {
 		return defaultLocaleName;
 	}
@@ -115,9 +141,7 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 			return token;
 		String sessionTracker = RequestUtils.getCookieValue(request, getSessionTrackerName());
 		if (sessionTracker != null) {
-			sessionTracker = CodecUtils.swap(sessionTracker);
-			String[] array = sessionTracker.split(SESSION_TRACKER_SEPERATOR);
-			return array[0];
+			return sessionTrackerCodec.decodeId(sessionTracker);
 		} else {
 			String path = request.getRequestURI();
 			if (path.indexOf(";") > -1) {
@@ -151,18 +175,16 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 			if (session.isRequestedSessionIdFromURL() || alwaysUseCacheBased) {
 				sessionId = sessionTracker;
 			} else {
-				sessionTracker = CodecUtils.swap(sessionTracker);
 				try {
-					String[] array = sessionTracker.split(SESSION_TRACKER_SEPERATOR);
-					if (array.length == 1) {
+					SessionTracker tracker = sessionTrackerCodec.decode(sessionTracker);
+					if (tracker == null) {
 						session.setNew(true);
 						sessionId = CodecUtils.nextId(SALT);
 					} else {
-						sessionId = array[0];
-						if (array.length > 1)
-							creationTime = NumberUtils.xToDecimal(62, array[1]).longValue();
-						if (array.length > 2)
-							lastAccessedTime = NumberUtils.xToDecimal(62, array[2]).longValue();
+						sessionId = tracker.getId();
+						creationTime = tracker.getCreationTime();
+						if (tracker.getLastAccessedTime() >= 0)
+							lastAccessedTime = tracker.getLastAccessedTime();
 						boolean timeout = (lifetime > 0 && (now - creationTime > lifetime * 1000))
 								|| (now - lastAccessedTime > maxInactiveInterval * 1000);
 						if (timeout) {
@@ -254,13 +276,10 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 			return token;
 		if (session.isRequestedSessionIdFromURL() || alwaysUseCacheBased)
 			return session.getId();
-		StringBuilder sb = new StringBuilder();
-		sb.append(session.getId());
-		sb.append(SESSION_TRACKER_SEPERATOR);
-		sb.append(NumberUtils.decimalToX(62, BigInteger.valueOf(session.getCreationTime())));
-		sb.append(SESSION_TRACKER_SEPERATOR);
-		sb.append(NumberUtils.decimalToX(62, BigInteger.valueOf(session.getLastAccessedTime())));
-		return CodecUtils.swap(sb.toString());
+		if (legacySessionTracker)
+			return sessionTrackerCodec.encodeLegacy(session.getId(), session.getCreationTime(),
+					session.getLastAccessedTime());
+		return sessionTrackerCodec.encode(session.getId(), session.getCreationTime(), session.getLastAccessedTime());
 	}
 
 	private void doInitialize(WrappedHttpSession session) {
@@ -294,10 +313,11 @@ public class DefaultHttpSessionManager implements HttpSessionManager {
 		String localeName = RequestUtils.getCookieValue(request, localeCookieName);
 		if (StringUtils.isBlank(localeName))
 			localeName = defaultLocaleName;
-		if (StringUtils.isNotBlank(localeName))
-			for (Locale locale : Locale.getAvailableLocales())
-				if (localeName.equalsIgnoreCase(locale.toString()))
-					return locale;
+		if (StringUtils.isNotBlank(localeName)) {
+			Locale locale = AVAILABLE_LOCALES.get(localeName);
+			if (locale != null)
+				return locale;
+		}
 		return request.getLocale();
 	}
 
@@ -0,0 +1,158 @@
+package org.ironrhino.core.session.impl;
+
+import java.nio.charset.StandardCharsets;
+
+import org.ironrhino.core.util.CodecUtils;
+import org.ironrhino.core.util.NumberUtils;
+
+/**
+ * Fixed layout session tracker: version, 22 chars session id, creation and
+ * last accessed time as 8 chars base62 each, 7 chars base62 signature. Legacy
+ * trackers (swapped "id-creationTime-lastAccessedTime") are still accepted.
+ */
+public class SessionTrackerCodec {
+
+	public static final char VERSION = '1';
+
+	static final int ID_LENGTH = 22;
+
+	static final int TIME_LENGTH = 8;
+
+	static final int SIGNATURE_LENGTH = 7;
+
+	static final int LENGTH = 1 + ID_LENGTH + 2 * TIME_LENGTH + SIGNATURE_LENGTH;
+
+	private static final String LEGACY_SEPERATOR = "-";
+
+	private final byte[] secret;
+
+	public SessionTrackerCodec(String secret) {
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public String encode(String sessionId, long creationTime, long lastAccessedTime) {
+		if (sessionId.length() != ID_LENGTH || creationTime < 0 || lastAccessedTime < 0)
+			return encodeLegacy(sessionId, creationTime, lastAccessedTime);
+		char[] chars = new char[LENGTH];
+		chars[0] = VERSION;
+		sessionId.getChars(0, ID_LENGTH, chars, 1);
+		int pos = 1 + ID_LENGTH;
+		writeBase62(creationTime, chars, pos, TIME_LENGTH);
+		pos += TIME_LENGTH;
+		writeBase62(lastAccessedTime, chars, pos, TIME_LENGTH);
+		pos += TIME_LENGTH;
+		writeBase62(sign(chars, pos), chars, pos, SIGNATURE_LENGTH);
+		return new String(chars);
+	}
+
+	public String encodeLegacy(String sessionId, long creationTime, long lastAccessedTime) {
+		StringBuilder sb = new StringBuilder(sessionId.length() + 16);
+		sb.append(sessionId);
+		sb.append(LEGACY_SEPERATOR);
+		sb.append(NumberUtils.decimalToX(62, creationTime));
+		sb.append(LEGACY_SEPERATOR);
+		sb.append(NumberUtils.decimalToX(62, lastAccessedTime));
+		return CodecUtils.swap(sb.toString());
+	}
+
+	public String decodeId(String tracker) {
+		if (isCurrentVersion(tracker))
+			return tracker.substring(1, 1 + ID_LENGTH);
+		tracker = CodecUtils.swap(tracker);
+		int index = tracker.indexOf(LEGACY_SEPERATOR);
+		return index < 0 ? tracker : tracker.substring(0, index);
+	}
+
+	/**
+	 * @return null if the tracker carries session id only
+	 * @throws IllegalArgumentException
+	 *             if the tracker is malformed or tampered
+	 */
+	public SessionTracker decode(String tracker) {
+		if (isCurrentVersion(tracker)) {
+			int pos = 1 + ID_LENGTH + 2 * TIME_LENGTH;
+			if (sign(tracker, pos) != NumberUtils.xToLong(62, tracker, pos, LENGTH))
+				throw new IllegalArgumentException("Invalid signature: " + tracker);
+			pos = 1 + ID_LENGTH;
+			long creationTime = NumberUtils.xToLong(62, tracker, pos, pos + TIME_LENGTH);
+			pos += TIME_LENGTH;
+			long lastAccessedTime = NumberUtils.xToLong(62, tracker, pos, pos + TIME_LENGTH);
+			return new SessionTracker(tracker.substring(1, 1 + ID_LENGTH), creationTime, lastAccessedTime);
+		}
+		// trailing empty parts are dropped like before
+		String[] array = CodecUtils.swap(tracker).split(LEGACY_SEPERATOR);
+		if (array.length == 1)
+			return null;
+		long creationTime = NumberUtils.xToLong(62, array[1]);
+		long lastAccessedTime = array.length > 2 ? NumberUtils.xToLong(62, array[2]) : -1;
+		return new SessionTracker(array[0], creationTime, lastAccessedTime);
+	}
+
+	private static boolean isCurrentVersion(String tracker) {
+		return tracker.length() == LENGTH && tracker.charAt(0) == VERSION && tracker.indexOf(LEGACY_SEPERATOR) < 0;
+	}
+
+	private long sign(String tracker, int length) {
+		byte[] input = new byte[secret.length + length];
+		System.arraycopy(secret, 0, input, 0, secret.length);
+		for (int i = 0; i < length; i++)
+			input[secret.length + i] = (byte) tracker.charAt(i);
+		return sign(input);
+	}
+
+	private long sign(char[] chars, int length) {
+		byte[] input = new byte[secret.length + length];
+		System.arraycopy(secret, 0, input, 0, secret.length);
+		for (int i = 0; i < length; i++)
+			input[secret.length + i] = (byte) chars[i];
+		return sign(input);
+	}
+
+	private static long sign(byte[] input) {
+		byte[] digest = CodecUtils.md5(input);
+		// 40 bits fit in 7 base62 chars
+		long value = 0;
+		for (int i = 0; i < 5; i++)
+			value = (value << 8) | (digest[i] & 0xFF);
+		return value;
+	}
+
+	private static void writeBase62(long value, char[] chars, int offset, int length) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			chars[i] = NumberUtils.NUMBERS.charAt((int) (value % 62));
+			value /= 62;
+		}
+		if (value != 0)
+			throw new IllegalArgumentException("Value overflow");
+	}
+
+	public static class SessionTracker {
+
+		private final String id;
+
+		private final long creationTime;
+
+		private final long lastAccessedTime;
+
+		SessionTracker(String id, long creationTime, long lastAccessedTime) {
+			this.id = id;
+			this.creationTime = creationTime;
+			this.lastAccessedTime = lastAccessedTime;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public long getCreationTime() {
+			return creationTime;
+		}
+
+		// -1 if absent
+		public long getLastAccessedTime() {
+			return lastAccessedTime;
+		}
+
+	}
+
+}
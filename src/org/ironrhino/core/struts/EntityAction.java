@@ -1,5 +1,6 @@
 package org.ironrhino.core.struts;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -1210,16 +1211,15 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 				value = String.valueOf(value);
 			map.put(entry.getKey(), value);
 		}
-		String json = JsonUtils.toJson(map);
 		HttpServletResponse response = ServletActionContext.getResponse();
-		response.setHeader("Content-type", "application/json");
+		response.setHeader("Content-type", "application/json;charset=UTF-8");
 		String filename = String.valueOf(_entity.getId());
 		if (bwi.getPropertyValue("name") != null)
 			filename = String.valueOf(bwi.getPropertyValue("name"));
 		filename = URLEncoder.encode(filename, "UTF-8");
 		response.setHeader("Content-disposition", "attachment;filename=" + filename + ".json");
-		PrintWriter out = response.getWriter();
-		out.print(json);
+		OutputStream out = response.getOutputStream();
+		JsonUtils.writeJson(map, out);
 		out.flush();
 		out.close();
 		return NONE;
@@ -1533,13 +1533,13 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 			if (parent == null || parent < 1) {
 				if (tree != null && tree > 0) {
 					children = new ArrayList<>();
-					children.add(baseTreeControl.getTree().getDescendantOrSelfById(tree));
+					children.add(baseTreeControl.getTreeNode(tree));
 					return JSON;
 				} else {
 					parentEntity = baseTreeControl.getTree();
 				}
 			} else {
-				parentEntity = baseTreeControl.getTree().getDescendantOrSelfById(parent);
+				parentEntity = baseTreeControl.getTreeNode(parent);
 			}
 			if (parentEntity != null)
 				children = parentEntity.getChildren();
@@ -3,9 +3,12 @@ package org.ironrhino.core.struts.mapper;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -16,10 +19,14 @@ import org.apache.struts2.dispatcher.mapper.ActionMapping;
 import org.ironrhino.common.action.DirectTemplateAction;
 import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.struts.result.AutoConfigResult;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.AppInfo.Stage;
+import org.ironrhino.core.util.CharTrieNode;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import com.opensymphony.xwork2.config.Configuration;
 import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.config.RuntimeConfiguration;
 import com.opensymphony.xwork2.config.entities.PackageConfig;
 import com.opensymphony.xwork2.inject.Inject;
 
@@ -30,6 +37,10 @@ public class DefaultActionMapper extends AbstractActionMapper {
 	@Inject(StrutsConstants.STRUTS_I18N_ENCODING)
 	private String encoding = "UTF-8";
 
+	private int routeCacheSize = 10000;
+
+	private volatile NamespaceIndex namespaceIndex;
+
 	public String getEncoding() {
 		return encoding;
 	}
@@ -56,36 +67,20 @@ public class DefaultActionMapper extends AbstractActionMapper {
 		return sb.toString();
 	}
 
+	public void setRouteCacheSize(int routeCacheSize) {
+		this.routeCacheSize = routeCacheSize;
+	}
+
 	@Override
 	public ActionMapping getMapping(HttpServletRequest request, ConfigurationManager configManager) {
 		ActionMapping mapping = null;
 		String uri = getUri(request);
-		Configuration config = configManager.getConfiguration();
-
-		String namespace = null;
-		String name = null;
-		String methodAndUid = null;
-		// Find the longest matching namespace and name
 		uri = uri.replace("//", "/");
 		if (uri.indexOf(';') > 0)
 			uri = uri.substring(0, uri.indexOf(';'));
-		for (Object var : config.getPackageConfigs().values()) {
-			PackageConfig pc = (PackageConfig) var;
-			String ns = pc.getNamespace();
-			if (!uri.equals(ns) && uri.startsWith(ns)) {
-				if (namespace == null || (namespace != null && ns.length() >= namespace.length())) {
-					String temp = uri.substring(ns.length());
-					if ("".equals(temp) || "/".equals(temp))
-						continue;
-					String[] array = StringUtils.split(temp, "/", 2);
-					name = org.ironrhino.core.util.StringUtils.toCamelCase(array[0]);
-					if (pc.getActionConfigs().containsKey(name))
-						namespace = ns;
-				}
-			}
-		}
+		Route route = getRoute(uri, configManager.getConfiguration());
 
-		if (namespace == null) {
+		if (route.namespace == null) {
 			if (actionMappingMatchers == null)
 				actionMappingMatchers = WebApplicationContextUtils
 						.getWebApplicationContext(ServletActionContext.getServletContext())
@@ -96,9 +91,13 @@ public class DefaultActionMapper extends AbstractActionMapper {
 					return mapping;
 			}
 
-			String location = AutoConfigResult
-					.getTemplateLocation(org.ironrhino.core.util.StringUtils.toCamelCase(uri));
-			if (location != null) {
+			Boolean template = route.template;
+			if (template == null || AppInfo.getStage() == Stage.DEVELOPMENT) {
+				template = AutoConfigResult
+						.getTemplateLocation(org.ironrhino.core.util.StringUtils.toCamelCase(uri)) != null;
+				route.template = template;
+			}
+			if (template) {
 				mapping = new ActionMapping();
 				mapping.setNamespace(DirectTemplateAction.NAMESPACE);
 				mapping.setName(DirectTemplateAction.ACTION_NAME);
@@ -108,15 +107,10 @@ public class DefaultActionMapper extends AbstractActionMapper {
 			return null;
 		}
 
-		String str = uri.substring(namespace.length());
-		String[] arr = StringUtils.split(str, "/", 2);
-		name = org.ironrhino.core.util.StringUtils.toCamelCase(arr[0]);
-		if (arr.length > 1)
-			methodAndUid = arr[1];
-
+		String methodAndUid = route.methodAndUid;
 		mapping = new ActionMapping();
-		mapping.setNamespace(namespace);
-		mapping.setName(org.ironrhino.core.util.StringUtils.toCamelCase(name));
+		mapping.setNamespace(route.namespace);
+		mapping.setName(route.name);
 		Map<String, Object> params = new HashMap<>(4, 1);
 		// process resultPage.pageNo and resultPage.pageSize
 		String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
@@ -125,6 +119,9 @@ public class DefaultActionMapper extends AbstractActionMapper {
 		String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
 		if (StringUtils.isNumeric(ps))
 			params.put("resultPage.pageSize", ps);
+		String cursor = request.getParameter(ResultPage.CURSOR_PARAM_NAME);
+		if (StringUtils.isNotBlank(cursor))
+			params.put("resultPage.cursor", cursor);
 		if (StringUtils.isNotBlank(methodAndUid)) {
 			String uid = null;
 			if (methodAndUid.indexOf('/') < 0) {
@@ -153,4 +150,107 @@ public class DefaultActionMapper extends AbstractActionMapper {
 		return mapping;
 	}
 
+	private Route getRoute(String uri, Configuration config) {
+		RuntimeConfiguration runtimeConfiguration = config.getRuntimeConfiguration();
+		NamespaceIndex index = namespaceIndex;
+		if (index == null || index.runtimeConfiguration != runtimeConfiguration) {
+			// configuration reloaded
+			index = new NamespaceIndex(config, runtimeConfiguration);
+			namespaceIndex = index;
+		}
+		Route route = index.routes.get(uri);
+		if (route == null) {
+			route = index.route(uri);
+			if (routeCacheSize > 0) {
+				if (index.routes.size() >= routeCacheSize)
+					index.routes.clear();
+				index.routes.put(uri, route);
+			}
+		}
+		return route;
+	}
+
+	private static class Route {
+
+		private final String namespace;
+
+		private final String name;
+
+		private final String methodAndUid;
+
+		// whether there is a template for uri without namespace
+		private volatile Boolean template;
+
+		Route(String namespace, String name, String methodAndUid) {
+			this.namespace = namespace;
+			this.name = name;
+			this.methodAndUid = methodAndUid;
+		}
+
+	}
+
+	private static class NamespaceIndex {
+
+		private final RuntimeConfiguration runtimeConfiguration;
+
+		private final Node root = new Node();
+
+		private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+		NamespaceIndex(Configuration config, RuntimeConfiguration runtimeConfiguration) {
+			this.runtimeConfiguration = runtimeConfiguration;
+			for (Object var : config.getPackageConfigs().values()) {
+				PackageConfig pc = (PackageConfig) var;
+				String ns = pc.getNamespace();
+				if (ns == null)
+					ns = "";
+				root.getOrCreate(ns).packages.add(pc);
+			}
+		}
+
+		// find the longest matching namespace and name
+		Route route(String uri) {
+			int namespaceLength = -1;
+			Node node = root;
+			for (int i = 0; i < uri.length(); i++) {
+				if (!node.packages.isEmpty()) {
+					String temp = uri.substring(i);
+					if (!"/".equals(temp)) {
+						String[] array = StringUtils.split(temp, "/", 2);
+						if (array.length > 0) {
+							String name = org.ironrhino.core.util.StringUtils.toCamelCase(array[0]);
+							for (PackageConfig pc : node.packages)
+								if (pc.getActionConfigs().containsKey(name)) {
+									namespaceLength = i;
+									break;
+								}
+						}
+					}
+				}
+				node = node.getChild(uri.charAt(i));
+				if (node == null)
+					break;
+			}
+			if (namespaceLength < 0)
+				return new Route(null, null, null);
+			String namespace = uri.substring(0, namespaceLength);
+			String[] arr = StringUtils.split(uri.substring(namespaceLength), "/", 2);
+			String name = org.ironrhino.core.util.StringUtils.toCamelCase(arr[0]);
+			return new Route(namespace, org.ironrhino.core.util.StringUtils.toCamelCase(name),
+					arr.length > 1 ? arr[1] : null);
+		}
+
+	}
+
+	private static class Node extends CharTrieNode<Node> {
+
+		private final List<PackageConfig> packages = new ArrayList<>(1);
+
+		@Override
+		protected Node newChild() {
+			return new Node();
+		}
+
+	}
+
 }
@@ -1,7 +1,9 @@
 package org.ironrhino.core.struts.result;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,6 +15,7 @@ import org.ironrhino.core.metadata.JsonConfig;
 import org.ironrhino.core.util.JsonUtils;
 import org.springframework.beans.BeanUtils;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import com.opensymphony.xwork2.ActionInvocation;
 import com.opensymphony.xwork2.Result;
 import com.opensymphony.xwork2.ValidationAware;
@@ -21,16 +24,22 @@ public class JsonResult implements Result {
 
 	private static final long serialVersionUID = 5984356746581381755L;
 
-	private String generateJson(ActionInvocation invocation) {
+	private static final Object NOTHING = new Object();
+
+	private boolean stream = true;
+
+	public void setStream(boolean stream) {
+		this.stream = stream;
+	}
+
+	private Object generateValue(ActionInvocation invocation, Method method) {
 		Object action = invocation.getAction();
-		Method method = BeanUtils.findDeclaredMethod(action.getClass(), invocation.getProxy().getMethod(),
-				new Class[0]);
 		if (method == null)
-			return "";
+			return NOTHING;
 		JsonConfig jsonConfig = method.getAnnotation(JsonConfig.class);
 		if (jsonConfig != null && StringUtils.isNotBlank(jsonConfig.root())) {
 			Object value = invocation.getStack().findValue(jsonConfig.root());
-			return value != null ? JsonUtils.toJson(value) : "{}";
+			return value != null ? value : new HashMap<>();
 		}
 
 		boolean hasErrors = false;
@@ -45,7 +54,7 @@ public class JsonResult implements Result {
 				if (validationAwareAction.hasFieldErrors()) {
 					map.put("fieldErrors", validationAwareAction.getFieldErrors());
 				}
-				return JsonUtils.toJson(map);
+				return map;
 			}
 			// else {
 			// map.put("hasErrors", false);
@@ -60,7 +69,7 @@ public class JsonResult implements Result {
 		}
 		if (!hasErrors) {
 			if (jsonConfig == null || jsonConfig.propertyName() == null || jsonConfig.propertyName().length == 0) {
-				return JsonUtils.toJson(map);
+				return map;
 			}
 			String[] propertyNameArray = jsonConfig.propertyName();
 			if (propertyNameArray != null && propertyNameArray.length > 0) {
@@ -71,7 +80,7 @@ public class JsonResult implements Result {
 				}
 			}
 		}
-		return JsonUtils.toJson(map);
+		return map;
 	}
 
 	@Override
@@ -79,7 +88,15 @@ public class JsonResult implements Result {
 		String jsonp = ServletActionContext.getRequest().getParameter("jsonp");
 		if (StringUtils.isBlank(jsonp))
 			jsonp = ServletActionContext.getRequest().getParameter("callback");
-		String json = generateJson(invocation);
+		Method method = BeanUtils.findDeclaredMethod(invocation.getAction().getClass(),
+				invocation.getProxy().getMethod(), new Class[0]);
+		Object value = generateValue(invocation, method);
+		Class<?> view = null;
+		if (method != null) {
+			JsonView jsonView = method.getAnnotation(JsonView.class);
+			if (jsonView != null && jsonView.value().length > 0)
+				view = jsonView.value()[0];
+		}
 		HttpServletResponse response = ServletActionContext.getResponse();
 		String encoding = response.getCharacterEncoding();
 		if (StringUtils.isNotBlank(jsonp))
@@ -91,12 +108,31 @@ public class JsonResult implements Result {
 			response.setHeader("Pragma", "no-cache");
 			response.setDateHeader("Expires", 0);
 		}
+		if (stream && value != NOTHING && StandardCharsets.UTF_8.name().equalsIgnoreCase(encoding)) {
+			// serialize straight into the response, nothing is buffered
+			OutputStream out = response.getOutputStream();
+			if (StringUtils.isNotBlank(jsonp)) {
+				out.write(jsonp.getBytes(StandardCharsets.UTF_8));
+				out.write('(');
+			}
+			JsonUtils.writeJson(value, out, view);
+			if (StringUtils.isNotBlank(jsonp))
+				out.write(')');
+			out.flush();
+			out.close();
+			return;
+		}
 		PrintWriter out = response.getWriter();
 		if (StringUtils.isNotBlank(jsonp)) {
 			out.print(jsonp);
 			out.print('(');
 		}
-		out.print(json);
+		if (value != NOTHING) {
+			if (stream)
+				JsonUtils.writeJson(value, out, view);
+			else
+				out.print(view != null ? JsonUtils.toJsonWithView(value, view) : JsonUtils.toJson(value));
+		}
 		if (StringUtils.isNotBlank(jsonp))
 			out.print(')');
 		out.flush();
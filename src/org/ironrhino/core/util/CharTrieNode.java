@@ -0,0 +1,68 @@
+package org.ironrhino.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Node of a compact char trie, children are kept in arrays sorted by key so
+ * lookup is a binary search without boxing. Subclasses carry the payload.
+ */
+public abstract class CharTrieNode<N extends CharTrieNode<N>> {
+
+	private static final char[] EMPTY_KEYS = new char[0];
+
+	private static final Object[] EMPTY_CHILDREN = new Object[0];
+
+	private char[] keys = EMPTY_KEYS;
+
+	private Object[] children = EMPTY_CHILDREN;
+
+	protected abstract N newChild();
+
+	@SuppressWarnings("unchecked")
+	public N getChild(char c) {
+		int i = Arrays.binarySearch(keys, c);
+		return i >= 0 ? (N) children[i] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public N getOrCreateChild(char c) {
+		int i = Arrays.binarySearch(keys, c);
+		if (i >= 0)
+			return (N) children[i];
+		i = -i - 1;
+		N child = newChild();
+		char[] newKeys = new char[keys.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, i);
+		newKeys[i] = c;
+		System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+		Object[] newChildren = new Object[children.length + 1];
+		System.arraycopy(children, 0, newChildren, 0, i);
+		newChildren[i] = child;
+		System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+		keys = newKeys;
+		children = newChildren;
+		return child;
+	}
+
+	@SuppressWarnings("unchecked")
+	public N getOrCreate(CharSequence key) {
+		N node = (N) this;
+		for (int i = 0; i < key.length(); i++)
+			node = node.getOrCreateChild(key.charAt(i));
+		return node;
+	}
+
+	public int getChildCount() {
+		return keys.length;
+	}
+
+	public char getKey(int index) {
+		return keys[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public N getChildAt(int index) {
+		return (N) children[index];
+	}
+
+}
@@ -1,40 +1,60 @@
 package org.ironrhino.core.util;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * http://fisheye5.cenqua.com/browse/~raw,r=1.11/sailfin/clb/src/main/java/org/
  * jvnet/glassfish/comms/clb/core/util/ConsistentHash.java
+ * <p>
+ * The ring is immutable and rebuilt copy-on-write on membership change, so
+ * lookups never lock.
+ * </p>
  */
 public class ConsistentHash<K, V> {
-	private Map<V, Integer> nodes = new HashMap<>();
-	private int totalWeights;
-	private Point<V>[] points;
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
-	private ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
-	private ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
-	private Hash hash;
-	private int pointsPerWeight = 160;
+
+	public static final int DEFAULT_POINTS_PER_WEIGHT = 160;
+
+	private final Hash hash;
+
+	private final Strategy strategy;
+
+	private final int pointsPerWeight;
+
+	private Map<V, Integer> nodes;
+
+	private volatile Ring<V> ring;
 
 	public ConsistentHash(Map<V, Integer> nodes) {
 		this(nodes, null);
 	}
 
 	public ConsistentHash(Map<V, Integer> nodes, Hash hash) {
+		this(nodes, hash, Strategy.RING);
+	}
+
+	public ConsistentHash(Map<V, Integer> nodes, Hash hash, Strategy strategy) {
+		this(nodes, hash, strategy, DEFAULT_POINTS_PER_WEIGHT);
+	}
+
+	public ConsistentHash(Map<V, Integer> nodes, Hash hash, Strategy strategy, int pointsPerWeight) {
+		if (pointsPerWeight < 1)
+			throw new IllegalArgumentException("pointsPerWeight should be positive");
+		this.hash = hash != null ? hash : new MurmurHash();
+		this.strategy = strategy != null ? strategy : Strategy.RING;
+		this.pointsPerWeight = pointsPerWeight;
+		Map<V, Integer> map = new LinkedHashMap<>();
 		if (nodes != null)
-			this.nodes = nodes;
-		if (hash == null)
-			hash = new MurmurHash();
-		this.hash = hash;
-		setup();
+			for (Map.Entry<V, Integer> entry : nodes.entrySet())
+				if (entry.getValue() != null && entry.getValue() > 0)
+					map.put(entry.getKey(), entry.getValue());
+		setup(map);
 	}
 
 	public ConsistentHash(Collection<V> nodes) {
@@ -42,97 +62,76 @@ public class ConsistentHash<K, V> {
 	}
 
 	public ConsistentHash(Collection<V> nodes, Hash hash) {
-		if (nodes != null && nodes.size() > 0) {
-			for (V v : nodes)
-				this.nodes.put(v, 1);
-		}
-		if (hash == null)
-			hash = new MurmurHash();
-		this.hash = hash;
-		setup();
+		this(toWeights(nodes), hash);
 	}
 
-	public void addNode(V node, int weight) {
+	public synchronized void addNode(V node, int weight) {
 		if (weight < 1)
 			return;
-		writeLock.lock();
-		try {
-			nodes.put(node, weight);
-			points = null;
-			setup();
-		} finally {
-			writeLock.unlock();
-		}
+		Map<V, Integer> map = new LinkedHashMap<>(nodes);
+		map.put(node, weight);
+		setup(map);
 	}
 
 	public void addNode(V node) {
 		addNode(node, 1);
 	}
 
-	public void removeNode(V node) {
-		writeLock.lock();
-		try {
-			nodes.remove(node);
-			points = null;
-			setup();
-		} finally {
-			writeLock.unlock();
-		}
+	public synchronized void removeNode(V node) {
+		if (!nodes.containsKey(node))
+			return;
+		Map<V, Integer> map = new LinkedHashMap<>(nodes);
+		map.remove(node);
+		setup(map);
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void setup() {
-		writeLock.lock();
-		try {
-			if (points != null)
-				return;
-			totalWeights = 0;
-			for (Iterator<Integer> it = nodes.values().iterator(); it.hasNext();)
-				totalWeights += (it.next()).intValue();
-			points = new Point[totalWeights * pointsPerWeight];
-			int point = 0;
-			for (Iterator<V> keys = nodes.keySet().iterator(); keys.hasNext();) {
-				Object node = keys.next();
-				int n = nodes.get(node).intValue() * pointsPerWeight;
-				for (int i = 0; i < n; i++)
-					points[point++] = new Point(hash.hash(node.toString() + "/" + i), node);
-			}
-			Arrays.sort(points);
-		} finally {
-			writeLock.unlock();
-		}
+	public Map<V, Integer> getNodes() {
+		return nodes;
 	}
 
 	public V get(K key) {
-		if (key == null) {
+		if (key == null)
 			return null;
-		}
 		String tobeHash = key.toString();
 		int i = tobeHash.indexOf('{');
 		int j = tobeHash.indexOf('}');
 		if (i > -1 && j > i)
 			tobeHash = tobeHash.substring(i + 1, j);
-		readLock.lock();
-		try {
-			long hashValue = hash.hash(tobeHash);
-			if (points == null || points.length == 0)
-				return null;
-			if (hashValue < points[0].start)
-				return points[totalWeights - 1].node;
-			int lo = 0;
-			int hi = totalWeights;
-
-			while (lo < (hi - 1)) {
-				int mid = (lo + hi) >>> 1;
-				if (points[mid].start > hashValue)
-					hi = mid;
-				else
-					lo = mid;
-			}
-			return points[lo].node;
-		} finally {
-			readLock.unlock();
+		return ring.get(hash.hash(tobeHash));
+	}
+
+	private void setup(Map<V, Integer> map) {
+		nodes = Collections.unmodifiableMap(map);
+		ring = strategy == Strategy.JUMP ? new JumpRing<>(map) : new PointRing<>(map, hash, pointsPerWeight);
+	}
+
+	private static <V> Map<V, Integer> toWeights(Collection<V> nodes) {
+		Map<V, Integer> map = new LinkedHashMap<>();
+		if (nodes != null)
+			for (V v : nodes)
+				map.put(v, 1);
+		return map;
+	}
+
+	/**
+	 * http://arxiv.org/abs/1406.2294
+	 */
+	public static int jumpHash(long key, int buckets) {
+		long b = -1, j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
 		}
+		return (int) b;
+	}
+
+	public static enum Strategy {
+		// virtual points on a hash ring, nodes can be added or removed freely
+		RING,
+		// jump consistent hash, no memory overhead, but only appending or
+		// removing the last node moves minimal keys
+		JUMP;
 	}
 
 	@FunctionalInterface
@@ -140,6 +139,80 @@ public class ConsistentHash<K, V> {
 		public long hash(String s);
 	}
 
+	private static interface Ring<V> {
+		V get(long hashValue);
+	}
+
+	private static class PointRing<V> implements Ring<V> {
+
+		private final long[] points;
+
+		private final V[] owners;
+
+		@SuppressWarnings("unchecked")
+		PointRing(Map<V, Integer> nodes, Hash hash, int pointsPerWeight) {
+			int total = 0;
+			for (Integer weight : nodes.values())
+				total += weight * pointsPerWeight;
+			long[] hashes = new long[total];
+			Object[] nodeArray = new Object[total];
+			int point = 0;
+			for (Map.Entry<V, Integer> entry : nodes.entrySet()) {
+				String prefix = entry.getKey().toString() + "/";
+				int n = entry.getValue() * pointsPerWeight;
+				for (int i = 0; i < n; i++) {
+					hashes[point] = hash.hash(prefix + i);
+					nodeArray[point++] = entry.getKey();
+				}
+			}
+			Integer[] order = new Integer[total];
+			for (int i = 0; i < total; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+			points = new long[total];
+			owners = (V[]) new Object[total];
+			for (int i = 0; i < total; i++) {
+				points[i] = hashes[order[i]];
+				owners[i] = (V) nodeArray[order[i]];
+			}
+		}
+
+		@Override
+		public V get(long hashValue) {
+			if (points.length == 0)
+				return null;
+			int i = Arrays.binarySearch(points, hashValue);
+			if (i < 0)
+				i = -i - 2;
+			// the segment before the first point belongs to the last one
+			return owners[i < 0 ? points.length - 1 : i];
+		}
+
+	}
+
+	private static class JumpRing<V> implements Ring<V> {
+
+		private final V[] buckets;
+
+		@SuppressWarnings("unchecked")
+		JumpRing(Map<V, Integer> nodes) {
+			int total = 0;
+			for (Integer weight : nodes.values())
+				total += weight;
+			buckets = (V[]) new Object[total];
+			int i = 0;
+			for (Map.Entry<V, Integer> entry : nodes.entrySet())
+				for (int j = 0; j < entry.getValue(); j++)
+					buckets[i++] = entry.getKey();
+		}
+
+		@Override
+		public V get(long hashValue) {
+			return buckets.length == 0 ? null : buckets[jumpHash(hashValue, buckets.length)];
+		}
+
+	}
+
 	/**
 	 * This is a very fast, non-cryptographic hash suitable for general
 	 * hash-based lookup. See http://murmurhash.googlepages.com/ for more
@@ -199,11 +272,45 @@ public class ConsistentHash<K, V> {
 		}
 
 		public static long hash64A(byte[] data, int seed) {
-			return hash64A(ByteBuffer.wrap(data), seed);
+			return hash64A(data, 0, data.length, seed);
 		}
 
+		// same as hash64A(ByteBuffer, int) without buffer allocation
 		public static long hash64A(byte[] data, int offset, int length, int seed) {
-			return hash64A(ByteBuffer.wrap(data, offset, length), seed);
+			long m = 0xc6a4a7935bd1e995L;
+			int r = 47;
+
+			long h = seed ^ (length * m);
+
+			int end = offset + (length & ~7);
+			int i = offset;
+			for (; i < end; i += 8) {
+				long k = (data[i] & 0xFFL) | (data[i + 1] & 0xFFL) << 8 | (data[i + 2] & 0xFFL) << 16
+						| (data[i + 3] & 0xFFL) << 24 | (data[i + 4] & 0xFFL) << 32 | (data[i + 5] & 0xFFL) << 40
+						| (data[i + 6] & 0xFFL) << 48 | (data[i + 7] & 0xFFL) << 56;
+
+				k *= m;
+				k ^= k >>> r;
+				k *= m;
+
+				h ^= k;
+				h *= m;
+			}
+
+			int remaining = offset + length - i;
+			if (remaining > 0) {
+				long k = 0;
+				for (int j = remaining - 1; j >= 0; j--)
+					k = k << 8 | (data[i + j] & 0xFFL);
+				h ^= k;
+				h *= m;
+			}
+
+			h ^= h >>> r;
+			h *= m;
+			h ^= h >>> r;
+
+			return h;
 		}
 
 		public static long hash64A(ByteBuffer buf, int seed) {
@@ -250,43 +357,7 @@ public class ConsistentHash<K, V> {
 
 		@Override
 		public long hash(String key) {
-			try {
-				return hash(key.getBytes("UTF-8"));
-			} catch (UnsupportedEncodingException e) {
-				e.printStackTrace();
-				return 0;
-			}
-		}
-	}
-
-	private static class Point<V> implements Comparable<Point<V>> {
-
-		Long start;
-		V node;
-
-		Point(long start, V node) {
-			this.start = start;
-			this.node = node;
-		}
-
-		@Override
-		public int compareTo(Point<V> o) {
-			return start.compareTo(o.start);
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			return o instanceof Point && o.toString().equals(this.toString());
-		}
-
-		@Override
-		public int hashCode() {
-			return start.hashCode();
-		}
-
-		@Override
-		public String toString() {
-			return "{" + node + "," + start + "}";
+			return hash(key.getBytes(StandardCharsets.UTF_8));
 		}
 
 	}
@@ -1,11 +1,15 @@
 package org.ironrhino.core.util;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
@@ -19,6 +23,8 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -46,6 +52,9 @@ public class JsonUtils {
 	public static final TypeReference<Map<String, String>> STRING_MAP_TYPE = new TypeReference<Map<String, String>>() {
 	};
 
+	// elements of a streamed collection written between flushes
+	private static final int STREAM_FLUSH_INTERVAL = 1000;
+
 	private static Logger logger = LoggerFactory.getLogger(JsonUtils.class);
 
 	private static ObjectMapper objectMapper = createNewObjectMapper();
@@ -118,6 +127,56 @@ public class JsonUtils {
 		}
 	}
 
+	public static void writeJson(Object object, OutputStream out) throws IOException {
+		writeJson(object, out, null);
+	}
+
+	public static void writeJson(Object object, OutputStream out, Class<?> serializationView) throws IOException {
+		writeJson(object, objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8), serializationView);
+	}
+
+	public static void writeJson(Object object, Writer writer) throws IOException {
+		writeJson(object, writer, null);
+	}
+
+	public static void writeJson(Object object, Writer writer, Class<?> serializationView) throws IOException {
+		writeJson(object, objectMapper.getFactory().createGenerator(writer), serializationView);
+	}
+
+	// streams without building the document in memory, the target is flushed
+	// but left open
+	private static void writeJson(Object object, JsonGenerator generator, Class<?> serializationView)
+			throws IOException {
+		ObjectWriter writer = serializationView != null ? objectMapper.writerWithView(serializationView)
+				: objectMapper.writer();
+		writer = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		if (objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT))
+			generator.useDefaultPrettyPrinter();
+		try {
+			Iterator<?> it = null;
+			if (object instanceof Collection)
+				it = ((Collection<?>) object).iterator();
+			else if (object instanceof Iterator)
+				it = (Iterator<?>) object;
+			if (it == null) {
+				writer.writeValue(generator, object);
+			} else {
+				// write large collections element by element and push chunks
+				// to the client periodically
+				generator.writeStartArray();
+				for (int i = 1; it.hasNext(); i++) {
+					writer.writeValue(generator, it.next());
+					if (i % STREAM_FLUSH_INTERVAL == 0)
+						generator.flush();
+				}
+				generator.writeEndArray();
+			}
+		} finally {
+			generator.close();
+		}
+	}
+
 	public static boolean isValidJson(String content) {
 		try {
 			getObjectMapper().readValue(content, JsonNode.class);
@@ -7,6 +7,7 @@ import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.util.Arrays;
 
 public class NumberUtils {
 
@@ -54,6 +55,14 @@ public class NumberUtils {
 
 	public static final String NUMBERS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_-";
 
+	private static final byte[] DIGITS = new byte[128];
+
+	static {
+		Arrays.fill(DIGITS, (byte) -1);
+		for (int i = 0; i < NUMBERS.length(); i++)
+			DIGITS[NUMBERS.charAt(i)] = (byte) i;
+	}
+
 	public static String decimalToX(int scale, BigInteger decimalValue) {
 		if (scale > NUMBERS.length())
 			throw new IllegalArgumentException("n must less or equal to " + NUMBERS.length());
@@ -74,6 +83,43 @@ public class NumberUtils {
 		return sb.toString();
 	}
 
+	public static String decimalToX(int scale, long decimalValue) {
+		if (scale > NUMBERS.length())
+			throw new IllegalArgumentException("n must less or equal to " + NUMBERS.length());
+		if (decimalValue == Long.MIN_VALUE)
+			return decimalToX(scale, BigInteger.valueOf(decimalValue));
+		boolean negative = decimalValue < 0;
+		if (negative)
+			decimalValue = -decimalValue;
+		char[] buf = new char[65];
+		int pos = buf.length;
+		while (decimalValue != 0) {
+			buf[--pos] = NUMBERS.charAt((int) (decimalValue % scale));
+			decimalValue /= scale;
+		}
+		if (negative)
+			buf[--pos] = '-';
+		return new String(buf, pos, buf.length - pos);
+	}
+
+	public static long xToLong(int scale, String xScaleValue) {
+		return xToLong(scale, xScaleValue, 0, xScaleValue.length());
+	}
+
+	public static long xToLong(int scale, CharSequence xScaleValue, int start, int end) {
+		if (scale > NUMBERS.length())
+			throw new IllegalArgumentException("n must less or equal to " + NUMBERS.length());
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char c = xScaleValue.charAt(i);
+			int digit = c < DIGITS.length ? DIGITS[c] : -1;
+			if (digit < 0 || digit >= scale)
+				throw new NumberFormatException("Illegal character '" + c + "' at " + i);
+			value = Math.addExact(Math.multiplyExact(value, scale), digit);
+		}
+		return value;
+	}
+
 	public static BigInteger xToDecimal(int scale, String xScaleValue) {
 		if (scale > NUMBERS.length())
 			throw new IllegalArgumentException("n must less or equal to " + NUMBERS.length());
@@ -0,0 +1,122 @@
+package org.ironrhino.core.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Matches text against many wildcard patterns at once, same semantics as
+ * {@link StringUtils#matchesWildcard(String, String)}. Patterns are indexed
+ * by their literal prefix in a trie, so only candidates whose prefix matches
+ * are checked.
+ */
+public class WildcardMatcher {
+
+	private final Node root = new Node();
+
+	public void add(String pattern, int id) {
+		int index = 0;
+		while (index < pattern.length()) {
+			char c = pattern.charAt(index);
+			if (c == '*' || c == '?')
+				break;
+			index++;
+		}
+		root.getOrCreate(pattern.substring(0, index)).addEntry(new Entry(id, pattern.substring(index)));
+	}
+
+	public boolean isEmpty() {
+		return root.entries.length == 0 && root.getChildCount() == 0;
+	}
+
+	public BitSet match(String text) {
+		BitSet result = new BitSet();
+		match(text, result);
+		return result;
+	}
+
+	public void match(String text, BitSet result) {
+		Node node = root;
+		node.collect(text, 0, result);
+		for (int i = 0; i < text.length(); i++) {
+			node = node.getChild(text.charAt(i));
+			if (node == null)
+				return;
+			node.collect(text, i + 1, result);
+		}
+	}
+
+	public boolean matches(String text) {
+		return !match(text).isEmpty();
+	}
+
+	static boolean matches(String text, int offset, String pattern) {
+		int tn = text.length(), pn = pattern.length();
+		int ti = offset, pi = 0, star = -1, mark = 0;
+		while (ti < tn) {
+			char p = pi < pn ? pattern.charAt(pi) : 0;
+			if (pi < pn && (p == '?' || p == text.charAt(ti))) {
+				ti++;
+				pi++;
+			} else if (pi < pn && p == '*') {
+				star = pi++;
+				mark = ti;
+			} else if (star >= 0) {
+				pi = star + 1;
+				ti = ++mark;
+			} else {
+				return false;
+			}
+		}
+		while (pi < pn && pattern.charAt(pi) == '*')
+			pi++;
+		return pi == pn;
+	}
+
+	private static class Node extends CharTrieNode<Node> {
+
+		private Entry[] entries = new Entry[0];
+
+		@Override
+		protected Node newChild() {
+			return new Node();
+		}
+
+		void addEntry(Entry entry) {
+			entries = Arrays.copyOf(entries, entries.length + 1);
+			entries[entries.length - 1] = entry;
+		}
+
+		void collect(String text, int offset, BitSet result) {
+			for (Entry entry : entries)
+				if (!result.get(entry.id) && entry.matches(text, offset))
+					result.set(entry.id);
+		}
+
+	}
+
+	private static class Entry {
+
+		private final int id;
+
+		// pattern after the literal prefix
+		private final String rest;
+
+		private final boolean any;
+
+		Entry(int id, String rest) {
+			this.id = id;
+			this.rest = rest;
+			this.any = rest.length() > 0 && rest.replace("*", "").isEmpty();
+		}
+
+		boolean matches(String text, int offset) {
+			if (any)
+				return true;
+			if (rest.isEmpty())
+				return offset == text.length();
+			return WildcardMatcher.matches(text, offset, rest);
+		}
+
+	}
+
+}
@@ -163,6 +163,7 @@ $(function(){
 			</div>
 			<div class="action span2">
 				<input type="submit" class="btn noajax" value="${action.getText('export')}" formaction="${actionBaseUrl}/export"/>
+				<input type="submit" class="btn noajax" value="${action.getText('export.xlsx')}" formaction="${actionBaseUrl}/export?format=xlsx"/>
 			</div>
 			<div class="status span5">
 				${resultPage.totalResults} ${action.getText('record')} , ${action.getText('tookInMillis',[resultPage.tookInMillis])}
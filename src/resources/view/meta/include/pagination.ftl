@@ -1,8 +1,27 @@
 <#macro pagination align="center" theme="" dynamicAttributes...>
-<#if resultPage.totalPage gt 1>
 <#if dynamicAttributes['dynamicAttributes']??>
 	<#local dynamicAttributes+=dynamicAttributes['dynamicAttributes']/>
 </#if>
+<#if resultPage.keyset>
+<#if resultPage.cursor?? || resultPage.nextCursor??>
+<ul class="pager">
+  <li class="previous<#if !resultPage.cursor??> disabled</#if>">
+  	<#if !resultPage.cursor??>
+    <span>&larr; ${action.getText('firstpage')}</span>
+    <#else>
+    <a href="${resultPage.renderCursorUrl('')}"<#list dynamicAttributes?keys as attr><#if attr!='dynamicAttributes'> ${attr}="${dynamicAttributes[attr]?html}"</#if></#list>>&larr; ${action.getText('firstpage')}</a>
+    </#if>
+  </li>
+  <li class="next<#if !resultPage.nextCursor??> disabled</#if>">
+  	<#if !resultPage.nextCursor??>
+    <span>${action.getText('nextpage')} &rarr;</span>
+    <#else>
+    <a href="${resultPage.renderCursorUrl(resultPage.nextCursor)}"<#list dynamicAttributes?keys as attr><#if attr!='dynamicAttributes'> ${attr}="${dynamicAttributes[attr]?html}"</#if></#list>>${action.getText('nextpage')} &rarr;</a>
+    </#if>
+  </li>
+</ul>
+</#if>
+<#elseif resultPage.totalPage gt 1>
 <#if theme=="simple">
 <ul class="pager">
   <li class="previous<#if resultPage.first> disabled</#if>">
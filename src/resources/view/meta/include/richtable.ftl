@@ -189,7 +189,20 @@ ${formHeader!}
 </table>
 <div class="toolbar row-fluid">
 <div class="pagination span<#if showBottomButtons>4<#else>6</#if>">
-<#if resultPage?? && resultPage.paginating>
+<#if resultPage?? && resultPage.paginating && resultPage.keyset>
+<ul>
+<#if resultPage.cursor??>
+<li class="firstPage"><a title="${action.getText('firstpage')}" href="${resultPage.renderCursorUrl('')}"><i class="glyphicon glyphicon-fast-backward"></i></a></li>
+<#else>
+<li class="disabled firstPage"><a title="${action.getText('firstpage')}"><i class="glyphicon glyphicon-fast-backward"></i></a></li>
+</#if>
+<#if resultPage.nextCursor??>
+<li class="nextPage"><a title="${action.getText('nextpage')}" href="${resultPage.renderCursorUrl(resultPage.nextCursor)}"><i class="glyphicon glyphicon-step-forward"></i></a></li>
+<#else>
+<li class="disabled"><a title="${action.getText('nextpage')}"><i class="glyphicon glyphicon-step-forward"></i></a></li>
+</#if>
+</ul>
+<#elseif resultPage?? && resultPage.paginating>
 <ul>
 <#if resultPage.first>
 <li class="disabled firstPage"><a title="${action.getText('firstpage')}"><i class="glyphicon glyphicon-fast-backward"></i></a></li>
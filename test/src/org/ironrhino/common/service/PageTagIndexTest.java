@@ -0,0 +1,94 @@
+package org.ironrhino.common.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageTagIndexTest {
+
+	private PageTagIndex index;
+
+	@Before
+	public void setup() {
+		index = new PageTagIndex();
+		index.put("a", 1, new Date(1000), Arrays.asList("news", "sport"));
+		index.put("b", 1, new Date(2000), Arrays.asList("news"));
+		index.put("c", 0, new Date(500), Arrays.asList("news", "sport", " "));
+		index.put("d", 2, new Date(3000), Arrays.asList("notice"));
+	}
+
+	@Test
+	public void testFind() {
+		// displayOrder asc then createDate desc
+		assertEquals(Arrays.asList("c", "b", "a"), index.find(0, 10, "news"));
+		assertEquals(Arrays.asList("b"), index.find(1, 1, "news"));
+		assertEquals(Arrays.asList("b", "a"), index.find(1, 0, "news"));
+		assertTrue(index.find(3, 10, "news").isEmpty());
+		assertEquals(Arrays.asList("c", "a"), index.find(0, 10, "news", "sport"));
+		assertEquals(Arrays.asList("c", "a"), index.find(0, 10, "sport", " news ", ""));
+		assertTrue(index.find(0, 10, "news", "notice").isEmpty());
+		assertTrue(index.find(0, 10, "unknown").isEmpty());
+		assertTrue(index.find(0, 10).isEmpty());
+	}
+
+	@Test
+	public void testCount() {
+		assertEquals(3, index.count("news"));
+		assertEquals(2, index.count("news", "sport"));
+		assertEquals(0, index.count("unknown"));
+	}
+
+	@Test
+	public void testUpdate() {
+		index.put("a", 0, new Date(1000), Arrays.asList("notice"));
+		assertEquals(Arrays.asList("c", "b"), index.find(0, 10, "news"));
+		assertEquals(Arrays.asList("c"), index.find(0, 10, "sport"));
+		assertEquals(Arrays.asList("a", "d"), index.find(0, 10, "notice"));
+		index.put("b", 3, new Date(2000), null);
+		assertEquals(Arrays.asList("c"), index.find(0, 10, "news"));
+	}
+
+	@Test
+	public void testRemove() {
+		index.remove("c");
+		index.remove("unknown");
+		assertEquals(Arrays.asList("b", "a"), index.find(0, 10, "news"));
+		assertEquals(Arrays.asList("a"), index.find(0, 10, "sport"));
+		index.remove("a");
+		assertEquals(0, index.count("sport"));
+		assertTrue(index.countTags("sp").isEmpty());
+		index.clear();
+		assertEquals(0, index.count("notice"));
+	}
+
+	@Test
+	public void testCountTags() {
+		index.put("e", 0, new Date(0), Arrays.asList("newsletter"));
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		expected.put("news", 3);
+		expected.put("newsletter", 1);
+		Map<String, Integer> actual = index.countTags("new");
+		assertEquals(expected, actual);
+		// same order as ValueThenKeyComparator used without index
+		assertEquals(Arrays.asList("newsletter", "news"), Arrays.asList(actual.keySet().toArray()));
+		assertTrue(index.countTags("x").isEmpty());
+	}
+
+	@Test
+	public void testFindPreviousAndNext() {
+		// previous is created later with lower or equal displayOrder
+		assertArrayEquals(new String[] { "b", null }, index.findPreviousAndNext(1, new Date(1000), "news"));
+		assertArrayEquals(new String[] { null, "c" }, index.findPreviousAndNext(0, new Date(600), "news"));
+		assertArrayEquals(new String[] { null, "a" }, index.findPreviousAndNext(1, new Date(2000), "news"));
+		assertArrayEquals(new String[] { null, null }, index.findPreviousAndNext(1, new Date(1000), "unknown"));
+	}
+
+}
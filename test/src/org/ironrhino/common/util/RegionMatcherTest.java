@@ -0,0 +1,108 @@
+package org.ironrhino.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.ironrhino.common.model.Region;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RegionMatcherTest {
+
+	private static RegionMatcher regionMatcher;
+
+	@BeforeClass
+	public static void setup() {
+		Region tree = new Region();
+		Region beijing = add(tree, 1, "北京市");
+		add(beijing, 11, "朝阳区");
+		add(beijing, 12, "海淀区");
+		Region shanghai = add(tree, 2, "上海市");
+		add(shanghai, 21, "黄浦区");
+		add(shanghai, 22, "浦东新区");
+		Region jiangsu = add(tree, 3, "江苏省");
+		Region nanjing = add(jiangsu, 31, "南京市");
+		add(nanjing, 311, "玄武区");
+		add(jiangsu, 32, "苏州市");
+		Region liaoning = add(tree, 4, "辽宁省");
+		add(liaoning, 41, "朝阳市");
+		Region jilin = add(tree, 5, "吉林省");
+		Region jilinCity = add(jilin, 51, "吉林市");
+		add(jilinCity, 511, "船营区");
+		Region changchun = add(jilin, 52, "长春市");
+		add(changchun, 521, "朝阳区");
+		Region chongqing = add(tree, 6, "重庆市");
+		add(chongqing, 61, "江北区");
+		Region zhejiang = add(tree, 7, "浙江省");
+		Region ningbo = add(zhejiang, 71, "宁波市");
+		add(ningbo, 711, "江北区");
+		regionMatcher = new RegionMatcher(tree);
+	}
+
+	private static Region add(Region parent, long id, String name) {
+		Region region = new Region(name);
+		region.setId(id);
+		region.setParent(parent);
+		parent.getChildren().add(region);
+		return region;
+	}
+
+	private static Long match(String text) {
+		Region region = regionMatcher.match(text);
+		return region != null ? region.getId() : null;
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(22, regionMatcher.size());
+	}
+
+	@Test
+	public void testMatch() {
+		assertEquals(Long.valueOf(311), match("江苏省南京市玄武区"));
+		assertEquals(Long.valueOf(311), match("江苏南京玄武"));
+		assertEquals(Long.valueOf(31), match("南京市"));
+		assertEquals(Long.valueOf(32), match("苏州"));
+		assertEquals(Long.valueOf(511), match("吉林省吉林市船营区"));
+		assertEquals(Long.valueOf(51), match("吉林市"));
+	}
+
+	@Test
+	public void testAmbiguous() {
+		assertEquals(Long.valueOf(2), match("上海市南京东路100号"));
+		assertEquals(Long.valueOf(21), match("上海市黄浦区南京东路100号"));
+		assertEquals(Long.valueOf(2), match("上海南京路苏州河"));
+		assertEquals(Long.valueOf(11), match("北京市朝阳区"));
+		assertEquals(Long.valueOf(521), match("吉林省长春市朝阳区"));
+		assertEquals(Long.valueOf(41), match("辽宁朝阳"));
+		assertEquals(Long.valueOf(711), match("浙江省宁波市江北区"));
+		assertEquals(Long.valueOf(61), match("重庆市江北区"));
+	}
+
+	@Test
+	public void testMunicipalities() {
+		assertEquals(Long.valueOf(1), match("北京市"));
+		assertEquals(Long.valueOf(1), match("北京"));
+		assertEquals(Long.valueOf(12), match("北京海淀区中关村大街1号"));
+		assertEquals(Long.valueOf(22), match("上海浦东新区"));
+		assertEquals(Long.valueOf(61), match("重庆江北"));
+	}
+
+	@Test
+	public void testNoMatch() {
+		assertNull(regionMatcher.match(null));
+		assertNull(regionMatcher.match(""));
+		assertNull(regionMatcher.match("   "));
+		assertNull(regionMatcher.match("火星基地1号"));
+		assertNull(new RegionMatcher(null).match("北京市"));
+		assertNull(new RegionMatcher(new Region()).match("北京市"));
+	}
+
+	@Test
+	public void testParseByAddress() {
+		assertEquals("上海市", RegionUtils.parseByAddress("上海市南京东路100号", regionMatcher).getName());
+		assertNull(RegionUtils.parseByAddress("火星基地1号", regionMatcher));
+		assertNull(RegionUtils.parseByAddress("北京市", (RegionMatcher) null));
+	}
+
+}
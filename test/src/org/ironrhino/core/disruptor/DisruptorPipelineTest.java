@@ -0,0 +1,98 @@
+package org.ironrhino.core.disruptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ironrhino.core.disruptor.DisruptorPipeline.Strategy;
+import org.junit.Test;
+
+public class DisruptorPipelineTest {
+
+	@Test
+	public void testOrderingPerShard() {
+		int concurrency = 3;
+		int total = 10000;
+		Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+		DisruptorPipeline<Integer> pipeline = new DisruptorPipeline<>("test-ordering", 256,
+				batch -> received.computeIfAbsent(Thread.currentThread().getName(), k -> new ArrayList<>())
+						.addAll(batch),
+				concurrency, 16, Strategy.BLOCKING);
+		for (int i = 0; i < total; i++)
+			pipeline.publish(i);
+		pipeline.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(concurrency, received.size());
+		List<Integer> all = new ArrayList<>();
+		for (List<Integer> values : received.values()) {
+			int shard = values.get(0) % concurrency;
+			for (int i = 0; i < values.size(); i++) {
+				// single producer, so sequence equals value
+				assertEquals(shard, values.get(i) % concurrency);
+				if (i > 0)
+					assertTrue(values.get(i) > values.get(i - 1));
+			}
+			all.addAll(values);
+		}
+		Collections.sort(all);
+		assertEquals(total, all.size());
+		for (int i = 0; i < total; i++)
+			assertEquals(i, all.get(i).intValue());
+		assertEquals(total, pipeline.getProcessed());
+	}
+
+	@Test
+	public void testTryPublishFallback() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger handled = new AtomicInteger();
+		DisruptorPipeline<Integer> pipeline = new DisruptorPipeline<>("test-backpressure", 4, batch -> {
+			started.countDown();
+			release.await();
+			handled.addAndGet(batch.size());
+		}, 1, 1, Strategy.BLOCKING);
+		pipeline.publish(0);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		int total = 100;
+		int inline = 0;
+		for (int i = 1; i < total; i++) {
+			// handle in caller thread when the buffer is full, as PageViewHandler does
+			if (!pipeline.tryPublish(i))
+				inline++;
+		}
+		assertTrue(inline > 0);
+		assertEquals(inline, pipeline.getRejected());
+		assertEquals(total - inline, pipeline.getPublished());
+		assertTrue(pipeline.getBacklog() <= pipeline.getBufferSize());
+		assertFalse(pipeline.tryPublish(total));
+		release.countDown();
+		pipeline.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(total - inline, handled.get());
+		assertEquals(total - inline, pipeline.getProcessed());
+	}
+
+	@Test
+	public void testShutdownDrains() {
+		AtomicInteger handled = new AtomicInteger();
+		DisruptorPipeline<Integer> pipeline = new DisruptorPipeline<>("test-shutdown", 1024, batch -> {
+			Thread.sleep(1);
+			handled.addAndGet(batch.size());
+		}, 2, 8, Strategy.SLEEPING);
+		int total = 1000;
+		for (int i = 0; i < total; i++)
+			pipeline.publish(i);
+		pipeline.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(total, handled.get());
+		assertEquals(total, pipeline.getProcessed());
+		assertEquals(0, pipeline.getBacklog());
+	}
+
+}
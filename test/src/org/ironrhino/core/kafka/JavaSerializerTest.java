@@ -0,0 +1,72 @@
+package org.ironrhino.core.kafka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.apache.commons.lang3.SerializationException;
+import org.junit.Test;
+
+public class JavaSerializerTest {
+
+	private JavaSerializer serializer = new JavaSerializer();
+
+	@Test
+	public void testRoundTrip() {
+		ArrayList<Object> list = new ArrayList<>();
+		list.add("test");
+		list.add(12);
+		list.add(new Date(0));
+		assertEquals(list, serializer.deserialize("topic", serializer.serialize("topic", list)));
+		assertArrayEquals(new int[] { 1, 2 },
+				(int[]) serializer.deserialize("topic", serializer.serialize("topic", new int[] { 1, 2 })));
+	}
+
+	@Test
+	public void testNull() {
+		assertNull(serializer.serialize("topic", null));
+		assertNull(serializer.deserialize("topic", null));
+	}
+
+	@Test
+	public void testClassNotFound() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(new Message());
+		}
+		// pretend to be a class only other app has
+		byte[] bytes = bos.toByteArray();
+		String name = Message.class.getName();
+		String other = name.substring(0, name.length() - 1) + "X";
+		replace(bytes, name.getBytes(), other.getBytes());
+		assertNull(serializer.deserialize("topic", bytes));
+	}
+
+	@Test(expected = SerializationException.class)
+	public void testCorrupted() {
+		serializer.deserialize("topic", new byte[] { 1, 2, 3 });
+	}
+
+	private static void replace(byte[] bytes, byte[] from, byte[] to) {
+		for (int i = 0; i <= bytes.length - from.length; i++) {
+			boolean matched = true;
+			for (int j = 0; j < from.length && matched; j++)
+				matched = bytes[i + j] == from[j];
+			if (matched)
+				System.arraycopy(to, 0, bytes, i, to.length);
+		}
+	}
+
+	static class Message implements java.io.Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+}
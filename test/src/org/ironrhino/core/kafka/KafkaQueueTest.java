@@ -0,0 +1,87 @@
+package org.ironrhino.core.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KafkaQueueTest {
+
+	private MockKafkaConfiguration kafkaConfiguration;
+
+	@Before
+	public void setup() {
+		kafkaConfiguration = new MockKafkaConfiguration();
+	}
+
+	private TestQueue createQueue(boolean consuming) {
+		TestQueue queue = new TestQueue();
+		queue.kafkaConfiguration = kafkaConfiguration;
+		queue.kafkaTemplate = kafkaConfiguration.kafkaTemplate();
+		queue.setConsuming(consuming);
+		queue.init();
+		return queue;
+	}
+
+	@Test
+	public void testProduce() {
+		TestQueue queue = createQueue(false);
+		assertEquals(Task.class.getName().replace('$', '_'), queue.getQueueName());
+		queue.produce(new Task(1));
+		queue.produce(new Task(2));
+		List<ProducerRecord<String, Serializable>> history = kafkaConfiguration.producer.history();
+		assertEquals(2, history.size());
+		assertEquals(queue.getQueueName(), history.get(0).topic());
+		assertNull(history.get(0).key());
+		assertEquals(2, ((Task) history.get(1).value()).id);
+		assertTrue(kafkaConfiguration.groupIds.isEmpty());
+		queue.destroy();
+	}
+
+	@Test
+	public void testConsume() throws Exception {
+		TestQueue queue = createQueue(true);
+		try {
+			// all instances share one consumer group
+			assertEquals(queue.getQueueName(), kafkaConfiguration.groupIds.get(0));
+			kafkaConfiguration.deliver(queue.getQueueName(), new Task(3));
+			Task task = queue.consumed.poll(10, TimeUnit.SECONDS);
+			assertEquals(3, task.id);
+		} finally {
+			queue.destroy();
+		}
+	}
+
+	static class TestQueue extends KafkaQueue<Task> {
+
+		final BlockingQueue<Task> consumed = new LinkedBlockingQueue<>();
+
+		@Override
+		public void consume(Task task) {
+			consumed.add(task);
+		}
+
+	}
+
+	static class Task implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		final int id;
+
+		Task(int id) {
+			this.id = id;
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.ironrhino.core.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.ironrhino.core.metadata.Scope;
+import org.ironrhino.core.util.AppInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KafkaTopicTest {
+
+	private MockKafkaConfiguration kafkaConfiguration;
+
+	private TestTopic topic;
+
+	@Before
+	public void setup() {
+		kafkaConfiguration = new MockKafkaConfiguration();
+		topic = createTopic();
+	}
+
+	@After
+	public void destroy() {
+		topic.destroy();
+	}
+
+	private TestTopic createTopic() {
+		TestTopic topic = new TestTopic();
+		topic.kafkaConfiguration = kafkaConfiguration;
+		topic.kafkaTemplate = kafkaConfiguration.kafkaTemplate();
+		topic.init();
+		return topic;
+	}
+
+	@Test
+	public void testTopicName() {
+		assertEquals(Message.class.getName().replace('$', '_'), topic.topicName);
+		assertEquals(topic.topicName + ".", topic.getTopicName(Scope.GLOBAL));
+		assertEquals(topic.topicName + "." + AppInfo.getAppName(), topic.getTopicName(Scope.APPLICATION));
+		assertNull(topic.getTopicName(Scope.LOCAL));
+	}
+
+	@Test
+	public void testStableConsumerGroup() {
+		TestTopic another = createTopic();
+		try {
+			List<String> groupIds = kafkaConfiguration.groupIds;
+			assertEquals(2, groupIds.size());
+			assertEquals(groupIds.get(0), groupIds.get(1));
+			assertTrue(groupIds.get(0).startsWith(AppInfo.getAppName() + "@" + AppInfo.getHostAddress()));
+			assertFalse(groupIds.get(0).equals(AppInfo.getInstanceId()));
+		} finally {
+			another.destroy();
+		}
+	}
+
+	@Test
+	public void testPublish() throws Exception {
+		topic.publish(new Message("global"), Scope.GLOBAL);
+		topic.publish(new Message("application"), Scope.APPLICATION);
+		topic.publish(new Message("default"), null);
+		List<ProducerRecord<String, Serializable>> history = kafkaConfiguration.producer.history();
+		assertEquals(3, history.size());
+		assertEquals(topic.getTopicName(Scope.GLOBAL), history.get(0).topic());
+		assertEquals("global", history.get(0).key());
+		assertEquals("global", ((Message) history.get(0).value()).text);
+		assertEquals(topic.getTopicName(Scope.APPLICATION), history.get(1).topic());
+		assertEquals(topic.getTopicName(Scope.GLOBAL), history.get(2).topic());
+		assertTrue(topic.received.isEmpty());
+	}
+
+	@Test
+	public void testPublishLocal() throws Exception {
+		topic.publish(new Message("local"), Scope.LOCAL);
+		assertTrue(kafkaConfiguration.producer.history().isEmpty());
+		assertEquals("local", topic.received.poll().text);
+	}
+
+	@Test
+	public void testSubscribe() throws Exception {
+		kafkaConfiguration.deliver(topic.getTopicName(Scope.GLOBAL), new Message("received"));
+		Message message = topic.received.poll(10, TimeUnit.SECONDS);
+		assertEquals("received", message.text);
+	}
+
+	static class TestTopic extends KafkaTopic<Message> {
+
+		final BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+
+		@Override
+		public void subscribe(Message message) {
+			received.add(message);
+		}
+
+		@Override
+		protected String getPartitionKey(Message message) {
+			return message.text;
+		}
+
+	}
+
+	static class Message implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		final String text;
+
+		Message(String text) {
+			this.text = text;
+		}
+
+	}
+
+}
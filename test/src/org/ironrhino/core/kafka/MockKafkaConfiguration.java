@@ -0,0 +1,93 @@
+package org.ironrhino.core.kafka;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+
+public class MockKafkaConfiguration extends KafkaConfiguration {
+
+	final MockProducer<String, Serializable> producer = new MockProducer<>(true, new StringSerializer(),
+			new JavaSerializer());
+
+	final List<String> groupIds = new ArrayList<>();
+
+	final List<RebalancingConsumer> consumers = new ArrayList<>();
+
+	@Override
+	public ProducerFactory<String, Serializable> kafkaProducerFactory() {
+		return () -> producer;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public synchronized <T extends Serializable> ConsumerFactory<String, T> createConsumerFactory(String groupId,
+			boolean fromEarliest) {
+		groupIds.add(groupId);
+		return new ConsumerFactory<String, T>() {
+
+			@Override
+			public org.apache.kafka.clients.consumer.Consumer<String, T> createConsumer() {
+				RebalancingConsumer consumer = new RebalancingConsumer(
+						fromEarliest ? OffsetResetStrategy.EARLIEST : OffsetResetStrategy.LATEST);
+				synchronized (MockKafkaConfiguration.this) {
+					consumers.add(consumer);
+				}
+				return (org.apache.kafka.clients.consumer.Consumer) consumer;
+			}
+
+			@Override
+			public boolean isAutoCommit() {
+				return false;
+			}
+
+		};
+	}
+
+	// delivers a record serialized by JavaSerializer the way a broker would
+	void deliver(String topic, Serializable value) {
+		RebalancingConsumer consumer;
+		synchronized (this) {
+			consumer = consumers.get(consumers.size() - 1);
+		}
+		TopicPartition tp = new TopicPartition(topic, 0);
+		JavaSerializer serializer = new JavaSerializer();
+		Serializable copy = serializer.deserialize(topic, serializer.serialize(topic, value));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Collections.singletonList(tp));
+			consumer.updateBeginningOffsets(Collections.singletonMap(tp, 0L));
+			consumer.updateEndOffsets(Collections.singletonMap(tp, 0L));
+			consumer.listener.onPartitionsAssigned(Collections.singletonList(tp));
+			consumer.seek(tp, 0);
+			consumer.addRecord(new ConsumerRecord<>(topic, 0, 0, null, copy));
+		});
+	}
+
+	// MockConsumer doesn't notify the rebalance listener
+	static class RebalancingConsumer extends MockConsumer<String, Serializable> {
+
+		private volatile ConsumerRebalanceListener listener;
+
+		RebalancingConsumer(OffsetResetStrategy offsetResetStrategy) {
+			super(offsetResetStrategy);
+		}
+
+		@Override
+		public void subscribe(List<String> topics, ConsumerRebalanceListener listener) {
+			super.subscribe(topics, listener);
+			this.listener = listener;
+		}
+
+	}
+
+}
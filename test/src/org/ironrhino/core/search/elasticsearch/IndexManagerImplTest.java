@@ -0,0 +1,159 @@
+package org.ironrhino.core.search.elasticsearch;
+
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.ironrhino.core.coordination.LockService;
+import org.ironrhino.core.model.Persistable;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableId;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableProperty;
+import org.ironrhino.core.service.BaseManager.IterateCallback;
+import org.ironrhino.core.service.EntityManager;
+import org.ironrhino.core.util.JsonUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IndexManagerImplTest {
+
+	private static final String INDEX_NAME = "test";
+
+	private Node node;
+
+	private Client client;
+
+	private IndexManagerImpl indexManager;
+
+	@Before
+	@SuppressWarnings("rawtypes")
+	public void setup() throws Exception {
+		node = nodeBuilder().local(true)
+				.settings(ImmutableSettings.settingsBuilder()
+						.put("path.home", Files.createTempDirectory("es").toString())
+						.put("index.store.type", "memory").put("http.enabled", false))
+				.node();
+		client = node.client();
+		client.admin().cluster().prepareHealth().setWaitForYellowStatus().get();
+		client.admin().indices().create(new CreateIndexRequest(INDEX_NAME + "_v1")).get();
+		client.admin().indices().prepareAliases().addAlias(INDEX_NAME + "_v1", INDEX_NAME).get();
+		indexManager = new IndexManagerImpl();
+		indexManager.setIndexName(INDEX_NAME);
+		Map<String, Class> typeClassMapping = new HashMap<>();
+		typeClassMapping.put("item", Item.class);
+		Map<Class, Map<String, Object>> schemaMapping = new HashMap<>();
+		schemaMapping.put(Item.class, Collections.singletonMap("properties", new HashMap<>()));
+		ReflectionTestUtils.setField(indexManager, "logger", LoggerFactory.getLogger(IndexManagerImpl.class));
+		ReflectionTestUtils.setField(indexManager, "client", client);
+		ReflectionTestUtils.setField(indexManager, "objectMapper", JsonUtils.createNewObjectMapper());
+		ReflectionTestUtils.setField(indexManager, "typeClassMapping", typeClassMapping);
+		ReflectionTestUtils.setField(indexManager, "schemaMapping", schemaMapping);
+		ReflectionTestUtils.setField(indexManager, "rebuildConcurrency", 1);
+		ReflectionTestUtils.setField(indexManager, "checkRebuildingInterval", 0L);
+		ReflectionTestUtils.setField(indexManager, "lockService",
+				proxy(LockService.class, (method, args) -> method.equals("tryLock") ? Boolean.TRUE : null));
+	}
+
+	@After
+	public void destroy() {
+		node.close();
+	}
+
+	@Test
+	public void testRebuildFailedIteration() throws Exception {
+		ReflectionTestUtils.setField(indexManager, "entityManager", proxy(EntityManager.class, (method, args) -> {
+			if (method.equals("iterate")) {
+				((IterateCallback) args[1]).process(new Object[] { new Item(1L) }, null);
+				throw new RuntimeException("connection reset");
+			}
+			return method.equals("splitIdRange") ? new ArrayList<>() : null;
+		}));
+		indexManager.rebuild();
+		assertEquals(Collections.singletonList(INDEX_NAME + "_v1"), aliasedIndices());
+		String rebuilding = indexManager.getRebuildingIndexName();
+		assertTrue(rebuilding != null && !rebuilding.equals(INDEX_NAME + "_v1"));
+		assertTrue(client.admin().indices().prepareExists(rebuilding).get().isExists());
+	}
+
+	@Test
+	public void testRebuild() throws Exception {
+		ReflectionTestUtils.setField(indexManager, "entityManager", proxy(EntityManager.class, (method, args) -> {
+			if (method.equals("iterate")) {
+				((IterateCallback) args[1]).process(new Object[] { new Item(1L), new Item(2L) }, null);
+				return null;
+			}
+			return method.equals("splitIdRange") ? new ArrayList<>() : null;
+		}));
+		indexManager.rebuild();
+		List<String> indices = aliasedIndices();
+		assertEquals(1, indices.size());
+		assertFalse(indices.contains(INDEX_NAME + "_v1"));
+		assertFalse(client.admin().indices().prepareExists(INDEX_NAME + "_v1").get().isExists());
+		assertEquals(null, indexManager.getRebuildingIndexName());
+		assertTrue(client.prepareGet(INDEX_NAME, "item", "2").get().isExists());
+	}
+
+	private List<String> aliasedIndices() {
+		List<String> indices = new ArrayList<>();
+		Iterator<String> it = client.admin().indices().prepareGetAliases(INDEX_NAME).get().getAliases().keysIt();
+		while (it.hasNext())
+			indices.add(it.next());
+		return indices;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> clazz, Handler handler) {
+		return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[] { clazz },
+				(proxy, method, args) -> handler.handle(method.getName(), args));
+	}
+
+	@FunctionalInterface
+	private static interface Handler {
+		Object handle(String method, Object[] args) throws Exception;
+	}
+
+	public static class Item implements Persistable<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private Long id;
+
+		public Item(Long id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean isNew() {
+			return false;
+		}
+
+		@Override
+		@SearchableId
+		public Long getId() {
+			return id;
+		}
+
+		@SearchableProperty
+		public String getName() {
+			return "item" + id;
+		}
+
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.ironrhino.core.session.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+
+import org.ironrhino.core.session.impl.SessionTrackerCodec.SessionTracker;
+import org.ironrhino.core.util.CodecUtils;
+import org.ironrhino.core.util.NumberUtils;
+import org.junit.Test;
+
+public class SessionTrackerCodecTest {
+
+	private static final long CREATION_TIME = 1466000000000L;
+
+	private static final long LAST_ACCESSED_TIME = 1466000123456L;
+
+	private final SessionTrackerCodec codec = new SessionTrackerCodec("secret");
+
+	@Test
+	public void testRoundTrip() {
+		String id = CodecUtils.nextId("salt");
+		assertEquals(SessionTrackerCodec.ID_LENGTH, id.length());
+		String tracker = codec.encode(id, CREATION_TIME, LAST_ACCESSED_TIME);
+		assertEquals(SessionTrackerCodec.LENGTH, tracker.length());
+		assertEquals(SessionTrackerCodec.VERSION, tracker.charAt(0));
+		assertEquals(id, codec.decodeId(tracker));
+		SessionTracker st = codec.decode(tracker);
+		assertEquals(id, st.getId());
+		assertEquals(CREATION_TIME, st.getCreationTime());
+		assertEquals(LAST_ACCESSED_TIME, st.getLastAccessedTime());
+	}
+
+	@Test
+	public void testLegacyRoundTrip() {
+		String id = "legacy-incompatible";
+		String tracker = codec.encode(id, CREATION_TIME, LAST_ACCESSED_TIME);
+		// ids of other length fall back to legacy
+		assertEquals(codec.encodeLegacy(id, CREATION_TIME, LAST_ACCESSED_TIME), tracker);
+		id = CodecUtils.nextId("salt");
+		tracker = codec.encodeLegacy(id, CREATION_TIME, LAST_ACCESSED_TIME);
+		assertEquals(id, codec.decodeId(tracker));
+		SessionTracker st = codec.decode(tracker);
+		assertEquals(id, st.getId());
+		assertEquals(CREATION_TIME, st.getCreationTime());
+		assertEquals(LAST_ACCESSED_TIME, st.getLastAccessedTime());
+	}
+
+	@Test
+	public void testLegacyDecode() {
+		// written by nodes before the fixed layout
+		String id = CodecUtils.nextId("salt");
+		String tracker = CodecUtils.swap(id + "-" + NumberUtils.decimalToX(62, BigInteger.valueOf(CREATION_TIME))
+				+ "-" + NumberUtils.decimalToX(62, BigInteger.valueOf(LAST_ACCESSED_TIME)));
+		assertEquals(id, codec.decodeId(tracker));
+		SessionTracker st = codec.decode(tracker);
+		assertEquals(id, st.getId());
+		assertEquals(CREATION_TIME, st.getCreationTime());
+		assertEquals(LAST_ACCESSED_TIME, st.getLastAccessedTime());
+		tracker = CodecUtils.swap(id + "-" + NumberUtils.decimalToX(62, BigInteger.valueOf(CREATION_TIME)));
+		st = codec.decode(tracker);
+		assertEquals(CREATION_TIME, st.getCreationTime());
+		assertEquals(-1, st.getLastAccessedTime());
+		assertNull(codec.decode(CodecUtils.swap(id)));
+		assertEquals(id, codec.decodeId(CodecUtils.swap(id)));
+	}
+
+	@Test
+	public void testTamperedSignature() {
+		String tracker = codec.encode(CodecUtils.nextId("salt"), CREATION_TIME, LAST_ACCESSED_TIME);
+		char[] chars = tracker.toCharArray();
+		int pos = 1 + SessionTrackerCodec.ID_LENGTH + SessionTrackerCodec.TIME_LENGTH;
+		chars[pos] = chars[pos] == 'z' ? 'y' : 'z';
+		assertInvalid(new String(chars));
+		chars = tracker.toCharArray();
+		chars[chars.length - 1] = chars[chars.length - 1] == '0' ? '1' : '0';
+		assertInvalid(new String(chars));
+		// signed with another secret
+		assertInvalid(new SessionTrackerCodec("other").encode(CodecUtils.nextId("salt"), CREATION_TIME,
+				LAST_ACCESSED_TIME));
+	}
+
+	@Test
+	public void testTruncated() {
+		String id = CodecUtils.nextId("salt");
+		String tracker = codec.encode(id, CREATION_TIME, LAST_ACCESSED_TIME);
+		// treated as a tracker without times, a new session will be started
+		assertNull(codec.decode(tracker.substring(0, tracker.length() - 1)));
+		assertNull(codec.decode(tracker.substring(0, 1 + SessionTrackerCodec.ID_LENGTH)));
+		tracker = CodecUtils.swap(id + "-");
+		assertNull(codec.decode(tracker));
+		assertInvalid(CodecUtils.swap(id + "-pOcG.B"));
+	}
+
+	private void assertInvalid(String tracker) {
+		try {
+			codec.decode(tracker);
+			fail("Expected invalid tracker: " + tracker);
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CharTrieNodeTest {
+
+	@Test
+	public void testGetOrCreate() {
+		Node root = new Node();
+		Node abc = root.getOrCreate("abc");
+		abc.value = "abc";
+		root.getOrCreate("ab").value = "ab";
+		root.getOrCreate("b").value = "b";
+		assertSame(abc, root.getOrCreate("abc"));
+		assertSame(abc, root.getChild('a').getChild('b').getChild('c'));
+		assertEquals("ab", root.getChild('a').getChild('b').value);
+		assertNull(root.getChild('a').value);
+		assertNull(root.getChild('c'));
+		assertSame(root, root.getOrCreate(""));
+	}
+
+	@Test
+	public void testChildrenSorted() {
+		Node root = new Node();
+		for (char c : "zxaymb".toCharArray())
+			root.getOrCreateChild(c).value = String.valueOf(c);
+		assertEquals(6, root.getChildCount());
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < root.getChildCount(); i++) {
+			sb.append(root.getKey(i));
+			assertEquals(String.valueOf(root.getKey(i)), root.getChildAt(i).value);
+		}
+		assertEquals("abmxyz", sb.toString());
+		for (char c : "zxaymb".toCharArray())
+			assertEquals(String.valueOf(c), root.getChild(c).value);
+	}
+
+	private static class Node extends CharTrieNode<Node> {
+
+		private String value;
+
+		@Override
+		protected Node newChild() {
+			return new Node();
+		}
+
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.ironrhino.core.util.ConsistentHash.MurmurHash;
+import org.ironrhino.core.util.ConsistentHash.Strategy;
+import org.junit.Test;
+
+public class ConsistentHashTest {
+
+	private static final int KEYS = 100000;
+
+	@Test
+	public void testMurmurHash() {
+		for (String s : new String[] { "", "a", "abcdefg", "abcdefgh", "abcdefghi", "中文/123", "node-10/159" }) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			assertEquals(MurmurHash.hash64A(ByteBuffer.wrap(bytes), 0x1234ABCD),
+					MurmurHash.hash64A(bytes, 0x1234ABCD));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(new ConsistentHash<String, String>(new ArrayList<String>()).get("key"));
+		assertNull(new ConsistentHash<String, String>(new HashMap<String, Integer>(), null, Strategy.JUMP)
+				.get("key"));
+		assertNull(new ConsistentHash<String, String>(nodes(3)).get(null));
+	}
+
+	@Test
+	public void testConsistentWithReference() {
+		ConsistentHash<String, String> ch = new ConsistentHash<>(nodes(10));
+		LockedTreeMapHash reference = new LockedTreeMapHash(nodes(10));
+		for (int i = 0; i < KEYS; i++)
+			assertEquals(reference.get("key" + i), ch.get("key" + i));
+		assertEquals(ch.get("user:{42}:profile"), ch.get("42"));
+	}
+
+	@Test
+	public void testDistribution() {
+		assertBalanced(new ConsistentHash<String, String>(nodes(10)), 10, 0.25);
+		assertBalanced(new ConsistentHash<String, String>(nodes(10), null, Strategy.JUMP), 10, 0.05);
+		Map<String, Integer> weights = new HashMap<>();
+		weights.put("small", 1);
+		weights.put("large", 3);
+		ConsistentHash<String, String> ch = new ConsistentHash<>(weights);
+		int large = 0;
+		for (int i = 0; i < KEYS; i++)
+			if (ch.get("key" + i).equals("large"))
+				large++;
+		assertEquals(0.75, (double) large / KEYS, 0.05);
+	}
+
+	@Test
+	public void testMinimalRemapping() {
+		for (Strategy strategy : Strategy.values()) {
+			ConsistentHash<String, String> ch = new ConsistentHash<>(nodes(10), null, strategy);
+			String[] before = new String[KEYS];
+			for (int i = 0; i < KEYS; i++)
+				before[i] = ch.get("key" + i);
+			ch.addNode("node10");
+			int moved = 0;
+			for (int i = 0; i < KEYS; i++) {
+				String node = ch.get("key" + i);
+				if (!node.equals(before[i])) {
+					assertEquals(strategy.name(), "node10", node);
+					moved++;
+				}
+			}
+			assertEquals(strategy.name(), 1.0 / 11, (double) moved / KEYS, 0.03);
+			ch.removeNode("node10");
+			for (int i = 0; i < KEYS; i++)
+				assertEquals(before[i], ch.get("key" + i));
+		}
+	}
+
+	private static void assertBalanced(ConsistentHash<String, String> ch, int size, double tolerance) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++)
+			counts.merge(ch.get("key" + i), 1, Integer::sum);
+		assertEquals(size, counts.size());
+		double mean = (double) KEYS / size;
+		for (int count : counts.values())
+			assertTrue(counts.toString(), Math.abs(count - mean) / mean < tolerance);
+	}
+
+	private static Map<String, Integer> nodes(int size) {
+		Map<String, Integer> nodes = new HashMap<>();
+		for (int i = 0; i < size; i++)
+			nodes.put("node" + i, 1);
+		return nodes;
+	}
+
+	// previous implementation, a ring guarded by a fair read write lock
+	private static class LockedTreeMapHash {
+
+		private final TreeMap<Long, String> ring = new TreeMap<>();
+
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+		private final MurmurHash hash = new MurmurHash();
+
+		LockedTreeMapHash(Map<String, Integer> nodes) {
+			List<String> list = new ArrayList<>(nodes.keySet());
+			for (String node : list)
+				for (int i = 0; i < nodes.get(node) * ConsistentHash.DEFAULT_POINTS_PER_WEIGHT; i++)
+					ring.put(hash.hash(node + "/" + i), node);
+		}
+
+		String get(String key) {
+			lock.readLock().lock();
+			try {
+				Map.Entry<Long, String> entry = ring.floorEntry(hash.hash(key));
+				return entry != null ? entry.getValue() : ring.lastEntry().getValue();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class WildcardMatcherTest {
+
+	@Test
+	public void testMatch() {
+		WildcardMatcher matcher = new WildcardMatcher();
+		matcher.add("/assets/upload/*", 0);
+		matcher.add("/_ping", 1);
+		matcher.add("*", 2);
+		matcher.add("/api/*/user?", 3);
+		matcher.add("/assets/*", 4);
+		BitSet bs = matcher.match("/assets/upload/a.jpg");
+		assertEquals("{0, 2, 4}", bs.toString());
+		assertEquals("{1, 2}", matcher.match("/_ping").toString());
+		assertEquals("{2}", matcher.match("/_ping/").toString());
+		assertEquals("{2, 3}", matcher.match("/api/v1/users").toString());
+		assertEquals("{2}", matcher.match("/api/v1/user").toString());
+	}
+
+	@Test
+	public void testConsistentWithMatchesWildcard() {
+		String[] patterns = { "/a/*", "/a/*/c", "*.js", "/a?c*", "/*/b/*d", "/abc", "**", "/a**b", "?" };
+		String[] texts = { "/a/b", "/a/b/c", "/a/bb/c", "x.js", "/abcd", "/abc", "/x/b/cd", "/x/b/c", "", "a",
+				"/aab", "/a/b/c/d.js" };
+		for (int i = 0; i < patterns.length; i++) {
+			WildcardMatcher matcher = new WildcardMatcher();
+			matcher.add(patterns[i], 0);
+			for (String text : texts)
+				assertEquals(patterns[i] + " " + text, StringUtils.matchesWildcard(text, patterns[i]),
+						matcher.matches(text));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		WildcardMatcher matcher = new WildcardMatcher();
+		assertTrue(matcher.isEmpty());
+		assertFalse(matcher.matches("/"));
+	}
+
+}